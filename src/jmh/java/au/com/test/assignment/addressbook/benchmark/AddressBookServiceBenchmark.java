@@ -0,0 +1,108 @@
+package au.com.test.assignment.addressbook.benchmark;
+
+import au.com.test.assignment.addressbook.AddressBookApplication;
+import au.com.test.assignment.addressbook.config.CacheConfig;
+import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.service.AddressBookService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks AddressBookService against the application context and an in-memory database
+ * holding bookCount address books of bookSize customers each. Every address book has the
+ * same customers, so distinct customers across all address books are bookSize customers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddressBookServiceBenchmark {
+
+    @Param({"1", "10"})
+    public int bookCount;
+
+    @Param({"100", "1000"})
+    public int bookSize;
+
+    private ConfigurableApplicationContext context;
+
+    private AddressBookService addressBookService;
+
+    private long[] addressBookIds;
+
+    private long added;
+
+    private long read;
+
+    private Cache addressBooksCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(AddressBookApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID(),
+                        "logging.level.root=WARN")
+                .run();
+        addressBookService = context.getBean(AddressBookService.class);
+        addressBooksCache = context.getBean(CacheManager.class).getCache(CacheConfig.ADDRESS_BOOKS);
+
+        addressBookIds = new long[bookCount];
+        for (int book = 0; book < bookCount; book++) {
+            Set<Customer> customers = new HashSet<>();
+            for (int i = 0; i < bookSize; i++) {
+                customers.add(customer("first" + i, "last" + i, "04" + (10_000_000 + i)));
+            }
+            addressBookIds[book] = addressBookService.createAddressBook(AddressBook.builder()
+                    .name("benchmark-" + book)
+                    .customers(customers)
+                    .build()).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Adds a new customer each invocation, round robin over the address books
+     */
+    @Benchmark
+    public Customer addCustomerToAddressBook() {
+        long next = added++;
+        return addressBookService.addCustomerToAddressBook(addressBookIds[(int) (next % bookCount)],
+                customer("added" + next, "customer", "03" + (10_000_000 + next)));
+    }
+
+    /**
+     * Reads an address book with all its customers, its cache entry is evicted first so every read goes to the database
+     */
+    @Benchmark
+    public Object retrieveAddressBook() {
+        long addressBookId = addressBookIds[(int) (read++ % bookCount)];
+        addressBooksCache.evict(addressBookId);
+        return addressBookService.retrieveAddressBook(addressBookId);
+    }
+
+    @Benchmark
+    public void retrieveDistinctCustomersFromAllAddressBooks(Blackhole blackhole) {
+        addressBookService.retrieveDistinctCustomersFromAllAddressBooks(blackhole::consume);
+    }
+
+    private static Customer customer(String firstName, String lastName, String phoneNumber) {
+        return Customer.builder().firstName(firstName).lastName(lastName).phoneNumber(phoneNumber).build();
+    }
+}
@@ -0,0 +1,46 @@
+package au.com.test.assignment.addressbook.benchmark;
+
+import au.com.test.assignment.addressbook.model.Customer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks Customer equality, which is used for every HashSet of customers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerBenchmark {
+
+    private Customer customer;
+
+    private Customer sameCustomer;
+
+    private Customer otherCustomer;
+
+    @Setup
+    public void setUp() {
+        customer = Customer.builder().firstName("Mary").lastName("Smith").phoneNumber("0400123456").build();
+        sameCustomer = Customer.builder().firstName("Mary").lastName("Smith").phoneNumber("0400123456").build();
+        otherCustomer = Customer.builder().firstName("Mary").lastName("Smith").phoneNumber("0400123457").build();
+    }
+
+    @Benchmark
+    public int customerHashCode() {
+        return customer.hashCode();
+    }
+
+    @Benchmark
+    public boolean customerEqualsSameCustomer() {
+        return customer.equals(sameCustomer);
+    }
+
+    @Benchmark
+    public boolean customerEqualsOtherCustomer() {
+        return customer.equals(otherCustomer);
+    }
+}
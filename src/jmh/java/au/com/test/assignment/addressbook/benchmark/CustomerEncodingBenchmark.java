@@ -0,0 +1,85 @@
+package au.com.test.assignment.addressbook.benchmark;
+
+import au.com.test.assignment.addressbook.model.CustomerView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares writing the customers of an address book as JSON and as CBOR, each uncompressed and gzip
+ * compressed the way the server compresses responses. The time is serialization plus compression, the
+ * wireBytes counter is the size of the body on the wire. Customers have distinct names
+ * and phone numbers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerEncodingBenchmark {
+
+    public enum Encoding { JSON, CBOR }
+
+    public enum Compression { NONE, GZIP }
+
+    @Param({"10000", "100000"})
+    public int customerCount;
+
+    @Param({"JSON", "CBOR"})
+    public Encoding encoding;
+
+    @Param({"NONE", "GZIP"})
+    public Compression compression;
+
+    private List<CustomerView> customers;
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        customers = new ArrayList<>(customerCount);
+        for (long i = 0; i < customerCount; i++) {
+            customers.add(new CustomerView(i, "first" + i, "last" + i, "04" + (10_000_000 + i)));
+        }
+        objectMapper = encoding == Encoding.CBOR ? new ObjectMapper().copyWith(new CBORFactory()) : new ObjectMapper();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireSize {
+
+        public long wireBytes;
+    }
+
+    @Benchmark
+    public long writeCustomers(WireSize wireSize) throws IOException {
+        var counter = new CountingOutputStream();
+        OutputStream outputStream = compression == Compression.GZIP ? new GZIPOutputStream(counter, 8192) : counter;
+        objectMapper.writeValue(outputStream, customers);
+        wireSize.wireBytes = counter.count;
+        return counter.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
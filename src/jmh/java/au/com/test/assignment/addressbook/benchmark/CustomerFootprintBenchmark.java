@@ -0,0 +1,115 @@
+package au.com.test.assignment.addressbook.benchmark;
+
+import au.com.test.assignment.addressbook.config.ReadModelProperties;
+import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.ContactKey;
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.service.CustomerReadModel;
+import au.com.test.assignment.addressbook.service.CustomersAddedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the heap retained by customerCount customers held as Customer entities, the way address books
+ * are read and cached, with the same customers in the {@link CustomerReadModel}. Customers are spread over
+ * address books of 1000 customers, names are drawn from pools like real names repeat and phone numbers are
+ * unique. Each row gets its own strings as when read from the database. The retainedBytes counter is the used
+ * heap after a full GC minus the used heap before the customers were built, the time is of no interest.
+ * Entities are counted without a persistence context, so their figure is a lower bound
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class CustomerFootprintBenchmark {
+
+    private static final int BOOK_SIZE = 1000;
+
+    private static final int FIRST_NAMES = 5_000;
+
+    private static final int LAST_NAMES = 50_000;
+
+    public enum Representation { ENTITIES, READ_MODEL }
+
+    @Param({"1000000", "10000000"})
+    public int customerCount;
+
+    @Param({"ENTITIES", "READ_MODEL"})
+    public Representation representation;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long retainedBytes;
+    }
+
+    @Benchmark
+    public Object retainCustomers(Footprint footprint) {
+        long before = usedHeapAfterGc();
+        Object customers = representation == Representation.ENTITIES ? entities() : readModel();
+        footprint.retainedBytes = usedHeapAfterGc() - before;
+        return customers;
+    }
+
+    private List<AddressBook> entities() {
+        List<AddressBook> addressBooks = new ArrayList<>();
+        for (int book = 0; book < customerCount / BOOK_SIZE; book++) {
+            var addressBook = AddressBook.builder().id(book + 1L).name("book" + book).build();
+            Set<Customer> customers = new HashSet<>();
+            for (int i = 0; i < BOOK_SIZE; i++) {
+                var entry = entry(book, i);
+                customers.add(Customer.builder()
+                        .id(entry.id())
+                        .firstName(entry.firstName())
+                        .lastName(entry.lastName())
+                        .phoneNumber(entry.phoneNumber())
+                        .contactKey(ContactKey.canonicalize(entry.firstName(), entry.lastName(), entry.phoneNumber()))
+                        .contactHash(entry.contactHash())
+                        .addressBook(addressBook)
+                        .build());
+            }
+            addressBook.setCustomers(customers);
+            addressBooks.add(addressBook);
+        }
+        return addressBooks;
+    }
+
+    private CustomerReadModel readModel() {
+        var readModelProperties = new ReadModelProperties();
+        readModelProperties.setEnabled(true);
+        var readModel = new CustomerReadModel(null, null, readModelProperties, new SimpleMeterRegistry());
+        for (int book = 0; book < customerCount / BOOK_SIZE; book++) {
+            List<CustomerEntry> customers = new ArrayList<>(BOOK_SIZE);
+            for (int i = 0; i < BOOK_SIZE; i++) {
+                customers.add(entry(book, i));
+            }
+            readModel.onCustomersAdded(new CustomersAddedEvent(customers));
+        }
+        return readModel;
+    }
+
+    private static CustomerEntry entry(int book, int i) {
+        long id = (long) book * BOOK_SIZE + i + 1;
+        return new CustomerEntry(id, book + 1L, id * 0x9E3779B97F4A7C15L,
+                "First" + id % FIRST_NAMES, "Last" + id * 31 % LAST_NAMES, String.format("04%08d", id));
+    }
+
+    private static long usedHeapAfterGc() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,47 @@
+package au.com.test.assignment.addressbook.benchmark;
+
+import au.com.test.assignment.addressbook.model.Customer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks Jackson serialization of the Set of customers returned for an address book
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerSerializationBenchmark {
+
+    @Param({"1000", "100000"})
+    public int customerCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Set<Customer> customers;
+
+    @Setup
+    public void setUp() {
+        customers = new HashSet<>();
+        for (long i = 0; i < customerCount; i++) {
+            customers.add(Customer.builder()
+                    .id(i)
+                    .firstName("first" + i)
+                    .lastName("last" + i)
+                    .phoneNumber("04" + (10_000_000 + i))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeCustomers() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(customers);
+    }
+}
@@ -0,0 +1,123 @@
+package au.com.test.assignment.addressbook.benchmark;
+
+import au.com.test.assignment.addressbook.AddressBookApplication;
+import au.com.test.assignment.addressbook.config.CacheConfig;
+import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.service.AddressBookService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of AddressBookService with address books partitioned across shards in-memory
+ * databases, by several threads at once. Address books are dealt to the shards in turn, so single address book
+ * operations spread over all shards and cross address book reads scatter to every shard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ShardingBenchmark {
+
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    @Param({"16"})
+    public int bookCount;
+
+    @Param({"500"})
+    public int bookSize;
+
+    private ConfigurableApplicationContext context;
+
+    private AddressBookService addressBookService;
+
+    private long[] addressBookIds;
+
+    private final AtomicLong added = new AtomicLong();
+
+    private Cache addressBooksCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(AddressBookApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:sharding-" + UUID.randomUUID(),
+                        "address-book.sharding.shards=" + shards,
+                        "logging.level.root=WARN")
+                .run();
+        addressBookService = context.getBean(AddressBookService.class);
+        addressBooksCache = context.getBean(CacheManager.class).getCache(CacheConfig.ADDRESS_BOOKS);
+
+        addressBookIds = new long[bookCount];
+        for (int book = 0; book < bookCount; book++) {
+            Set<Customer> customers = new HashSet<>();
+            for (int i = 0; i < bookSize; i++) {
+                customers.add(customer("first" + i, "last" + book, "04" + (10_000_000 + book * bookSize + i)));
+            }
+            addressBookIds[book] = addressBookService.createAddressBook(AddressBook.builder()
+                    .name("sharding-" + book)
+                    .customers(customers)
+                    .build()).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Adds a new customer to a random address book
+     */
+    @Benchmark
+    public Customer addCustomerToAddressBook() {
+        long next = added.getAndIncrement();
+        return addressBookService.addCustomerToAddressBook(randomAddressBookId(),
+                customer("added" + next, "customer", "03" + (10_000_000 + next)));
+    }
+
+    /**
+     * Reads a random address book with all its customers, its cache entry is evicted first so every read goes
+     * to its shard
+     */
+    @Benchmark
+    public Object retrieveAddressBook() {
+        long addressBookId = randomAddressBookId();
+        addressBooksCache.evict(addressBookId);
+        return addressBookService.retrieveAddressBook(addressBookId);
+    }
+
+    @Benchmark
+    public long countDistinctCustomersFromAllAddressBooks() {
+        return addressBookService.countDistinctCustomersFromAllAddressBooks();
+    }
+
+    @Benchmark
+    public void retrieveDistinctCustomersFromAllAddressBooks(Blackhole blackhole) {
+        addressBookService.retrieveDistinctCustomersFromAllAddressBooks(blackhole::consume);
+    }
+
+    private long randomAddressBookId() {
+        return addressBookIds[ThreadLocalRandom.current().nextInt(bookCount)];
+    }
+
+    private static Customer customer(String firstName, String lastName, String phoneNumber) {
+        return Customer.builder().firstName(firstName).lastName(lastName).phoneNumber(phoneNumber).build();
+    }
+}
@@ -0,0 +1,97 @@
+package au.com.test.assignment.addressbook.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The endpoints of AddressBookController replayed by the load test, each builds one request against
+ * the address books and customers of the {@link Workload}
+ */
+public enum Endpoint {
+
+    CREATE_ADDRESS_BOOK("POST /api/v1/address-book/") {
+        @Override
+        HttpRequest request(Workload workload) {
+            return post(workload, "/api/v1/address-book/",
+                    "{\"name\":\"Load test " + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE) + "\"}");
+        }
+    },
+
+    RETRIEVE_ADDRESS_BOOK("GET /api/v1/address-book/{addressBookId}") {
+        @Override
+        HttpRequest request(Workload workload) {
+            return get(workload, "/api/v1/address-book/" + workload.randomAddressBook());
+        }
+    },
+
+    ADD_CUSTOMER("POST /api/v1/address-book/{addressBookId}/customer") {
+        @Override
+        HttpRequest request(Workload workload) {
+            return post(workload, "/api/v1/address-book/" + workload.randomAddressBook() + "/customer",
+                    workload.randomCustomer());
+        }
+    },
+
+    REMOVE_CUSTOMER("DELETE /api/v1/address-book/{addressBookId}/customer/{customerId}") {
+        @Override
+        HttpRequest request(Workload workload) {
+            var customer = workload.takeAddedCustomer();
+            if (customer == null) {
+                return null;
+            }
+            return builder(workload, "/api/v1/address-book/" + customer.addressBookId() + "/customer/"
+                    + customer.customerId()).DELETE().build();
+        }
+    },
+
+    RETRIEVE_CUSTOMERS("GET /api/v1/address-book/{addressBookId}/customers") {
+        @Override
+        HttpRequest request(Workload workload) {
+            return get(workload, "/api/v1/address-book/" + workload.randomAddressBook() + "/customers?size="
+                    + workload.getPageSize());
+        }
+    },
+
+    RETRIEVE_DISTINCT_CUSTOMERS("GET /api/v1/address-book/customers") {
+        @Override
+        HttpRequest request(Workload workload) {
+            return get(workload, "/api/v1/address-book/customers");
+        }
+    };
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String description;
+
+    Endpoint(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the next request to the endpoint, null when the workload has nothing for it to act on
+     */
+    abstract HttpRequest request(Workload workload);
+
+    private static HttpRequest get(Workload workload, String path) {
+        return builder(workload, path).GET().build();
+    }
+
+    private static HttpRequest post(Workload workload, String path, String body) {
+        return builder(workload, path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static HttpRequest.Builder builder(Workload workload, String path) {
+        return HttpRequest.newBuilder(URI.create(workload.getBaseUrl() + path))
+                .header("Accept", "application/json")
+                .timeout(REQUEST_TIMEOUT);
+    }
+}
@@ -0,0 +1,71 @@
+package au.com.test.assignment.addressbook.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the requests to one endpoint made while latencies are recorded.
+ * Latency is measured from when the request was due to be sent at the fixed arrival rate, not from when
+ * it was sent, so requests held up by a saturated client or server count the whole wait
+ */
+public class EndpointStatistics {
+
+    //latencies above it are recorded as it
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder skipped = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Records a request that got a response or failed
+     * @param latencyNanos time from when the request was due until it completed
+     * @param succeeded whether the response had a 2xx status
+     */
+    public void recordCompleted(long latencyNanos, boolean succeeded) {
+        latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_LATENCY_MICROS));
+        if (!succeeded) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Records a request not made because the workload had nothing for it to act on
+     */
+    public void recordSkipped() {
+        skipped.increment();
+    }
+
+    /**
+     * Records a request not made because maxInFlight requests were waiting for a response
+     */
+    public void recordDropped() {
+        dropped.increment();
+    }
+
+    /**
+     * @return latencies of all completed requests in microseconds
+     */
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,99 @@
+package au.com.test.assignment.addressbook.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of a load test run per endpoint and for all endpoints together, written as JSON with the settings
+ * of the run so runs can be compared. Latencies are in milliseconds, every result also keeps its full
+ * histogram as a base64 compressed HdrHistogram of microseconds for tools like HistogramLogAnalyzer
+ */
+public record LoadReport(Instant startedAt, LoadTestSettings settings, List<Result> endpoints, Result total) {
+
+    private static final String TOTAL = "TOTAL";
+
+    public static LoadReport of(Instant startedAt, LoadTestSettings settings,
+                                Map<Endpoint, EndpointStatistics> statistics) {
+        List<Result> endpoints = new ArrayList<>();
+        var totalLatencies = new Histogram(3);
+        long errors = 0;
+        long skipped = 0;
+        long dropped = 0;
+        for (var entry : statistics.entrySet()) {
+            var endpointStatistics = entry.getValue();
+            endpoints.add(Result.of(entry.getKey().name(), entry.getKey().getDescription(),
+                    endpointStatistics.getLatencies(), endpointStatistics.getErrors(),
+                    endpointStatistics.getSkipped(), endpointStatistics.getDropped(), settings.durationSeconds()));
+            totalLatencies.add(endpointStatistics.getLatencies());
+            errors += endpointStatistics.getErrors();
+            skipped += endpointStatistics.getSkipped();
+            dropped += endpointStatistics.getDropped();
+        }
+        return new LoadReport(startedAt, settings, endpoints, Result.of(TOTAL, "all endpoints", totalLatencies,
+                errors, skipped, dropped, settings.durationSeconds()));
+    }
+
+    public void write() throws IOException {
+        var objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .enable(SerializationFeature.INDENT_OUTPUT);
+        var parent = settings.report().toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        objectMapper.writeValue(settings.report().toFile(), this);
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-28s %9s %7s %7s %7s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "skipped",
+                "dropped", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        endpoints.forEach(result -> result.print(out));
+        total.print(out);
+    }
+
+    /**
+     * @param throughput requests completed per second of the measured duration, failed requests included
+     */
+    public record Result(String endpoint, String description, long requests, long errors, long skipped,
+                         long dropped, double throughput, Latency latencyMillis, String histogram) {
+
+        static Result of(String endpoint, String description, Histogram latencies, long errors, long skipped,
+                         long dropped, int durationSeconds) {
+            var buffer = ByteBuffer.allocate(latencies.getNeededByteBufferCapacity());
+            var length = latencies.encodeIntoCompressedByteBuffer(buffer);
+            return new Result(endpoint, description, latencies.getTotalCount(), errors, skipped, dropped,
+                    (double) latencies.getTotalCount() / durationSeconds, Latency.of(latencies),
+                    Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+        }
+
+        void print(PrintStream out) {
+            out.printf("%-28s %9d %7d %7d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", endpoint, requests, errors, skipped,
+                    dropped, throughput, latencyMillis.p50(), latencyMillis.p99(), latencyMillis.p999(),
+                    latencyMillis.max());
+        }
+    }
+
+    public record Latency(double mean, double p50, double p90, double p99, double p999, double max) {
+
+        static Latency of(Histogram micros) {
+            return new Latency(micros.getMean() / 1000, millis(micros, 50), millis(micros, 90), millis(micros, 99),
+                    millis(micros, 99.9), micros.getMaxValue() / 1000.0);
+        }
+
+        private static double millis(Histogram micros, double percentile) {
+            return micros.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package au.com.test.assignment.addressbook.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a mix of the AddressBookController endpoints against a running application at a fixed arrival
+ * rate and reports the latency percentiles and throughput of each endpoint, see {@link LoadTestSettings}.
+ * Requests are started on schedule whether or not earlier ones completed, so a saturated server shows up as
+ * growing latencies, errors and dropped requests instead of a lower request rate.
+ * Run with ./gradlew loadTest -Prate=500 -PdurationSeconds=60 against an application started separately
+ */
+public final class LoadTest {
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestSettings settings;
+
+    private final HttpClient client;
+
+    private final Workload workload;
+
+    private final Map<Endpoint, EndpointStatistics> statistics = new EnumMap<>(Endpoint.class);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Endpoint[] endpoints;
+
+    private final int[] cumulativeWeights;
+
+    public LoadTest(LoadTestSettings settings) {
+        this.settings = settings;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.workload = new Workload(settings.url(), settings.pageSize());
+        this.endpoints = settings.mix().keySet().toArray(Endpoint[]::new);
+        this.cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += settings.mix().get(endpoints[i]);
+            cumulativeWeights[i] = total;
+            statistics.put(endpoints[i], new EndpointStatistics());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        var loadTest = new LoadTest(LoadTestSettings.parse(args));
+        var report = loadTest.run();
+        report.print(System.out);
+        report.write();
+        System.out.println("Report written to " + report.settings().report().toAbsolutePath());
+    }
+
+    public LoadReport run() throws Exception {
+        if (settings.existingAddressBooks() > 0) {
+            workload.useExistingAddressBooks(settings.existingAddressBooks());
+        } else {
+            System.out.printf("Creating %d address books with %d customers each%n",
+                    settings.addressBooks(), settings.customersPerAddressBook());
+            workload.createAddressBooks(client, settings.addressBooks(), settings.customersPerAddressBook());
+        }
+
+        var startedAt = Instant.now();
+        System.out.printf("Sending %d requests per second to %s, %ds warmup and %ds measured%n",
+                settings.rate(), settings.url(), settings.warmupSeconds(), settings.durationSeconds());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+        long start = System.nanoTime();
+        long measuredFrom = start + TimeUnit.SECONDS.toNanos(settings.warmupSeconds());
+        long end = measuredFrom + TimeUnit.SECONDS.toNanos(settings.durationSeconds());
+        for (long due = start; due < end; due += intervalNanos) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(randomEndpoint(), due, due >= measuredFrom);
+        }
+
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        return LoadReport.of(startedAt, settings, statistics);
+    }
+
+    private void send(Endpoint endpoint, long due, boolean measured) {
+        var endpointStatistics = statistics.get(endpoint);
+        //checked before the workload hands out a request, so a dropped remove takes no customer off the workload
+        if (inFlight.get() >= settings.maxInFlight()) {
+            if (measured) {
+                endpointStatistics.recordDropped();
+            }
+            return;
+        }
+        var request = endpoint.request(workload);
+        if (request == null) {
+            if (measured) {
+                endpointStatistics.recordSkipped();
+            }
+            return;
+        }
+
+        inFlight.incrementAndGet();
+        if (endpoint == Endpoint.ADD_CUSTOMER) {
+            //the added customer is kept for later removes, every other response body is discarded as it arrives
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, failure) -> {
+                long latency = System.nanoTime() - due;
+                boolean succeeded = isSuccessful(response, failure);
+                if (succeeded) {
+                    try {
+                        workload.customerAdded(request, response.body());
+                    } catch (Exception ex) {
+                        succeeded = false;
+                    }
+                }
+                completed(endpointStatistics, latency, measured, succeeded);
+            });
+        } else {
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) ->
+                    completed(endpointStatistics, System.nanoTime() - due, measured, isSuccessful(response, failure)));
+        }
+    }
+
+    private static boolean isSuccessful(HttpResponse<?> response, Throwable failure) {
+        return failure == null && response.statusCode() / 100 == 2;
+    }
+
+    private void completed(EndpointStatistics endpointStatistics, long latency, boolean measured, boolean succeeded) {
+        inFlight.decrementAndGet();
+        if (measured) {
+            endpointStatistics.recordCompleted(latency, succeeded);
+        }
+    }
+
+    private Endpoint randomEndpoint() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return endpoints[i];
+            }
+        }
+        throw new IllegalStateException("No endpoint for " + value);
+    }
+}
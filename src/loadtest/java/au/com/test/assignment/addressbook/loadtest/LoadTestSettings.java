@@ -0,0 +1,83 @@
+package au.com.test.assignment.addressbook.loadtest;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, read from name=value arguments. Every setting has a default
+ * @param url base url of the application
+ * @param rate requests started per second across all endpoints, whether or not earlier requests completed
+ * @param warmupSeconds seconds of load before latencies are recorded
+ * @param durationSeconds seconds of load with latencies recorded
+ * @param mix relative share of the requests of each endpoint, like RETRIEVE_ADDRESS_BOOK:30,ADD_CUSTOMER:10
+ * @param maxInFlight most requests waiting for a response, requests beyond it are dropped and counted
+ * @param pageSize customers per page of RETRIEVE_CUSTOMERS
+ * @param addressBooks address books created with their customers before the load starts
+ * @param customersPerAddressBook customers imported into each created address book
+ * @param existingAddressBooks when above 0 no address books are created and requests use ids 1 to it instead
+ * @param report file the report is written to
+ */
+public record LoadTestSettings(String url,
+                               int rate,
+                               int warmupSeconds,
+                               int durationSeconds,
+                               Map<Endpoint, Integer> mix,
+                               int maxInFlight,
+                               int pageSize,
+                               int addressBooks,
+                               int customersPerAddressBook,
+                               int existingAddressBooks,
+                               Path report) {
+
+    private static final String DEFAULT_MIX = "RETRIEVE_ADDRESS_BOOK:30,RETRIEVE_CUSTOMERS:30,ADD_CUSTOMER:20," +
+            "REMOVE_CUSTOMER:15,CREATE_ADDRESS_BOOK:4,RETRIEVE_DISTINCT_CUSTOMERS:1";
+
+    public static LoadTestSettings parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            var separator = arg.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Expected name=value but got " + arg);
+            }
+            values.put(arg.substring(arg.startsWith("--") ? 2 : 0, separator), arg.substring(separator + 1));
+        }
+        var settings = new LoadTestSettings(
+                values.getOrDefault("url", "http://localhost:8080"),
+                Integer.parseInt(values.getOrDefault("rate", "200")),
+                Integer.parseInt(values.getOrDefault("warmupSeconds", "10")),
+                Integer.parseInt(values.getOrDefault("durationSeconds", "60")),
+                parseMix(values.getOrDefault("mix", DEFAULT_MIX)),
+                Integer.parseInt(values.getOrDefault("maxInFlight", "1000")),
+                Integer.parseInt(values.getOrDefault("pageSize", "100")),
+                Integer.parseInt(values.getOrDefault("addressBooks", "10")),
+                Integer.parseInt(values.getOrDefault("customersPerAddressBook", "1000")),
+                Integer.parseInt(values.getOrDefault("existingAddressBooks", "0")),
+                Path.of(values.getOrDefault("report", "build/results/loadtest/loadtest.json")));
+        values.keySet().stream()
+                .filter(name -> Arrays.stream(LoadTestSettings.class.getRecordComponents())
+                        .noneMatch(component -> component.getName().equals(name)))
+                .findFirst()
+                .ifPresent(name -> {
+                    throw new IllegalArgumentException("Unknown setting " + name);
+                });
+        if (settings.rate < 1 || settings.durationSeconds < 1 || settings.mix.isEmpty()) {
+            throw new IllegalArgumentException("rate, durationSeconds and mix must be positive");
+        }
+        return settings;
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String entry : mix.split(",")) {
+            var parts = entry.strip().split(":");
+            var weight = Integer.parseInt(parts[1]);
+            if (weight > 0) {
+                weights.put(Endpoint.valueOf(parts[0]), weight);
+            }
+        }
+        return weights;
+    }
+}
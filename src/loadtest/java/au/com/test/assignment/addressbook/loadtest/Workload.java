@@ -0,0 +1,116 @@
+package au.com.test.assignment.addressbook.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+
+/**
+ * The address books requests are made against and the customers added by the load test, which are the ones
+ * it removes. Address books are either created with their customers before the load starts or are the
+ * existing address books 1 to existingAddressBooks, like those of a dataset seeded by ./gradlew seedDataset
+ */
+public class Workload {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String baseUrl;
+
+    private final int pageSize;
+
+    private final Queue<AddedCustomer> addedCustomers = new ConcurrentLinkedQueue<>();
+
+    private long[] addressBooks;
+
+    public Workload(String baseUrl, int pageSize) {
+        this.baseUrl = baseUrl;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Uses the existing address books with ids from 1 to addressBookCount
+     */
+    public void useExistingAddressBooks(int addressBookCount) {
+        addressBooks = LongStream.rangeClosed(1, addressBookCount).toArray();
+    }
+
+    /**
+     * Creates address books and imports their customers in one request per address book
+     */
+    public void createAddressBooks(HttpClient client, int addressBookCount, int customersPerAddressBook)
+            throws IOException, InterruptedException {
+        addressBooks = new long[addressBookCount];
+        for (int i = 0; i < addressBookCount; i++) {
+            var addressBook = send(client, Endpoint.CREATE_ADDRESS_BOOK.request(this));
+            addressBooks[i] = OBJECT_MAPPER.readTree(addressBook).get("id").asLong();
+
+            ArrayNode customers = OBJECT_MAPPER.createArrayNode();
+            for (int j = 0; j < customersPerAddressBook; j++) {
+                customers.add(OBJECT_MAPPER.readTree(randomCustomer()));
+            }
+            send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/address-book/" + addressBooks[i]
+                            + "/customers/import"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(customers)))
+                    .build());
+        }
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public long randomAddressBook() {
+        return addressBooks[ThreadLocalRandom.current().nextInt(addressBooks.length)];
+    }
+
+    /**
+     * @return JSON of a customer with a random name and mobile number
+     */
+    public String randomCustomer() {
+        var random = ThreadLocalRandom.current();
+        return "{\"firstName\":\"Load" + random.nextInt(100_000) + "\",\"lastName\":\"Test" + random.nextInt(100_000)
+                + "\",\"phoneNumber\":\"04" + (10_000_000 + random.nextInt(90_000_000)) + "\"}";
+    }
+
+    /**
+     * Remembers the customer added by a successful {@link Endpoint#ADD_CUSTOMER} request, so it can be removed
+     */
+    public void customerAdded(HttpRequest request, String response) throws IOException {
+        //path is /api/v1/address-book/{addressBookId}/customer
+        var path = request.uri().getPath().split("/");
+        addedCustomers.add(new AddedCustomer(Long.parseLong(path[path.length - 2]),
+                OBJECT_MAPPER.readTree(response).get("id").asLong()));
+    }
+
+    /**
+     * @return a customer added by the load test and not removed yet, null when there is none
+     */
+    public AddedCustomer takeAddedCustomer() {
+        return addedCustomers.poll();
+    }
+
+    private static String send(HttpClient client, HttpRequest request) throws IOException, InterruptedException {
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException(request.method() + " " + request.uri() + " failed with status "
+                    + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    public record AddedCustomer(long addressBookId, long customerId) {
+    }
+}
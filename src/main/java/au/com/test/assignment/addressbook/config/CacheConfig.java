@@ -0,0 +1,41 @@
+package au.com.test.assignment.addressbook.config;
+
+import au.com.test.assignment.addressbook.model.AddressBookView;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String ADDRESS_BOOKS = "addressBooks";
+
+    /**
+     * Caffeine cache (W-TinyLFU eviction) bounded by the number of customers they hold, with statistics
+     * recorded for the cache metrics. Evictions are deferred until the surrounding transaction
+     * commits, so a concurrent read cannot put back data that is about to change
+     */
+    @Bean
+    public CacheManager cacheManager(CacheSettings cacheSettings) {
+        var cacheManager = new CaffeineCacheManager(ADDRESS_BOOKS);
+        cacheManager.setAllowNullValues(false);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumWeight(cacheSettings.getMaximumWeight())
+                .weigher(CacheConfig::weigh)
+                .expireAfterWrite(cacheSettings.getExpireAfterWrite())
+                .recordStats());
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    static int weigh(Object key, Object value) {
+        if (value instanceof AddressBookView addressBook) {
+            return 1 + addressBook.customers().size();
+        }
+        return 1;
+    }
+}
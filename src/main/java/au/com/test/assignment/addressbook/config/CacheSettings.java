@@ -0,0 +1,24 @@
+package au.com.test.assignment.addressbook.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the in-process address book caches
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "address-book.cache")
+public class CacheSettings {
+
+    /**
+     * maximum total weight of each cache, an entry weighs one plus the number of customers it holds
+     */
+    private long maximumWeight = 1_000_000;
+
+    /** time after which an entry is reloaded from the database */
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+}
@@ -0,0 +1,35 @@
+package au.com.test.assignment.addressbook.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the synthetic dataset seeded into an empty database at startup, for benchmarks and load tests
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "address-book.dataset")
+public class DatasetProperties {
+
+    /** seeds the dataset at startup when the database has no address books */
+    private boolean enabled = false;
+
+    /** number of address books */
+    private int addressBooks = 1000;
+
+    /** number of customers across all address books */
+    private long customers = 1_000_000;
+
+    /** seed of the random names and phone numbers, the same seed and settings always give the same dataset */
+    private long seed = 42;
+
+    /** Zipf exponent of the customers per address book, 0 spreads them evenly and larger values favour the first books */
+    private double skew = 1.0;
+
+    /** fraction of the customers of each address book after the first that are copies of customers of earlier books */
+    private double duplicateRate = 0.1;
+
+    /** number of rows sent to the database in one JDBC batch and committed in one transaction */
+    private int batchSize = 10_000;
+}
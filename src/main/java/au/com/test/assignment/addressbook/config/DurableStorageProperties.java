@@ -0,0 +1,26 @@
+package au.com.test.assignment.addressbook.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the snapshots and change log of all customers used to restart quickly
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "address-book.durable-storage")
+public class DurableStorageProperties {
+
+    /** keeps snapshots and a change log of all customers, the in-memory indexes are recovered from them at startup */
+    private boolean enabled = false;
+
+    /** directory of the database, snapshot and change log files */
+    private Path directory = Path.of("data");
+
+    /** time between snapshots, every snapshot starts a new change log */
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+}
@@ -0,0 +1,38 @@
+package au.com.test.assignment.addressbook.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+import java.util.List;
+
+@Configuration
+public class EncodingConfig {
+
+    //endpoints streaming their rows, see StreamingResponseWriter
+    private static final List<String> STREAMING_PATHS = List.of(
+            "/api/v1/address-book/customers",
+            "/api/v1/address-book/*/customers/export");
+
+    /**
+     * Writes and reads request and response bodies as CBOR when the client asks for application/cbor,
+     * with the same Jackson configuration as JSON. Smaller and cheaper to write than JSON for large
+     * customer lists, JSON stays the default
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(ObjectMapper objectMapper) {
+        return new MappingJackson2CborHttpMessageConverter(objectMapper.copyWith(new CBORFactory()));
+    }
+
+    /**
+     * Lets server.compression.min-response-size apply to bodies written by message converters, streamed
+     * bodies are flushed as they are written
+     */
+    @Bean
+    public FilterRegistrationBean<DeferredFlushFilter> deferredFlushFilter() {
+        return new FilterRegistrationBean<>(new DeferredFlushFilter(STREAMING_PATHS));
+    }
+}
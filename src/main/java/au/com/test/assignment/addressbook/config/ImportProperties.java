@@ -0,0 +1,23 @@
+package au.com.test.assignment.addressbook.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the bulk customer import
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "address-book.import")
+public class ImportProperties {
+
+    /** number of customers sent to the database in one JDBC batch */
+    private int batchSize = 500;
+
+    /** number of customers committed in one transaction */
+    private int chunkSize = 5000;
+
+    /** maximum number of row errors listed in an import report, further errors are only counted */
+    private int maxReportedErrors = 1000;
+}
@@ -0,0 +1,114 @@
+package au.com.test.assignment.addressbook.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class MetricsConfig {
+
+    public static final String SERVICE_TIMER = "address.book.service";
+
+    public static final String NOT_FOUND_COUNTER = "address.book.not.found";
+
+    public static final String REQUEST_STATEMENTS = "address.book.request.statements";
+
+    public static final String REQUEST_ENTITIES_LOADED = "address.book.request.entities.loaded";
+
+    public static final String REQUEST_FLUSHES = "address.book.request.flushes";
+
+    public static final String REQUEST_ALLOCATED_BYTES = "address.book.request.allocated.bytes";
+
+    //uri tag of requests no handler pattern matched, as in http.server.requests
+    static final String UNKNOWN_URI = "UNKNOWN";
+
+    /**
+     * Times methods of classes annotated with {@link io.micrometer.core.annotation.Timed}
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer requestStatisticsCustomizer() {
+        var interceptor = new RequestStatisticsInterceptor();
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.INTERCEPTOR, interceptor);
+            hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, interceptor);
+        };
+    }
+
+    /**
+     * Records the SQL statements, entity loads, flushes and allocated bytes of every request as distributions
+     * per endpoint, so a request doing far more work than it should stands out. All of them are counted on the
+     * thread handling the request, work a request hands to other threads is not included. With more than one
+     * shard, the queries {@link au.com.test.assignment.addressbook.service.ShardRouter} runs on the shards are
+     * therefore not counted, and concurrent adds of customers committed together are counted for the request
+     * whose thread commits the batch. Requests no handler matched are tagged with the uri UNKNOWN
+     */
+    @Bean
+    public WebMvcConfigurer requestStatisticsConfigurer(MeterRegistry meterRegistry) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new HandlerInterceptor() {
+                    @Override
+                    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                        RequestStatistics.start();
+                        return true;
+                    }
+
+                    @Override
+                    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                                Object handler, Exception ex) {
+                        var statistics = RequestStatistics.stop();
+                        if (statistics == null) {
+                            return;
+                        }
+                        var pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                        var uri = pattern != null ? pattern.toString() : UNKNOWN_URI;
+                        record(meterRegistry, REQUEST_STATEMENTS, "SQL statements prepared by a request",
+                                request.getMethod(), uri, statistics.getStatements());
+                        record(meterRegistry, REQUEST_ENTITIES_LOADED, "Entities loaded by a request",
+                                request.getMethod(), uri, statistics.getEntitiesLoaded());
+                        record(meterRegistry, REQUEST_FLUSHES, "Persistence context flushes of a request",
+                                request.getMethod(), uri, statistics.getFlushes());
+                        if (statistics.getAllocatedBytes() >= 0) {
+                            DistributionSummary.builder(REQUEST_ALLOCATED_BYTES)
+                                    .description("Bytes allocated on the thread handling a request")
+                                    .baseUnit(BaseUnits.BYTES)
+                                    .tag("method", request.getMethod())
+                                    .tag("uri", uri)
+                                    .register(meterRegistry)
+                                    .record(statistics.getAllocatedBytes());
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    private static void record(MeterRegistry meterRegistry, String name, String description,
+                               String method, String uri, int amount) {
+        DistributionSummary.builder(name)
+                .description(description)
+                .tag("method", method)
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(1_000_000d)
+                .register(meterRegistry)
+                .record(amount);
+    }
+}
@@ -0,0 +1,17 @@
+package au.com.test.assignment.addressbook.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the compact in-memory copy of all customers that reads are served from
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "address-book.read-model")
+public class ReadModelProperties {
+
+    /** serves the customers of an address book and the distinct customers from memory instead of the database */
+    private boolean enabled = false;
+}
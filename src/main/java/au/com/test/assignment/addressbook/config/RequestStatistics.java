@@ -0,0 +1,98 @@
+package au.com.test.assignment.addressbook.config;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the database work done and the bytes allocated by the request handled on the current thread.
+ * Counting only happens between {@link #start()} and {@link #stop()}, work done outside a request or on another
+ * thread is not counted
+ */
+public final class RequestStatistics {
+
+    private static final ThreadLocal<RequestStatistics> CURRENT = new ThreadLocal<>();
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                    && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()
+                    ? threads : null;
+
+    private final long allocatedBytesAtStart = currentThreadAllocatedBytes();
+
+    private long allocatedBytes = -1;
+
+    private int statements;
+
+    private int entitiesLoaded;
+
+    private int flushes;
+
+    private RequestStatistics() {
+    }
+
+    /**
+     * Starts counting for the current thread
+     */
+    public static void start() {
+        CURRENT.set(new RequestStatistics());
+    }
+
+    /**
+     * Stops counting for the current thread
+     * @return what was counted since {@link #start()}, null when counting was not started
+     */
+    public static RequestStatistics stop() {
+        var statistics = CURRENT.get();
+        CURRENT.remove();
+        if (statistics != null && statistics.allocatedBytesAtStart >= 0) {
+            statistics.allocatedBytes = currentThreadAllocatedBytes() - statistics.allocatedBytesAtStart;
+        }
+        return statistics;
+    }
+
+    /**
+     * @return bytes allocated by the current thread since it started, -1 when the JVM does not measure it
+     */
+    public static long currentThreadAllocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    static void statementPrepared() {
+        var statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.statements++;
+        }
+    }
+
+    static void entityLoaded() {
+        var statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.entitiesLoaded++;
+        }
+    }
+
+    static void flushed() {
+        var statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.flushes++;
+        }
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public int getEntitiesLoaded() {
+        return entitiesLoaded;
+    }
+
+    public int getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * @return bytes allocated on the thread of the request, -1 when the JVM does not measure it
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
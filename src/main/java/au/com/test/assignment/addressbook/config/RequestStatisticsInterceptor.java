@@ -0,0 +1,31 @@
+package au.com.test.assignment.addressbook.config;
+
+import org.hibernate.Interceptor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.type.Type;
+
+import java.util.Iterator;
+
+/**
+ * Hibernate interceptor feeding {@link RequestStatistics} with every SQL statement prepared,
+ * entity loaded and flush done. Shared by all sessions, so it keeps no state of its own
+ */
+class RequestStatisticsInterceptor implements Interceptor, StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestStatistics.statementPrepared();
+        return sql;
+    }
+
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        RequestStatistics.entityLoaded();
+        return false;
+    }
+
+    @Override
+    public void postFlush(Iterator<Object> entities) {
+        RequestStatistics.flushed();
+    }
+}
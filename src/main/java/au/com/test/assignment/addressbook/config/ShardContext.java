@@ -0,0 +1,43 @@
+package au.com.test.assignment.addressbook.config;
+
+/**
+ * The shard the database work of the current thread is routed to. Connections are taken from the shard set
+ * when they are opened, so the shard has to be set before the transaction that uses them begins.
+ * Work done without a shard set goes to the first shard
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return shard of the current thread, 0 when none is set
+     */
+    public static int current() {
+        var shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    /**
+     * Routes the current thread to the shard until {@link #exit} is called with the returned value
+     * @return shard set before, null when none was set
+     */
+    public static Integer enter(int shard) {
+        var previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    /**
+     * Routes the current thread back to the shard set before {@link #enter}
+     */
+    public static void exit(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
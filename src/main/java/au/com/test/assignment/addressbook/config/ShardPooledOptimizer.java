@@ -0,0 +1,64 @@
+package au.com.test.assignment.addressbook.config;
+
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.InitialValueAwareOptimizer;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.PooledOptimizer;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pooled id optimizer keeping a pool of ids per shard, so an id taken from the sequence of one shard is never
+ * handed out on another. Hibernate builds it for every sequence by its name, see hibernate.id.optimizer.pooled.preferred
+ */
+public class ShardPooledOptimizer implements Optimizer, InitialValueAwareOptimizer {
+
+    private final Class<?> returnClass;
+
+    private final int incrementSize;
+
+    private final Map<Integer, PooledOptimizer> pools = new ConcurrentHashMap<>();
+
+    private volatile long initialValue = -1;
+
+    public ShardPooledOptimizer(Class<?> returnClass, int incrementSize) {
+        this.returnClass = returnClass;
+        this.incrementSize = incrementSize;
+    }
+
+    @Override
+    public Serializable generate(AccessCallback callback) {
+        return pool().generate(callback);
+    }
+
+    @Override
+    public IntegralDataTypeHolder getLastSourceValue() {
+        return pool().getLastSourceValue();
+    }
+
+    @Override
+    public int getIncrementSize() {
+        return incrementSize;
+    }
+
+    @Override
+    public boolean applyIncrementSizeToSourceValues() {
+        return true;
+    }
+
+    @Override
+    public void injectInitialValue(long initialValue) {
+        this.initialValue = initialValue;
+    }
+
+    private PooledOptimizer pool() {
+        return pools.computeIfAbsent(ShardContext.current(), shard -> {
+            var pool = new PooledOptimizer(returnClass, incrementSize);
+            pool.injectInitialValue(initialValue);
+            return pool;
+        });
+    }
+}
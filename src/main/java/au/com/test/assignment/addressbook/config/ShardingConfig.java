@@ -0,0 +1,139 @@
+package au.com.test.assignment.addressbook.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.model.relational.Namespace;
+import org.hibernate.boot.model.relational.Sequence;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.jpa.boot.spi.JpaSettings;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Partitions AddressBooks across address-book.sharding.shards databases when there is more than one.
+ * The first shard is the database of spring.datasource.url, the others are H2 databases named after it with
+ * a _shard suffix, standing in for databases on separate nodes. Connections are routed to the shard of the
+ * current thread, see {@link ShardContext}
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("${address-book.sharding.shards:1} > 1")
+public class ShardingConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, ShardingProperties shardingProperties) {
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int shard = 0; shard < shardingProperties.getShards(); shard++) {
+            var dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(shardUrl(dataSourceProperties.determineUrl(), shard))
+                    .build();
+            dataSource.setPoolName("shard-" + shard);
+            shards.add(dataSource);
+        }
+        log.info("Address books are partitioned across {} shards", shards.size());
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * Creates or updates the tables of every shard after the first like Hibernate does those of the first one,
+     * as set by spring.jpa.hibernate.ddl-auto, and moves the id sequences of every shard to the ids of the shard.
+     * Ids are pooled per shard, see {@link ShardPooledOptimizer}
+     */
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(DataSource dataSource,
+                                                               ShardingProperties shardingProperties) {
+        IntegratorProvider integrators = () -> List.of(new ShardSchemaIntegrator(
+                new JdbcTemplate(dataSource), shardingProperties));
+        return hibernateProperties -> {
+            hibernateProperties.put(JpaSettings.INTEGRATOR_PROVIDER, integrators);
+            hibernateProperties.put(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, ShardPooledOptimizer.class.getName());
+        };
+    }
+
+    static String shardUrl(String url, int shard) {
+        if (shard == 0) {
+            return url;
+        }
+        var options = url.indexOf(';');
+        return options < 0
+                ? url + "_shard" + shard
+                : url.substring(0, options) + "_shard" + shard + url.substring(options);
+    }
+
+    private record ShardSchemaIntegrator(JdbcTemplate jdbcTemplate, ShardingProperties shardingProperties)
+            implements Integrator {
+
+        @Override
+        public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                              SessionFactoryImplementor sessionFactory) {
+            var serviceRegistry = bootstrapContext.getServiceRegistry();
+            var settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+            for (int shard = 1; shard < shardingProperties.getShards(); shard++) {
+                var previous = ShardContext.enter(shard);
+                try {
+                    SchemaManagementToolCoordinator.process(metadata, serviceRegistry, settings, action -> {
+                    });
+                } finally {
+                    ShardContext.exit(previous);
+                }
+            }
+            //observers run in the order they were added, so the schema of the first shard is there by then
+            sessionFactory.addObserver(new SessionFactoryObserver() {
+                @Override
+                public void sessionFactoryCreated(SessionFactory factory) {
+                    for (int shard = 0; shard < shardingProperties.getShards(); shard++) {
+                        var previous = ShardContext.enter(shard);
+                        try {
+                            for (Namespace namespace : metadata.getDatabase().getNamespaces()) {
+                                for (Sequence sequence : namespace.getSequences()) {
+                                    moveToShard(sequence, shard);
+                                }
+                            }
+                        } finally {
+                            ShardContext.exit(previous);
+                        }
+                    }
+                }
+            });
+        }
+
+        /**
+         * Restarts the sequence at the first id of the shard unless it is there already, and ends it at the last
+         * id of the shard, so a shard that has used up its ids fails to insert instead of taking ids of the next
+         * shard. The pooled optimizer takes the ids up to the next value of the sequence
+         */
+        private void moveToShard(Sequence sequence, int shard) {
+            var name = sequence.getName().getSequenceName().getText();
+            var nextValues = jdbcTemplate.queryForList("select base_value from information_schema.sequences " +
+                    "where sequence_name = upper(?)", Long.class, name);
+            var firstValue = shard * shardingProperties.getIdRange() + sequence.getIncrementSize();
+            var restart = !nextValues.isEmpty() && nextValues.get(0) < firstValue ? " restart with " + firstValue : "";
+            jdbcTemplate.execute("alter sequence " + name + restart
+                    + " maxvalue " + (shard + 1) * shardingProperties.getIdRange());
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory,
+                                 SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
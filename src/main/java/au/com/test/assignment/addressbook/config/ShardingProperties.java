@@ -0,0 +1,24 @@
+package au.com.test.assignment.addressbook.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the partitioning of AddressBooks across several databases, see
+ * {@link au.com.test.assignment.addressbook.service.ShardRouter}
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "address-book.sharding")
+public class ShardingProperties {
+
+    /** number of databases, the first one is spring.datasource.url and the others are H2 databases named after it */
+    private int shards = 1;
+
+    /**
+     * number of address book and customer ids of each shard, shard n holds the ids from n * idRange + 1.
+     * Snapshots of durable storage keep customer ids as ints, so shards * idRange must stay below 2^31
+     */
+    private long idRange = 100_000_000L;
+}
@@ -0,0 +1,25 @@
+package au.com.test.assignment.addressbook.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the coalescing of concurrent customer adds to the same AddressBook
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "address-book.write-coalescing")
+public class WriteCoalescingProperties {
+
+    /**
+     * longest time the first add of a batch waits for further adds, it only waits while other adds to the
+     * address book are pending. Zero adds every customer on its own
+     */
+    private Duration maxDelay = Duration.ofMillis(2);
+
+    /** number of adds after which a batch is committed without waiting any longer */
+    private int maxBatchSize = 100;
+}
@@ -4,6 +4,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
 import lombok.*;
+import org.hibernate.Hibernate;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 
 import java.io.Serializable;
@@ -19,22 +20,34 @@ import java.util.Set;
 public class AddressBook implements Serializable {
 
     @Id
-    @GeneratedValue(strategy= GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "address_book_seq")
+    @SequenceGenerator(name = "address_book_seq", sequenceName = "address_book_seq", allocationSize = 50)
     @Schema(accessMode = Schema.AccessMode.READ_ONLY)
     private Long id;
 
     @NotEmpty(message = "Please provide name for address book")
     private String name;
 
-    @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "addressBook", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private Set<Customer> customers;
 
+    /**
+     * Customers own the relationship, so customers supplied with a new AddressBook
+     * are pointed back at it before they are cascaded
+     */
+    @PrePersist
+    void linkCustomers() {
+        if (customers != null) {
+            customers.forEach(customer -> customer.setAddressBook(this));
+        }
+    }
+
     @Override
     public String toString() {
         return "AddressBook{" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", customers=" + customers +
+                ", customers=" + (Hibernate.isInitialized(customers) ? customers : "<not loaded>") +
                 '}';
     }
 }
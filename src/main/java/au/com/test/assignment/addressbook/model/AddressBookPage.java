@@ -0,0 +1,11 @@
+package au.com.test.assignment.addressbook.model;
+
+import java.util.List;
+
+/**
+ * A page of AddressBooks, as {@link AddressBookSummary} or with their customers as {@link AddressBookView}
+ * @param addressBooks address books on this page in id order
+ * @param nextCursor cursor to pass to retrieve the next page, null when this is the last page
+ */
+public record AddressBookPage<T>(List<T> addressBooks, String nextCursor) {
+}
@@ -0,0 +1,8 @@
+package au.com.test.assignment.addressbook.model;
+
+/**
+ * Id, name and number of customers of an AddressBook, read without loading any customer
+ * @param customerCount number of customers in the address book
+ */
+public record AddressBookSummary(Long id, String name, long customerCount) {
+}
@@ -0,0 +1,16 @@
+package au.com.test.assignment.addressbook.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.List;
+
+/**
+ * Read-only view of an AddressBook with all its customers, read with projections of only the
+ * columns returned, so no AddressBook or Customer entity is loaded
+ * @param customers customers of the address book in id order
+ * @param version version of the customers the view was read at or after, returned as its ETag
+ */
+@JsonPropertyOrder({"id", "name", "customers"})
+public record AddressBookView(Long id, String name, List<CustomerView> customers, @JsonIgnore long version) {
+}
@@ -0,0 +1,113 @@
+package au.com.test.assignment.addressbook.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical form of a customer contact used to recognise the same person across AddressBooks.
+ * Names are compared ignoring case and surrounding or repeated whitespace, phone numbers are
+ * compared in E.164 form
+ */
+public final class ContactKey {
+
+    /**
+     * country calling code assumed for phone numbers written without one
+     */
+    public static final String DEFAULT_COUNTRY_CODE = "61";
+
+    /**
+     * digits of a national number of {@link #DEFAULT_COUNTRY_CODE} without its trunk prefix
+     */
+    public static final int NATIONAL_NUMBER_DIGITS = 9;
+
+    /**
+     * most digits an E.164 phone number can have
+     */
+    public static final int MAX_E164_DIGITS = 15;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Pattern NON_DIGITS = Pattern.compile("\\D");
+
+    private static final char SEPARATOR = '\u001f';
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ContactKey() {
+    }
+
+    /**
+     * @return canonical key of the contact, normalized names and E.164 phone number joined by a separator
+     */
+    public static String canonicalize(String firstName, String lastName, String phoneNumber) {
+        return normalizeName(firstName) + SEPARATOR + normalizeName(lastName) + SEPARATOR + toE164(phoneNumber);
+    }
+
+    /**
+     * @return the name in lower case with surrounding whitespace removed and inner whitespace collapsed
+     */
+    public static String normalizeName(String name) {
+        if (name == null) {
+            return "";
+        }
+        return WHITESPACE.matcher(name.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Converts a phone number to E.164. Numbers starting with + or 00 keep their country code,
+     * a leading 0 is treated as the national trunk prefix of {@link #DEFAULT_COUNTRY_CODE}. Numbers longer than
+     * a national number that start with {@link #DEFAULT_COUNTRY_CODE} are taken as written with the country code
+     * but without the +, shorter numbers as national numbers without the trunk prefix
+     * @return the phone number as + followed by digits, empty when it contains no digits
+     */
+    public static String toE164(String phoneNumber) {
+        if (phoneNumber == null) {
+            return "";
+        }
+        var trimmed = phoneNumber.strip();
+        var digits = NON_DIGITS.matcher(trimmed).replaceAll("");
+        if (digits.isEmpty()) {
+            return "";
+        }
+        if (trimmed.startsWith("+")) {
+            return "+" + digits;
+        }
+        if (digits.startsWith("00")) {
+            return "+" + digits.substring(2);
+        }
+        if (digits.startsWith("0")) {
+            return "+" + DEFAULT_COUNTRY_CODE + digits.substring(1);
+        }
+        if (digits.length() > NATIONAL_NUMBER_DIGITS && digits.startsWith(DEFAULT_COUNTRY_CODE)) {
+            return "+" + digits;
+        }
+        return "+" + DEFAULT_COUNTRY_CODE + digits;
+    }
+
+    /**
+     * @return digits of the E.164 form of the phone number as a number, 0 when it has no digits
+     * or more than {@link #MAX_E164_DIGITS}
+     */
+    public static long phoneKey(String phoneNumber) {
+        var e164 = toE164(phoneNumber);
+        if (e164.isEmpty() || e164.length() > MAX_E164_DIGITS + 1) {
+            return 0;
+        }
+        return Long.parseLong(e164, 1, e164.length(), 10);
+    }
+
+    /**
+     * @return 64-bit FNV-1a hash of the UTF-8 bytes of the canonical key
+     */
+    public static long hash(String canonicalKey) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : canonicalKey.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
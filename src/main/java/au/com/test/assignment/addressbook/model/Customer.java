@@ -1,10 +1,8 @@
 package au.com.test.assignment.addressbook.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
-import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
-import jakarta.persistence.Id;
+import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
 import lombok.*;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
@@ -18,22 +16,56 @@ import java.util.Objects;
 @Builder
 @EntityScan
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_customer_address_book_contact",
+        columnNames = {"address_book_id", "first_name", "last_name", "phone_number"}),
+        indexes = {
+                @Index(name = "idx_customer_address_book_id", columnList = "address_book_id, id"),
+                @Index(name = "idx_customer_address_book_name", columnList = "address_book_id, last_name, first_name, id"),
+                @Index(name = "idx_customer_contact_hash", columnList = "contact_hash")
+        })
 public class Customer {
 
     @Id
-    @GeneratedValue(strategy= GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
     @Schema(accessMode = Schema.AccessMode.READ_ONLY)
     private Long id;
 
     @NotEmpty(message = "Please provide first Name")
+    @Column(name = "first_name")
     private String firstName;
 
     @NotEmpty(message = "Please provide last Name")
+    @Column(name = "last_name")
     private String lastName;
 
     @NotEmpty(message = "Please provide Mobile or Landline number")
+    @Column(name = "phone_number")
     private String phoneNumber;
 
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "address_book_id")
+    private AddressBook addressBook;
+
+    @JsonIgnore
+    @Column(name = "contact_key")
+    private String contactKey;
+
+    @JsonIgnore
+    @Column(name = "contact_hash")
+    private Long contactHash;
+
+    /**
+     * Stores the canonical key of the contact, used to find the same contact across address books
+     */
+    @PrePersist
+    @PreUpdate
+    void computeContactKey() {
+        contactKey = ContactKey.canonicalize(firstName, lastName, phoneNumber);
+        contactHash = ContactKey.hash(contactKey);
+    }
+
     @Override
     public boolean equals(Object otherCustomer) {
         if (this == otherCustomer) return true;
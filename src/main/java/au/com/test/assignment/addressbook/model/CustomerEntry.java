@@ -0,0 +1,17 @@
+package au.com.test.assignment.addressbook.model;
+
+/**
+ * A customer of an AddressBook as kept by the in-memory customer indexes
+ * @param contactHash hash of the {@link ContactKey} of the customer
+ */
+public record CustomerEntry(Long id, Long addressBookId, Long contactHash,
+                            String firstName, String lastName, String phoneNumber) {
+
+    /**
+     * @param customer a stored customer, so its id and contact hash are set
+     */
+    public static CustomerEntry of(Long addressBookId, Customer customer) {
+        return new CustomerEntry(customer.getId(), addressBookId, customer.getContactHash(),
+                customer.getFirstName(), customer.getLastName(), customer.getPhoneNumber());
+    }
+}
@@ -0,0 +1,17 @@
+package au.com.test.assignment.addressbook.model;
+
+/**
+ * Number of customers with the highest and the sum of their ids, tells whether a copy of the customers holds
+ * the same customers without comparing them one by one
+ */
+public record CustomerIdSummary(long count, long maxId, long idSum) {
+
+    public static final CustomerIdSummary EMPTY = new CustomerIdSummary(0, 0, 0);
+
+    /**
+     * @return summary of the customers of both
+     */
+    public CustomerIdSummary plus(CustomerIdSummary other) {
+        return new CustomerIdSummary(count + other.count, Math.max(maxId, other.maxId), idSum + other.idSum);
+    }
+}
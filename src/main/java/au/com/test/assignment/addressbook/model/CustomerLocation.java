@@ -0,0 +1,7 @@
+package au.com.test.assignment.addressbook.model;
+
+/**
+ * Where a customer is stored, the id of the customer and of its AddressBook
+ */
+public record CustomerLocation(Long customerId, Long addressBookId) {
+}
@@ -0,0 +1,11 @@
+package au.com.test.assignment.addressbook.model;
+
+import java.util.List;
+
+/**
+ * A page of customers of an AddressBook
+ * @param customers customers on this page, in the requested order
+ * @param nextCursor cursor to pass to retrieve the next page, null when this is the last page
+ */
+public record CustomerPage(List<CustomerView> customers, String nextCursor) {
+}
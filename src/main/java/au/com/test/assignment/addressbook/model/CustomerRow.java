@@ -0,0 +1,18 @@
+package au.com.test.assignment.addressbook.model;
+
+/**
+ * A row of an uploaded customer file
+ * @param rowNumber position of the row in the upload, starting at 1
+ * @param customer customer read from the row, null when the row could not be read
+ * @param error reason the row could not be read, null when it was read
+ */
+public record CustomerRow(long rowNumber, Customer customer, String error) {
+
+    public static CustomerRow of(long rowNumber, Customer customer) {
+        return new CustomerRow(rowNumber, customer, null);
+    }
+
+    public static CustomerRow failed(long rowNumber, String error) {
+        return new CustomerRow(rowNumber, null, error);
+    }
+}
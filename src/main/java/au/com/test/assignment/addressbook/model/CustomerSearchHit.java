@@ -0,0 +1,10 @@
+package au.com.test.assignment.addressbook.model;
+
+import java.util.List;
+
+/**
+ * A customer contact matching a name search
+ * @param addressBookIds ids of all address books the contact is in, in ascending order
+ */
+public record CustomerSearchHit(String firstName, String lastName, String phoneNumber, List<Long> addressBookIds) {
+}
@@ -0,0 +1,11 @@
+package au.com.test.assignment.addressbook.model;
+
+/**
+ * Orders customers of an AddressBook can be paged through in
+ */
+public enum CustomerSort {
+    /** by customer id, the order customers were added in */
+    ID,
+    /** by lastName, then firstName */
+    NAME
+}
@@ -0,0 +1,20 @@
+package au.com.test.assignment.addressbook.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Read-only view of a customer contact. Used where customers are read in bulk
+ * and the managed {@link Customer} entity is not needed
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"id", "firstName", "lastName", "phoneNumber"})
+public record CustomerView(Long id, String firstName, String lastName, String phoneNumber) {
+
+    /**
+     * View of a contact that is not a single customer of an address book, so has no id
+     */
+    public CustomerView(String firstName, String lastName, String phoneNumber) {
+        this(null, firstName, lastName, phoneNumber);
+    }
+}
@@ -0,0 +1,42 @@
+package au.com.test.assignment.addressbook.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.*;
+
+/**
+ * A customer contact that is in at least one AddressBook, identified by its {@link ContactKey}. Contacts are
+ * read in order of the hash of their key, which is indexed, different contacts may share a hash.
+ * referenceCount is the number of customers across all address books with that key
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(indexes = @Index(name = "idx_distinct_customer_contact_hash", columnList = "contact_hash"))
+public class DistinctCustomer {
+
+    @Id
+    @Column(name = "contact_key")
+    private String contactKey;
+
+    @Column(name = "contact_hash")
+    private Long contactHash;
+
+    @Column(name = "first_name")
+    private String firstName;
+
+    @Column(name = "last_name")
+    private String lastName;
+
+    @Column(name = "phone_number")
+    private String phoneNumber;
+
+    @Column(name = "reference_count")
+    private long referenceCount;
+}
@@ -0,0 +1,13 @@
+package au.com.test.assignment.addressbook.model;
+
+/**
+ * A distinct customer of one shard together with its {@link ContactKey} and the hash of the key, read to merge
+ * the distinct customers of all shards
+ */
+public record DistinctCustomerEntry(Long contactHash, String contactKey, String firstName, String lastName,
+                                    String phoneNumber) {
+
+    public CustomerView toView() {
+        return new CustomerView(firstName, lastName, phoneNumber);
+    }
+}
@@ -0,0 +1,50 @@
+package au.com.test.assignment.addressbook.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk customer import. Only the first errors are listed,
+ * the rest are counted in failed
+ */
+@Getter
+@NoArgsConstructor
+public class ImportReport {
+
+    private long imported;
+
+    private long duplicates;
+
+    private long failed;
+
+    private List<RowError> errors = new ArrayList<>();
+
+    @JsonIgnore
+    private int maxReportedErrors = Integer.MAX_VALUE;
+
+    public ImportReport(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public void recordImported(long count) {
+        imported += count;
+    }
+
+    public void recordDuplicates(long count) {
+        duplicates += count;
+    }
+
+    public void recordError(long rowNumber, String message) {
+        failed++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new RowError(rowNumber, message));
+        }
+    }
+
+    public record RowError(long row, String message) {
+    }
+}
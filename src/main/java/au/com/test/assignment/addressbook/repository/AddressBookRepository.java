@@ -1,8 +1,38 @@
 package au.com.test.assignment.addressbook.repository;
 
 import au.com.test.assignment.addressbook.model.AddressBook;
-import org.springframework.data.repository.CrudRepository;
+import au.com.test.assignment.addressbook.model.AddressBookSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface AddressBookRepository extends CrudRepository<AddressBook, Long> {
+import java.util.List;
+import java.util.Optional;
 
+public interface AddressBookRepository extends JpaRepository<AddressBook, Long> {
+
+    /**
+     * Name of an AddressBook, read without loading the address book and its customers
+     */
+    @Query("select a.name from AddressBook a where a.id = :addressBookId")
+    Optional<String> findNameById(@Param("addressBookId") Long addressBookId);
+
+    /**
+     * Summary of an AddressBook. Customers are counted on the index of their address book id,
+     * so no customer row is read
+     */
+    @Query("select new au.com.test.assignment.addressbook.model.AddressBookSummary(a.id, a.name, " +
+            "(select count(c.id) from Customer c where c.addressBook.id = a.id)) " +
+            "from AddressBook a where a.id = :addressBookId")
+    Optional<AddressBookSummary> findSummaryById(@Param("addressBookId") Long addressBookId);
+
+    /**
+     * Summaries of the AddressBooks after the given id in id order, see {@link #findSummaryById}.
+     * Read in one statement whatever the size of the page
+     */
+    @Query("select new au.com.test.assignment.addressbook.model.AddressBookSummary(a.id, a.name, " +
+            "(select count(c.id) from Customer c where c.addressBook.id = a.id)) " +
+            "from AddressBook a where a.id > :afterId order by a.id")
+    List<AddressBookSummary> findSummaryPageOrderedById(@Param("afterId") Long afterId, Pageable pageable);
 }
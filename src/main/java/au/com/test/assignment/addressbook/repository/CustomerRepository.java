@@ -0,0 +1,141 @@
+package au.com.test.assignment.addressbook.repository;
+
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerIdSummary;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface CustomerRepository extends JpaRepository<Customer, Long> {
+
+    /**
+     * Looks up a customer contact of an AddressBook using the per address book unique key
+     */
+    Optional<Customer> findByAddressBookIdAndFirstNameAndLastNameAndPhoneNumber(
+            Long addressBookId, String firstName, String lastName, String phoneNumber);
+
+    /**
+     * Finds customer contacts of an AddressBook with any of the given phone numbers
+     */
+    List<Customer> findByAddressBookIdAndPhoneNumberIn(Long addressBookId, Collection<String> phoneNumbers);
+
+    /**
+     * All customers of an AddressBook ordered by id, only the columns of the view are read
+     */
+    @Query("select new au.com.test.assignment.addressbook.model.CustomerView(" +
+            "c.id, c.firstName, c.lastName, c.phoneNumber) " +
+            "from Customer c where c.addressBook.id = :addressBookId order by c.id")
+    List<CustomerView> findAllByAddressBookId(@Param("addressBookId") Long addressBookId);
+
+    /**
+     * Keyset page of customers of an AddressBook ordered by id
+     * @param afterId id of the last customer of the previous page, 0 for the first page
+     * @param pageable only the page size is used, the page number must be 0
+     */
+    @Query("select new au.com.test.assignment.addressbook.model.CustomerView(" +
+            "c.id, c.firstName, c.lastName, c.phoneNumber) " +
+            "from Customer c where c.addressBook.id = :addressBookId and c.id > :afterId order by c.id")
+    List<CustomerView> findPageOrderedById(@Param("addressBookId") Long addressBookId,
+                                           @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * First keyset page of customers of an AddressBook ordered by lastName, firstName and id
+     * @param pageable only the page size is used, the page number must be 0
+     */
+    @Query("select new au.com.test.assignment.addressbook.model.CustomerView(" +
+            "c.id, c.firstName, c.lastName, c.phoneNumber) " +
+            "from Customer c where c.addressBook.id = :addressBookId " +
+            "order by c.lastName, c.firstName, c.id")
+    List<CustomerView> findFirstPageOrderedByName(@Param("addressBookId") Long addressBookId, Pageable pageable);
+
+    /**
+     * Keyset page of customers of an AddressBook ordered by lastName, firstName and id,
+     * starting after the customer the supplied values belong to
+     * @param pageable only the page size is used, the page number must be 0
+     */
+    @Query("select new au.com.test.assignment.addressbook.model.CustomerView(" +
+            "c.id, c.firstName, c.lastName, c.phoneNumber) " +
+            "from Customer c where c.addressBook.id = :addressBookId " +
+            "and (c.lastName > :lastName or (c.lastName = :lastName " +
+            "and (c.firstName > :firstName or (c.firstName = :firstName and c.id > :afterId)))) " +
+            "order by c.lastName, c.firstName, c.id")
+    List<CustomerView> findPageOrderedByName(@Param("addressBookId") Long addressBookId,
+                                             @Param("lastName") String lastName,
+                                             @Param("firstName") String firstName,
+                                             @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Streams all customers of an AddressBook ordered by id with a forward-only cursor.
+     * Must be consumed inside a transaction and closed after use
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new au.com.test.assignment.addressbook.model.CustomerView(" +
+            "c.id, c.firstName, c.lastName, c.phoneNumber) " +
+            "from Customer c where c.addressBook.id = :addressBookId order by c.id")
+    Stream<CustomerView> streamByAddressBookId(@Param("addressBookId") Long addressBookId);
+
+    /**
+     * Streams all customers of all AddressBooks, used to build the in-memory customer indexes.
+     * Must be consumed inside a transaction and closed after use
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new au.com.test.assignment.addressbook.model.CustomerEntry(" +
+            "c.id, c.addressBook.id, c.contactHash, c.firstName, c.lastName, c.phoneNumber) from Customer c")
+    Stream<CustomerEntry> streamAllEntries();
+
+    /**
+     * Number, highest id and sum of the ids of all customers, to check a copy of the customers against
+     */
+    @Query("select new au.com.test.assignment.addressbook.model.CustomerIdSummary(" +
+            "count(c), coalesce(max(c.id), 0L), coalesce(sum(c.id), 0L)) from Customer c")
+    CustomerIdSummary summarizeIds();
+
+    /**
+     * Customers of all the given AddressBooks in one statement, ordered by address book and id
+     */
+    @Query("select new au.com.test.assignment.addressbook.model.CustomerEntry(" +
+            "c.id, c.addressBook.id, c.contactHash, c.firstName, c.lastName, c.phoneNumber) from Customer c " +
+            "where c.addressBook.id in :addressBookIds order by c.addressBook.id, c.id")
+    List<CustomerEntry> findAllEntriesByAddressBookIdIn(@Param("addressBookIds") Collection<Long> addressBookIds);
+
+    /**
+     * Locks the given customer contacts of an AddressBook for the rest of the transaction
+     * @return ids of the customers that are in the address book
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.id from Customer c where c.addressBook.id = :addressBookId and c.id in :customerIds")
+    List<Long> lockFromAddressBook(@Param("addressBookId") Long addressBookId,
+                                   @Param("customerIds") Collection<Long> customerIds);
+
+    /**
+     * Deletes a customer contact of an AddressBook without loading the address book
+     * @return number of customers removed, 0 when the customer is not in the address book
+     */
+    @Modifying
+    @Query("delete from Customer c where c.addressBook.id = :addressBookId and c.id = :customerId")
+    int deleteFromAddressBook(@Param("addressBookId") Long addressBookId, @Param("customerId") Long customerId);
+
+    /**
+     * Deletes the given customer contacts of an AddressBook in a single statement.
+     * Ids of customers that are not in the address book are ignored
+     * @return number of customers removed
+     */
+    @Modifying
+    @Query("delete from Customer c where c.addressBook.id = :addressBookId and c.id in :customerIds")
+    int deleteAllFromAddressBook(@Param("addressBookId") Long addressBookId,
+                                 @Param("customerIds") Collection<Long> customerIds);
+}
@@ -0,0 +1,84 @@
+package au.com.test.assignment.addressbook.repository;
+
+import au.com.test.assignment.addressbook.model.CustomerView;
+import au.com.test.assignment.addressbook.model.DistinctCustomer;
+import au.com.test.assignment.addressbook.model.DistinctCustomerEntry;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/**
+ * Maintains the reference counted set of distinct customers across all AddressBooks.
+ * Every statement handles any number of customers of one address book at once
+ */
+public interface DistinctCustomerRepository extends JpaRepository<DistinctCustomer, String> {
+
+    /**
+     * Counts the given customers, which must already be stored, as references of their contact keys
+     * @return number of distinct customers created or updated
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "merge into distinct_customer d " +
+            "using (select c.contact_key, c.contact_hash, min(c.first_name) first_name, min(c.last_name) last_name, " +
+            "min(c.phone_number) phone_number, count(*) customers from customer c " +
+            "where c.address_book_id = :addressBookId and c.id in (:customerIds) " +
+            "group by c.contact_key, c.contact_hash) s " +
+            "on d.contact_key = s.contact_key " +
+            "when matched then update set reference_count = d.reference_count + s.customers " +
+            "when not matched then insert (contact_key, contact_hash, first_name, last_name, phone_number, " +
+            "reference_count) values (s.contact_key, s.contact_hash, s.first_name, s.last_name, s.phone_number, " +
+            "s.customers)")
+    int registerCustomers(@Param("addressBookId") Long addressBookId,
+                          @Param("customerIds") Collection<Long> customerIds);
+
+    /**
+     * Removes the given customers as references of their contact keys.
+     * Must run before the customers themselves are deleted
+     * @return number of distinct customers updated
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "update distinct_customer d set reference_count = reference_count - " +
+            "(select count(*) from customer c where c.address_book_id = :addressBookId " +
+            "and c.id in (:customerIds) and c.contact_key = d.contact_key) " +
+            "where d.contact_key in (select c.contact_key from customer c " +
+            "where c.address_book_id = :addressBookId and c.id in (:customerIds))")
+    int releaseCustomers(@Param("addressBookId") Long addressBookId,
+                         @Param("customerIds") Collection<Long> customerIds);
+
+    /**
+     * Deletes distinct customers of the given customers that are no longer referenced.
+     * Must run after {@link #releaseCustomers} and before the customers themselves are deleted
+     * @return number of distinct customers deleted
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from distinct_customer d where d.reference_count <= 0 " +
+            "and d.contact_key in (select c.contact_key from customer c " +
+            "where c.address_book_id = :addressBookId and c.id in (:customerIds))")
+    int deleteUnreferenced(@Param("addressBookId") Long addressBookId,
+                           @Param("customerIds") Collection<Long> customerIds);
+
+    /**
+     * Streams all distinct customers. Must be consumed inside a transaction and closed after use
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new au.com.test.assignment.addressbook.model.CustomerView(" +
+            "d.firstName, d.lastName, d.phoneNumber) from DistinctCustomer d")
+    Stream<CustomerView> streamAll();
+
+    /**
+     * Streams all distinct customers in contact hash order, along the contact hash index, so the distinct
+     * customers of several shards can be merged. Must be consumed inside a transaction and closed after use
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new au.com.test.assignment.addressbook.model.DistinctCustomerEntry(" +
+            "d.contactHash, d.contactKey, d.firstName, d.lastName, d.phoneNumber) from DistinctCustomer d " +
+            "order by d.contactHash")
+    Stream<DistinctCustomerEntry> streamAllOrderedByContactHash();
+}
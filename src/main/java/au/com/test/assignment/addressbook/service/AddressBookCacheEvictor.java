@@ -0,0 +1,44 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.CacheConfig;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Evicts the cached AddressBook as soon as a change of its customers commits, before its version is bumped,
+ * so the new version is never served from the cache. {@link EvictAddressBookCaches} evicts it again once the
+ * changing method returns, dropping a view read in between
+ */
+@Service
+public class AddressBookCacheEvictor {
+
+    private final Cache addressBooks;
+
+    public AddressBookCacheEvictor(CacheManager cacheManager) {
+        this.addressBooks = cacheManager.getCache(CacheConfig.ADDRESS_BOOKS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(AddressBookVersions.BEFORE_VERSION_BUMP)
+    public void onCustomersAdded(CustomersAddedEvent event) {
+        event.customers().stream()
+                .map(CustomerEntry::addressBookId)
+                .distinct()
+                .forEach(this::evict);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(AddressBookVersions.BEFORE_VERSION_BUMP)
+    public void onCustomersRemoved(CustomersRemovedEvent event) {
+        evict(event.addressBookId());
+    }
+
+    //evictIfPresent is immediate, a transaction aware cache would defer evict to a commit that has already happened
+    private void evict(Long addressBookId) {
+        addressBooks.evictIfPresent(addressBookId);
+    }
+}
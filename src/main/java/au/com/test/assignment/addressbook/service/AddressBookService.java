@@ -1,68 +1,150 @@
 package au.com.test.assignment.addressbook.service;
 
+import au.com.test.assignment.addressbook.config.CacheConfig;
+import au.com.test.assignment.addressbook.config.MetricsConfig;
 import au.com.test.assignment.addressbook.exception.AddressBookException;
 import au.com.test.assignment.addressbook.exception.AddressBookNotFoundException;
 import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.AddressBookPage;
+import au.com.test.assignment.addressbook.model.AddressBookSummary;
+import au.com.test.assignment.addressbook.model.AddressBookView;
 import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerPage;
+import au.com.test.assignment.addressbook.model.CustomerSort;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import au.com.test.assignment.addressbook.model.DistinctCustomerEntry;
 import au.com.test.assignment.addressbook.repository.AddressBookRepository;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import au.com.test.assignment.addressbook.repository.DistinctCustomerRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-
-import java.util.Collections;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Service
 @Slf4j
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class AddressBookService {
 
+    static final int MAX_WRITE_ATTEMPTS = 5;
+
+    //address books on a page read with all their customers, a page holds every customer of each of them
+    static final int MAX_PAGE_SIZE_WITH_CUSTOMERS = 20;
+
+    //SQL state of a unique constraint violation
+    private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+
     private final AddressBookRepository addressBookRepository;
 
-    public AddressBookService(AddressBookRepository addressBookRepository) {
+    private final CustomerRepository customerRepository;
+
+    private final DistinctCustomerRepository distinctCustomerRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final CustomerReadModel customerReadModel;
+
+    private final AddressBookVersions addressBookVersions;
+
+    private final ShardRouter shardRouter;
+
+    private final DistinctCustomerCount distinctCustomerCount;
+
+    private final Cache addressBooks;
+
+    public AddressBookService(AddressBookRepository addressBookRepository,
+                              CustomerRepository customerRepository,
+                              DistinctCustomerRepository distinctCustomerRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              TransactionTemplate transactionTemplate,
+                              CustomerReadModel customerReadModel,
+                              AddressBookVersions addressBookVersions,
+                              ShardRouter shardRouter,
+                              DistinctCustomerCount distinctCustomerCount,
+                              CacheManager cacheManager) {
         this.addressBookRepository = addressBookRepository;
+        this.customerRepository = customerRepository;
+        this.distinctCustomerRepository = distinctCustomerRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.customerReadModel = customerReadModel;
+        this.addressBookVersions = addressBookVersions;
+        this.shardRouter = shardRouter;
+        this.distinctCustomerCount = distinctCustomerCount;
+        this.addressBooks = cacheManager.getCache(CacheConfig.ADDRESS_BOOKS);
     }
 
     /**
-     * Creates new AddressBook with specified details
+     * Creates new AddressBook with specified details. Shards take new address books in turn, the address book
+     * gets an id of its shard from the id sequence of that shard
      * @param addressBook to be created
      * @return  created AddressBook
      */
     public AddressBook createAddressBook(AddressBook addressBook) {
         try {
-            return addressBookRepository.save(addressBook);
+            return shardRouter.onShard(shardRouter.nextShard(),
+                    () -> transactionTemplate.execute(status -> insertAddressBook(addressBook)));
         } catch (Exception ex) {
             log.error("Error while creating address book", ex);
             throw new AddressBookException(ex.getMessage());
         }
     }
 
+    private AddressBook insertAddressBook(AddressBook addressBook) {
+        var savedAddressBook = addressBookRepository.saveAndFlush(addressBook);
+
+        if (savedAddressBook.getCustomers() != null && !savedAddressBook.getCustomers().isEmpty()) {
+            distinctCustomerRepository.registerCustomers(savedAddressBook.getId(),
+                    savedAddressBook.getCustomers().stream().map(Customer::getId).toList());
+            eventPublisher.publishEvent(new CustomersAddedEvent(savedAddressBook.getCustomers().stream()
+                    .map(customer -> CustomerEntry.of(savedAddressBook.getId(), customer)).toList()));
+        }
+        return savedAddressBook;
+    }
+
     /**
-     * Adds Customer contact to  existing AddressBook
+     * Adds Customer contact to  existing AddressBook. The address book itself is not loaded or locked,
+     * the customer is inserted directly and an existing contact with the same firstName,
+     * lastName and phoneNumber is returned instead of being added twice. When a concurrent add of the
+     * same contact wins the race the unique key rejects this insert, and the retry returns that contact
      * @param addressBookId id of the existing address book
      * @param customer customer contact to be added to existing address book
      * @return  Customer added to address book
      */
+    @EvictAddressBookCaches
+    @OnAddressBookShard
     public Customer addCustomerToAddressBook(Long addressBookId, Customer customer) {
         try {
-            var addressBook = addressBookRepository.findById(addressBookId);
-
-            if (addressBook.isPresent()) {
-                var retrievedAddressBook = addressBook.get();
-                retrievedAddressBook.getCustomers().add(customer);
-                var updatedAddressBook = addressBookRepository.save(retrievedAddressBook);
-
-                log.info("Customer successfully added to Address Book with id:{}", addressBookId);
-
-                return updatedAddressBook.getCustomers()
-                        .stream()
-                        .filter(cust -> cust.equals(customer)).findFirst()
-                        .orElse(null);
-            } else {
-                log.error("Address Book not found");
-                throw new AddressBookNotFoundException("Address Book Not Found");
-            }
+            return writeWithRetry(() -> insertCustomer(addressBookId, customer));
 
         } catch(AddressBookNotFoundException addressBookNotFoundException) {
             throw addressBookNotFoundException;
@@ -73,26 +155,109 @@ public class AddressBookService {
         }
     }
 
+    private Customer insertCustomer(Long addressBookId, Customer customer) {
+        if (!addressBookRepository.existsById(addressBookId)) {
+            log.error("Address Book not found");
+            throw new AddressBookNotFoundException("Address Book Not Found");
+        }
+
+        var existingCustomer = customerRepository.findByAddressBookIdAndFirstNameAndLastNameAndPhoneNumber(
+                addressBookId, customer.getFirstName(), customer.getLastName(), customer.getPhoneNumber());
+
+        if (existingCustomer.isPresent()) {
+            log.info("Customer already exists in Address Book with id:{}", addressBookId);
+            return existingCustomer.get();
+        }
+
+        customer.setId(null);
+        customer.setAddressBook(addressBookRepository.getReferenceById(addressBookId));
+        var savedCustomer = customerRepository.saveAndFlush(customer);
+        distinctCustomerRepository.registerCustomers(addressBookId, List.of(savedCustomer.getId()));
+        eventPublisher.publishEvent(new CustomersAddedEvent(List.of(CustomerEntry.of(addressBookId, savedCustomer))));
+
+        log.info("Customer successfully added to Address Book with id:{}", addressBookId);
+
+        return savedCustomer;
+    }
+
     /**
-     * Removes Customer contact from  existing AddressBook
+     * Adds Customer contacts to existing AddressBook in one transaction with one batched insert.
+     * Contacts already in the address book, or given more than once, are stored only once
      * @param addressBookId id of the existing address book
-     * @param customerId the customer contactId to be removed from existing address book
+     * @param customers customer contacts to be added to existing address book
+     * @return the stored customer of each given contact, in the given order
      */
-    public void removeCustomerFromAddressBook(Long addressBookId, final Long customerId) {
+    @EvictAddressBookCaches
+    @OnAddressBookShard
+    public List<Customer> addCustomersToAddressBook(Long addressBookId, List<Customer> customers) {
         try {
-            var addressBook = addressBookRepository.findById(addressBookId);
+            return writeWithRetry(() -> insertCustomers(addressBookId, customers));
 
-            if (addressBook.isEmpty()) {
-                throw new AddressBookNotFoundException("AddressBook not found");
+        } catch(AddressBookNotFoundException addressBookNotFoundException) {
+            throw addressBookNotFoundException;
+
+        } catch (Exception ex) {
+            log.error("Error while adding new customers to address book", ex);
+            throw new AddressBookException(ex.getMessage());
+        }
+    }
+
+    private List<Customer> insertCustomers(Long addressBookId, List<Customer> customers) {
+        if (!addressBookRepository.existsById(addressBookId)) {
+            log.error("Address Book not found");
+            throw new AddressBookNotFoundException("Address Book Not Found");
+        }
+
+        //Customer equality is the per address book unique key, so the map holds every contact already present
+        var phoneNumbers = customers.stream().map(Customer::getPhoneNumber).collect(Collectors.toSet());
+        Map<Customer, Customer> contacts = new HashMap<>();
+        customerRepository.findByAddressBookIdAndPhoneNumberIn(addressBookId, phoneNumbers)
+                .forEach(existingCustomer -> contacts.put(existingCustomer, existingCustomer));
+
+        var addressBook = addressBookRepository.getReferenceById(addressBookId);
+        List<Customer> storedCustomers = new ArrayList<>(customers.size());
+        List<Customer> newCustomers = new ArrayList<>();
+        for (Customer customer : customers) {
+            var storedCustomer = contacts.putIfAbsent(customer, customer);
+            if (storedCustomer == null) {
+                customer.setId(null);
+                customer.setAddressBook(addressBook);
+                newCustomers.add(customer);
+                storedCustomer = customer;
             }
+            storedCustomers.add(storedCustomer);
+        }
 
-            addressBook.ifPresent(book -> {
-                book.getCustomers()
-                        .removeIf(addressBookCustomer -> customerId.equals(addressBookCustomer.getId()));
+        if (!newCustomers.isEmpty()) {
+            customerRepository.saveAllAndFlush(newCustomers);
+            distinctCustomerRepository.registerCustomers(addressBookId,
+                    newCustomers.stream().map(Customer::getId).toList());
+            eventPublisher.publishEvent(new CustomersAddedEvent(newCustomers.stream()
+                    .map(customer -> CustomerEntry.of(addressBookId, customer)).toList()));
+        }
 
-                addressBookRepository.save(book);
-                log.info("Removed Customer with id:{} from AddressBook with id:{}", customerId, addressBookId);
-            });
+        log.info("{} of {} Customers added to Address Book with id:{}",
+                newCustomers.size(), customers.size(), addressBookId);
+
+        return storedCustomers;
+    }
+
+    /**
+     * Removes Customer contact from  existing AddressBook with a single delete statement.
+     * The customer row is locked first, so concurrent removes of the same customer release it only once
+     * @param addressBookId id of the existing address book
+     * @param customerId the customer contactId to be removed from existing address book
+     * @return true if the customer was removed, false if it was not in the address book
+     */
+    @EvictAddressBookCaches
+    @OnAddressBookShard
+    public boolean removeCustomerFromAddressBook(Long addressBookId, final Long customerId) {
+        try {
+            var removed = writeWithRetry(() -> deleteCustomers(addressBookId, List.of(customerId))) > 0;
+
+            log.info("Removed Customer with id:{} from AddressBook with id:{}, removed:{}",
+                    customerId, addressBookId, removed);
+            return removed;
 
         } catch(AddressBookNotFoundException addressBookNotFoundException) {
             throw addressBookNotFoundException;
@@ -104,40 +269,227 @@ public class AddressBookService {
     }
 
     /**
-     * Retrieves all Customers of specified AddressBook
+     * Removes the given Customer contacts from existing AddressBook with a single delete statement
+     * @param addressBookId id of the existing address book
+     * @param customerIds the customer contactIds to be removed from existing address book
+     * @return number of customers removed
+     */
+    @EvictAddressBookCaches
+    @OnAddressBookShard
+    public int removeCustomersFromAddressBook(Long addressBookId, List<Long> customerIds) {
+        try {
+            var removed = writeWithRetry(() -> deleteCustomers(addressBookId, customerIds));
+
+            log.info("Removed {} of {} Customers from AddressBook with id:{}",
+                    removed, customerIds.size(), addressBookId);
+            return removed;
+
+        } catch(AddressBookNotFoundException addressBookNotFoundException) {
+            throw addressBookNotFoundException;
+
+        } catch (Exception ex) {
+            log.error("Error while removing customers from address book", ex);
+            throw new AddressBookException(ex.getMessage());
+        }
+    }
+
+    private int deleteCustomers(Long addressBookId, List<Long> customerIds) {
+        var lockedIds = customerIds.isEmpty()
+                ? List.<Long>of() : customerRepository.lockFromAddressBook(addressBookId, customerIds);
+
+        if (lockedIds.isEmpty()) {
+            if (!addressBookRepository.existsById(addressBookId)) {
+                throw new AddressBookNotFoundException("AddressBook not found");
+            }
+            return 0;
+        }
+
+        releaseDistinctCustomers(addressBookId, lockedIds);
+        var removed = lockedIds.size() == 1
+                ? customerRepository.deleteFromAddressBook(addressBookId, lockedIds.get(0))
+                : customerRepository.deleteAllFromAddressBook(addressBookId, lockedIds);
+        eventPublisher.publishEvent(new CustomersRemovedEvent(addressBookId, lockedIds));
+        return removed;
+    }
+
+    /**
+     * Runs a write in its own transaction, retrying it a bounded number of times when it conflicts with a
+     * concurrent write, either on a unique key or on a lock. Nothing is locked up front, so writes to the same
+     * address book only wait for each other when they touch the same rows
+     */
+    private <T> T writeWithRetry(Supplier<T> write) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> write.get());
+            } catch (DataIntegrityViolationException | TransientDataAccessException ex) {
+                if (attempt >= MAX_WRITE_ATTEMPTS || ex instanceof DataIntegrityViolationException violation
+                        && !isUniqueKeyViolation(violation)) {
+                    throw ex;
+                }
+                log.info("Write conflicted with a concurrent write, retrying, attempt:{}", attempt);
+            }
+        }
+    }
+
+    /**
+     * Tells a unique key violation, which a concurrent insert of the same contact causes and a retry resolves,
+     * apart from other integrity violations such as a null column, which fail the same way on every attempt.
+     * The exception does not need to be translated, the SQL state is read from its causes
+     */
+    static boolean isUniqueKeyViolation(Throwable ex) {
+        if (ex instanceof DuplicateKeyException) {
+            return true;
+        }
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException
+                    && UNIQUE_VIOLATION_SQL_STATE.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops customers that are about to be deleted from the distinct customers across all address books
+     */
+    private void releaseDistinctCustomers(Long addressBookId, List<Long> customerIds) {
+        distinctCustomerRepository.releaseCustomers(addressBookId, customerIds);
+        distinctCustomerRepository.deleteUnreferenced(addressBookId, customerIds);
+    }
+
+    /**
+     * Retrieves a page of Customers of specified AddressBook. Pages are found by seeking past the
+     * last customer of the previous page, so every page costs the same regardless of its position.
+     * Pages are read from the {@link CustomerReadModel} when it is enabled
      * @param addressBookId id of the existing address book
-     * @return Set of customers in the address book
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param size maximum number of customers on the page
+     * @param sort order of the customers
+     * @return page of customers and cursor of the next page
      */
-    public Set<Customer> retrieveCustomersOfAddressBook(Long addressBookId) {
+    @Transactional(readOnly = true)
+    @OnAddressBookShard
+    public CustomerPage retrieveCustomersOfAddressBook(Long addressBookId, String cursor, int size, CustomerSort sort) {
+        var after = cursor == null ? null : CustomerCursor.decode(cursor, sort);
+
         try {
-            var addressBook = addressBookRepository.findById(addressBookId);
+            if (!addressBookRepository.existsById(addressBookId)) {
+                throw new AddressBookNotFoundException("AddressBook not found");
+            }
+
+            //fetch one extra customer to find out whether there is a next page
+            var customers = customerReadModel.isEnabled()
+                    ? customerReadModel.pageOf(addressBookId, after, size + 1, sort)
+                    : findPageOfCustomers(addressBookId, after, size + 1, sort);
+
+            if (customers.size() <= size) {
+                return new CustomerPage(customers, null);
+            }
+            var page = customers.subList(0, size);
+            return new CustomerPage(page, CustomerCursor.after(page.get(size - 1)).encode(sort));
+
+        } catch(AddressBookNotFoundException addressBookNotFoundException) {
+            throw addressBookNotFoundException;
+
+        } catch (Exception ex) {
+            log.error("Error while retrieving page of customers of address book", ex);
+            throw new AddressBookException(ex.getMessage());
+        }
+    }
 
-            if (addressBook.isEmpty()) {
+    /**
+     * Customers are read as views of only the returned columns, or from the {@link CustomerReadModel}
+     * when it is enabled, so no Customer entity is loaded or tracked by the persistence context
+     */
+    private List<CustomerView> findCustomersOfAddressBook(Long addressBookId) {
+        return customerReadModel.isEnabled()
+                ? customerReadModel.customersOf(addressBookId)
+                : customerRepository.findAllByAddressBookId(addressBookId);
+    }
+
+    private Map<Long, List<CustomerView>> findCustomersOfAddressBooks(Collection<Long> addressBookIds) {
+        if (customerReadModel.isEnabled()) {
+            Map<Long, List<CustomerView>> customers = new HashMap<>();
+            addressBookIds.forEach(id -> customers.put(id, customerReadModel.customersOf(id)));
+            return customers;
+        }
+        if (addressBookIds.isEmpty()) {
+            return Map.of();
+        }
+        var addressBookIdsByShard = addressBookIds.stream()
+                .collect(Collectors.groupingBy(shardRouter::shardOf, Collectors.toSet()));
+        return shardRouter.scatter(shard -> addressBookIdsByShard.containsKey(shard)
+                        ? customerRepository.findAllEntriesByAddressBookIdIn(addressBookIdsByShard.get(shard))
+                        : List.<CustomerEntry>of()).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.groupingBy(CustomerEntry::addressBookId, Collectors.mapping(customer ->
+                        new CustomerView(customer.id(), customer.firstName(), customer.lastName(),
+                                customer.phoneNumber()), Collectors.toList())));
+    }
+
+    private List<CustomerView> findPageOfCustomers(Long addressBookId, CustomerCursor after, int size, CustomerSort sort) {
+        var limit = PageRequest.ofSize(size);
+        if (sort == CustomerSort.ID) {
+            return customerRepository.findPageOrderedById(addressBookId, after == null ? 0L : after.id(), limit);
+        }
+        if (after == null) {
+            return customerRepository.findFirstPageOrderedByName(addressBookId, limit);
+        }
+        return customerRepository.findPageOrderedByName(
+                addressBookId, after.lastName(), after.firstName(), after.id(), limit);
+    }
+
+    /**
+     * Streams all Customers of specified AddressBook to the supplied consumer in id order.
+     * Customers are read with a forward-only cursor and handed over one at a time, so memory use
+     * does not grow with the size of the address book
+     * @param addressBookId id of the existing address book
+     * @param consumer receives each customer
+     */
+    @Transactional(readOnly = true)
+    @OnAddressBookShard
+    public void exportCustomersOfAddressBook(Long addressBookId, Consumer<CustomerView> consumer) {
+        try {
+            if (!addressBookRepository.existsById(addressBookId)) {
                 throw new AddressBookNotFoundException("AddressBook not found");
             }
 
-            return addressBook
-                    .map(AddressBook::getCustomers)
-                    .orElse(Collections.emptySet());
+            try (var customers = customerRepository.streamByAddressBookId(addressBookId)) {
+                customers.forEach(consumer);
+            }
 
         } catch(AddressBookNotFoundException addressBookNotFoundException) {
             throw addressBookNotFoundException;
 
         } catch (Exception ex) {
-            log.error("Error while retrieving all customer of address book", ex);
+            log.error("Error while exporting customers of address book", ex);
             throw new AddressBookException(ex.getMessage());
         }
     }
 
     /**
-     * Retrieves specified AddressBook
+     * Retrieves specified AddressBook with all its customers, see {@link #findCustomersOfAddressBook}.
+     * The version of the customers is read first, so a view keeps the version it was read at. A cached view
+     * is served only while it is not older than the current version, a view put by a read that raced a change
+     * is read again
      * @param addressBookId id of the address book to be retrieved
      * @return AddressBook requested
      */
-    public AddressBook retrieveAddressBook(Long addressBookId) {
+    @OnAddressBookShard
+    public AddressBookView retrieveAddressBook(Long addressBookId) {
         try {
-            return addressBookRepository.findById(addressBookId)
-                    .orElseThrow(() -> new AddressBookNotFoundException("Address Book not found"));
+            var version = addressBookVersions.currentVersion(addressBookId);
+            var cached = addressBooks.get(addressBookId, AddressBookView.class);
+            if (cached != null && cached.version() >= version) {
+                return cached;
+            }
+            var addressBook = readOnlyTransaction.execute(status -> {
+                var name = addressBookRepository.findNameById(addressBookId)
+                        .orElseThrow(() -> new AddressBookNotFoundException("Address Book not found"));
+                return new AddressBookView(addressBookId, name, findCustomersOfAddressBook(addressBookId), version);
+            });
+            addressBooks.put(addressBookId, addressBook);
+            return addressBook;
 
         } catch(AddressBookNotFoundException addressBookNotFoundException) {
             throw addressBookNotFoundException;
@@ -149,35 +501,192 @@ public class AddressBookService {
     }
 
     /**
-     * Retrieves all AddressBooks from database and iterates through the list
-     * of customers and removes duplicate customer contacts. A customer contact is
-     * considered duplicate if customer firstname, customer lastname and customer phone number are same
-     * @return Set of customers across AddressBooks
+     * Checks that specified AddressBook exists, reading it only the first time as address books are never deleted
+     * @param addressBookId id of the address book
+     * @return true if the address book exists
      */
-    public Set<Customer> retrieveDistinctCustomersFromAllAddressBooks() {
-
+    @OnAddressBookShard
+    public boolean existsAddressBook(Long addressBookId) {
         try {
-            //get all address books from database
-            var iterableAddressBooks = addressBookRepository.findAll();
+            if (addressBookVersions.isKnown(addressBookId)) {
+                return true;
+            }
+            var exists = addressBookRepository.existsById(addressBookId);
+            if (exists) {
+                addressBookVersions.markKnown(addressBookId);
+            }
+            return exists;
 
-            //convert the AddressBooks iterable into a list
-            List<AddressBook> allAddressBooks = StreamSupport
-                    .stream(iterableAddressBooks.spliterator(), false)
-                    .toList();
+        } catch (Exception ex) {
+            log.error("Error while checking address book exists", ex);
+            throw new AddressBookException(ex.getMessage());
+        }
+    }
 
-            //stream the list and remove duplicate customer contacts.
-            return  allAddressBooks
-                    .stream()
-                    .map(AddressBook::getCustomers)
-                    .flatMap(Set::stream)
-                    .collect(Collectors.toSet());
+    /**
+     * Retrieves id, name and number of customers of specified AddressBook without loading its customers
+     * @param addressBookId id of the address book to be summarised
+     * @return summary of the address book
+     */
+    @Transactional(readOnly = true)
+    @OnAddressBookShard
+    public AddressBookSummary retrieveAddressBookSummary(Long addressBookId) {
+        try {
+            return addressBookRepository.findSummaryById(addressBookId)
+                    .orElseThrow(() -> new AddressBookNotFoundException("Address Book not found"));
 
         } catch(AddressBookNotFoundException addressBookNotFoundException) {
             throw addressBookNotFoundException;
 
+        } catch (Exception ex) {
+            log.error("Error while retrieving address book summary", ex);
+            throw new AddressBookException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Retrieves a page of AddressBook summaries in id order, see {@link #retrieveAddressBookSummary}.
+     * Pages are found by seeking past the last address book of the previous page and read with one
+     * statement per shard, so no customer is loaded and the cost of a page does not depend on its size.
+     * Every shard reads a whole page in parallel and the first ids of all of them make the page
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param size maximum number of address books on the page
+     * @return page of address book summaries and cursor of the next page
+     * @throws IllegalArgumentException when the cursor is not a valid cursor
+     */
+    public AddressBookPage<AddressBookSummary> retrieveAddressBooks(String cursor, int size) {
+        var afterId = cursor == null ? 0L : decodeAddressBookCursor(cursor);
+
+        try {
+            //fetch one extra address book to find out whether there is a next page
+            var addressBooks = shardRouter.scatter(shard ->
+                            addressBookRepository.findSummaryPageOrderedById(afterId, PageRequest.ofSize(size + 1)))
+                    .stream()
+                    .flatMap(List::stream)
+                    .sorted(Comparator.comparing(AddressBookSummary::id))
+                    .limit(size + 1L)
+                    .toList();
+            if (addressBooks.size() <= size) {
+                return new AddressBookPage<>(addressBooks, null);
+            }
+            var page = addressBooks.subList(0, size);
+            return new AddressBookPage<>(page, String.valueOf(page.get(size - 1).id()));
+
+        } catch (Exception ex) {
+            log.error("Error while retrieving page of address books", ex);
+            throw new AddressBookException(ex.getMessage());
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the token is not the id of an address book
+     */
+    private static long decodeAddressBookCursor(String cursor) {
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid cursor", ex);
+        }
+    }
+
+    /**
+     * Retrieves a page of AddressBooks with all their customers, see {@link #retrieveAddressBooks}.
+     * Customers of every address book on the page are read with one statement keyed by their ids per shard, or
+     * from the {@link CustomerReadModel} when it is enabled, so a page costs two statements per shard whatever its size.
+     * As the page holds all customers of its address books, it holds at most {@link #MAX_PAGE_SIZE_WITH_CUSTOMERS}
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param size maximum number of address books on the page, capped at {@link #MAX_PAGE_SIZE_WITH_CUSTOMERS}
+     * @return page of address books and cursor of the next page
+     */
+    public AddressBookPage<AddressBookView> retrieveAddressBooksWithCustomers(String cursor, int size) {
+        var summaries = retrieveAddressBooks(cursor, Math.min(size, MAX_PAGE_SIZE_WITH_CUSTOMERS));
+
+        try {
+            Map<Long, Long> versions = new HashMap<>();
+            summaries.addressBooks().forEach(addressBook ->
+                    versions.put(addressBook.id(), addressBookVersions.currentVersion(addressBook.id())));
+            var customers = findCustomersOfAddressBooks(versions.keySet());
+
+            return new AddressBookPage<>(summaries.addressBooks().stream()
+                    .map(addressBook -> new AddressBookView(addressBook.id(), addressBook.name(),
+                            customers.getOrDefault(addressBook.id(), List.of()), versions.get(addressBook.id())))
+                    .toList(), summaries.nextCursor());
+
+        } catch (Exception ex) {
+            log.error("Error while retrieving page of address books with customers", ex);
+            throw new AddressBookException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Streams distinct customers across all AddressBooks to the supplied consumer.
+     * A customer contact is considered duplicate if customer firstname and customer lastname are the same
+     * ignoring case and whitespace, and customer phone numbers are the same in E.164 form. Distinct
+     * customers are maintained as customers are added and removed, so this is a scan of an existing
+     * table and customers are handed over one at a time. They are read from the {@link CustomerReadModel}
+     * instead when it is enabled. With several shards every shard has the distinct customers of its own
+     * address books, they are merged as described in {@link #forEachMergedDistinctCustomer}
+     * @param consumer receives each distinct customer
+     */
+    public void retrieveDistinctCustomersFromAllAddressBooks(Consumer<CustomerView> consumer) {
+
+        try {
+            if (customerReadModel.isEnabled()) {
+                customerReadModel.forEachDistinct(consumer);
+                return;
+            }
+            if (shardRouter.getShards() == 1) {
+                shardRouter.forEach(distinctCustomerRepository::streamAll, consumer);
+                return;
+            }
+            forEachMergedDistinctCustomer(distinctCustomer -> consumer.accept(distinctCustomer.toView()));
+
         } catch (Exception ex) {
             log.error("Error while retrieving distinct customers of all address books", ex);
             throw new AddressBookException(ex.getMessage());
         }
     }
+
+    /**
+     * Counts distinct customers across all AddressBooks, see {@link #retrieveDistinctCustomersFromAllAddressBooks}.
+     * With several shards the count merges the distinct customers of all of them, so it is kept until customers
+     * change, see {@link DistinctCustomerCount}
+     * @return number of distinct customers
+     */
+    public long countDistinctCustomersFromAllAddressBooks() {
+        try {
+            if (shardRouter.getShards() == 1) {
+                return shardRouter.scatter(shard -> distinctCustomerRepository.count()).get(0);
+            }
+            return distinctCustomerCount.get(() -> {
+                var distinctCustomers = new AtomicLong();
+                forEachMergedDistinctCustomer(distinctCustomer -> distinctCustomers.incrementAndGet());
+                return distinctCustomers.get();
+            });
+
+        } catch (Exception ex) {
+            log.error("Error while counting distinct customers of all address books", ex);
+            throw new AddressBookException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Streams the distinct customers of all shards, read in parallel in contact hash order and merged on the
+     * calling thread. A contact with customers on several shards is a distinct customer of each of them and
+     * is handed over only once. Contacts are told apart by their whole key, as different contacts may share a hash
+     */
+    private void forEachMergedDistinctCustomer(Consumer<DistinctCustomerEntry> consumer) {
+        var contactHash = new long[1];
+        Set<String> contactKeysOfHash = new HashSet<>();
+        shardRouter.forEachMerged(distinctCustomerRepository::streamAllOrderedByContactHash,
+                Comparator.comparing(DistinctCustomerEntry::contactHash), distinctCustomer -> {
+                    if (contactKeysOfHash.isEmpty() || contactHash[0] != distinctCustomer.contactHash()) {
+                        contactHash[0] = distinctCustomer.contactHash();
+                        contactKeysOfHash.clear();
+                    }
+                    if (contactKeysOfHash.add(distinctCustomer.contactKey())) {
+                        consumer.accept(distinctCustomer);
+                    }
+                });
+    }
 }
@@ -0,0 +1,90 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Version of the customers of each AddressBook, used as the weak ETag of its representations so a client
+ * that already has the current one is answered without reading the address book. A version is served as JSON
+ * and CBOR from the same URL, so the ETag names the media type as well. It is weak as the server does not
+ * compress responses with strong ETags.
+ * A version is bumped from {@link CustomersAddedEvent} and {@link CustomersRemovedEvent} once their
+ * transactions commit, after the listeners ordered {@link #BEFORE_VERSION_BUMP} have applied the change to
+ * the indexes and the cache, so a version read before the customers are read never claims changes that are not
+ * visible yet. Address books are never deleted, so a book is remembered once it is known to exist. Versions
+ * are kept in memory and ETags carry the time the application started, so ETags from before a restart never
+ * match
+ */
+@Service
+public class AddressBookVersions {
+
+    /**
+     * Order of the after commit listeners that apply a change of customers, they run before the version is bumped
+     */
+    public static final int BEFORE_VERSION_BUMP = Ordered.LOWEST_PRECEDENCE - 1;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private final ConcurrentMap<Long, Long> versions = new ConcurrentHashMap<>();
+
+    /**
+     * @return current version of the address book, 0 until its customers first change
+     */
+    public long currentVersion(Long addressBookId) {
+        return versions.getOrDefault(addressBookId, 0L);
+    }
+
+    /**
+     * @return true when the address book is known to exist
+     */
+    public boolean isKnown(Long addressBookId) {
+        return versions.containsKey(addressBookId);
+    }
+
+    /**
+     * Remembers that the address book exists
+     */
+    public void markKnown(Long addressBookId) {
+        versions.putIfAbsent(addressBookId, 0L);
+    }
+
+    /**
+     * @return weak ETag of the version written as the media type
+     */
+    public String eTag(long version, MediaType mediaType) {
+        return "W/\"" + epoch + "-" + version + "-" + mediaType.getSubtype() + "\"";
+    }
+
+    /**
+     * @return weak ETag of the current version of the address book written as the media type
+     */
+    public String currentETag(Long addressBookId, MediaType mediaType) {
+        return eTag(currentVersion(addressBookId), mediaType);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onCustomersAdded(CustomersAddedEvent event) {
+        event.customers().stream()
+                .map(CustomerEntry::addressBookId)
+                .distinct()
+                .forEach(this::bump);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onCustomersRemoved(CustomersRemovedEvent event) {
+        bump(event.addressBookId());
+    }
+
+    private void bump(Long addressBookId) {
+        versions.merge(addressBookId, 1L, Long::sum);
+    }
+}
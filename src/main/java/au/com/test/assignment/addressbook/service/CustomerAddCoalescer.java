@@ -0,0 +1,227 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.WriteCoalescingProperties;
+import au.com.test.assignment.addressbook.exception.AddressBookException;
+import au.com.test.assignment.addressbook.exception.AddressBookNotFoundException;
+import au.com.test.assignment.addressbook.model.Customer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Coalesces concurrent adds of customers to the same AddressBook into one transaction with one batched insert.
+ * An add to an address book no other add is pending for is committed right away. Otherwise the first add opens a
+ * batch and waits up to maxDelay for further adds, until the batch holds maxBatchSize adds or no other add to the
+ * address book is pending, then commits the batch on behalf of all its callers. Every caller still gets its own
+ * customer back or its own error.
+ * When a batch cannot be committed every caller adds its own customer on its own, so a failing customer only fails
+ * its own caller. Batch sizes are recorded by the address.book.add.batch.size summary
+ */
+@Slf4j
+@Service
+public class CustomerAddCoalescer {
+
+    public static final String BATCH_SIZE_SUMMARY = "address.book.add.batch.size";
+
+    private final AddressBookService addressBookService;
+
+    private final WriteCoalescingProperties writeCoalescingProperties;
+
+    private final DistributionSummary batchSizes;
+
+    private final ConcurrentMap<Long, Batch> openBatches = new ConcurrentHashMap<>();
+
+    //adds to each address book that have not returned yet, whether waiting for a batch or being committed
+    private final ConcurrentMap<Long, Integer> pendingAdds = new ConcurrentHashMap<>();
+
+    public CustomerAddCoalescer(AddressBookService addressBookService,
+                                WriteCoalescingProperties writeCoalescingProperties,
+                                MeterRegistry meterRegistry) {
+        this.addressBookService = addressBookService;
+        this.writeCoalescingProperties = writeCoalescingProperties;
+        this.batchSizes = DistributionSummary.builder(BATCH_SIZE_SUMMARY)
+                .description("Number of customer adds committed together")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds Customer contact to existing AddressBook together with the concurrent adds to the same address book,
+     * see {@link AddressBookService#addCustomerToAddressBook}
+     * @param addressBookId id of the existing address book
+     * @param customer customer contact to be added to existing address book
+     * @return  Customer added to address book
+     */
+    public Customer addCustomerToAddressBook(Long addressBookId, Customer customer) {
+        var maxBatchSize = writeCoalescingProperties.getMaxBatchSize();
+        if (writeCoalescingProperties.getMaxDelay().isZero() || maxBatchSize <= 1) {
+            return addressBookService.addCustomerToAddressBook(addressBookId, customer);
+        }
+
+        var add = new PendingAdd(customer);
+        pendingAdds.merge(addressBookId, 1, Integer::sum);
+        try {
+            while (true) {
+                var batch = openBatches.computeIfAbsent(addressBookId, key -> new Batch(maxBatchSize));
+                int position = batch.offer(add);
+                if (position < 0) {
+                    //the batch is full or being committed, the next add opens a new one
+                    openBatches.remove(addressBookId, batch);
+                    continue;
+                }
+                if (position == 0) {
+                    commit(addressBookId, batch);
+                }
+                var added = add.join();
+                return added != null ? added : addressBookService.addCustomerToAddressBook(addressBookId, customer);
+            }
+
+        } finally {
+            pendingAdds.computeIfPresent(addressBookId, (key, pending) -> pending == 1 ? null : pending - 1);
+            //an open batch waiting for this add to finish can be committed now
+            var batch = openBatches.get(addressBookId);
+            if (batch != null) {
+                batch.wake();
+            }
+        }
+    }
+
+    private void commit(Long addressBookId, Batch batch) {
+        var adds = batch.awaitAndClose(writeCoalescingProperties.getMaxDelay(),
+                () -> pendingAdds.getOrDefault(addressBookId, 0));
+        openBatches.remove(addressBookId, batch);
+        batchSizes.record(adds.size());
+
+        try {
+            if (adds.size() == 1) {
+                //the add is committed on its own by its caller
+                adds.get(0).completeOnItsOwn();
+                return;
+            }
+            addBatch(addressBookId, adds);
+
+        } finally {
+            //callers of the batch wait for its result, so none of them may be left waiting
+            adds.forEach(add -> add.result().completeExceptionally(
+                    new AddressBookException("Customer could not be added to address book")));
+        }
+    }
+
+    private void addBatch(Long addressBookId, List<PendingAdd> adds) {
+        try {
+            var customers = addressBookService.addCustomersToAddressBook(addressBookId,
+                    adds.stream().map(PendingAdd::customer).toList());
+            for (int i = 0; i < adds.size(); i++) {
+                adds.get(i).result().complete(customers.get(i));
+            }
+
+        } catch (AddressBookNotFoundException addressBookNotFoundException) {
+            adds.forEach(add -> add.result().completeExceptionally(addressBookNotFoundException));
+
+        } catch (Exception ex) {
+            log.warn("Batch of {} customers could not be added to AddressBook with id:{}, adding them one at a time",
+                    adds.size(), addressBookId);
+            adds.forEach(PendingAdd::completeOnItsOwn);
+        }
+    }
+
+    /**
+     * Adds to one address book that are committed together. Only the first add of a batch commits it
+     */
+    private static final class Batch {
+
+        private final int maxSize;
+
+        private final List<PendingAdd> adds;
+
+        private boolean closed;
+
+        private Batch(int maxSize) {
+            this.maxSize = maxSize;
+            this.adds = new ArrayList<>(maxSize);
+        }
+
+        /**
+         * @return position of the add in the batch, -1 when the batch takes no more adds
+         */
+        private synchronized int offer(PendingAdd add) {
+            if (closed || adds.size() == maxSize) {
+                return -1;
+            }
+            adds.add(add);
+            notifyAll();
+            return adds.size() - 1;
+        }
+
+        private synchronized void wake() {
+            notifyAll();
+        }
+
+        /**
+         * Waits until the batch is full, maxDelay passed or no add other than those of the batch is pending
+         * @param pendingAdds adds to the address book that have not returned yet, including those of the batch
+         */
+        private synchronized List<PendingAdd> awaitAndClose(Duration maxDelay, IntSupplier pendingAdds) {
+            long deadline = System.nanoTime() + maxDelay.toNanos();
+            long remaining;
+            try {
+                while (adds.size() < maxSize && pendingAdds.getAsInt() > adds.size()
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            closed = true;
+            return adds;
+        }
+    }
+
+    private static final class PendingAdd {
+
+        private final Customer customer;
+
+        //the customer added by the batch, null when the caller has to add it on its own
+        private final CompletableFuture<Customer> result = new CompletableFuture<>();
+
+        private PendingAdd(Customer customer) {
+            this.customer = customer;
+        }
+
+        private Customer customer() {
+            return customer;
+        }
+
+        private CompletableFuture<Customer> result() {
+            return result;
+        }
+
+        private void completeOnItsOwn() {
+            result.complete(null);
+        }
+
+        /**
+         * Waits for the batch
+         */
+        private Customer join() {
+            try {
+                return result.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw ex;
+            }
+        }
+    }
+}
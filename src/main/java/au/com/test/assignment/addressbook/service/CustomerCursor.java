@@ -0,0 +1,58 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.model.CustomerSort;
+import au.com.test.assignment.addressbook.model.CustomerView;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last customer on a page, handed to clients as an opaque token.
+ * Holds the values of every column the page is ordered by, so the next page can be
+ * fetched with an index seek instead of an offset
+ */
+record CustomerCursor(Long id, String lastName, String firstName) {
+
+    private static final String SEPARATOR = ".";
+
+    static CustomerCursor after(CustomerView customer) {
+        return new CustomerCursor(customer.id(), customer.lastName(), customer.firstName());
+    }
+
+    /**
+     * Encodes the cursor, name values are only included when the page is ordered by name
+     */
+    String encode(CustomerSort sort) {
+        if (sort == CustomerSort.ID) {
+            return String.valueOf(id);
+        }
+        return encodeValue(lastName) + SEPARATOR + encodeValue(firstName) + SEPARATOR + id;
+    }
+
+    /**
+     * Decodes a token created by {@link #encode(CustomerSort)} for the same sort order
+     * @throws IllegalArgumentException when the token is not a valid cursor for the sort order
+     */
+    static CustomerCursor decode(String token, CustomerSort sort) {
+        try {
+            if (sort == CustomerSort.ID) {
+                return new CustomerCursor(Long.valueOf(token), null, null);
+            }
+            String[] parts = token.split("\\.", -1);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new CustomerCursor(Long.valueOf(parts[2]), decodeValue(parts[0]), decodeValue(parts[1]));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid cursor", ex);
+        }
+    }
+
+    private static String encodeValue(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeValue(String value) {
+        return new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,189 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.ImportProperties;
+import au.com.test.assignment.addressbook.config.MetricsConfig;
+import au.com.test.assignment.addressbook.exception.AddressBookNotFoundException;
+import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerRow;
+import au.com.test.assignment.addressbook.model.ImportReport;
+import au.com.test.assignment.addressbook.repository.AddressBookRepository;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import au.com.test.assignment.addressbook.repository.DistinctCustomerRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class CustomerImportService {
+
+    //error of the rows of a chunk that could not be committed, the cause is only logged
+    static final String NOT_IMPORTED = "Not imported";
+
+    private final AddressBookRepository addressBookRepository;
+
+    private final CustomerRepository customerRepository;
+
+    private final DistinctCustomerRepository distinctCustomerRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Validator validator;
+
+    private final ImportProperties importProperties;
+
+    public CustomerImportService(AddressBookRepository addressBookRepository,
+                                 CustomerRepository customerRepository,
+                                 DistinctCustomerRepository distinctCustomerRepository,
+                                 ApplicationEventPublisher eventPublisher,
+                                 EntityManager entityManager,
+                                 TransactionTemplate transactionTemplate,
+                                 Validator validator,
+                                 ImportProperties importProperties) {
+        this.addressBookRepository = addressBookRepository;
+        this.customerRepository = customerRepository;
+        this.distinctCustomerRepository = distinctCustomerRepository;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.importProperties = importProperties;
+    }
+
+    /**
+     * Imports customers into existing AddressBook. Rows are validated as they are read and
+     * committed in chunks of chunkSize customers, each chunk is inserted in JDBC batches of batchSize.
+     * Only one chunk is held in memory at a time. Customers already in the address book are
+     * counted as duplicates and skipped, a chunk that cannot be committed is reported row by row
+     * @param addressBookId id of the existing address book
+     * @param rows customers to be imported, read lazily
+     * @return counts of imported, duplicate and failed rows with the errors of failed rows
+     */
+    @EvictAddressBookCaches
+    @OnAddressBookShard
+    public ImportReport importCustomers(Long addressBookId, Iterator<CustomerRow> rows) {
+        if (!addressBookRepository.existsById(addressBookId)) {
+            log.error("Address Book not found");
+            throw new AddressBookNotFoundException("Address Book Not Found");
+        }
+
+        var report = new ImportReport(importProperties.getMaxReportedErrors());
+        List<CustomerRow> chunk = new ArrayList<>(importProperties.getChunkSize());
+
+        while (rows.hasNext()) {
+            var row = rows.next();
+            if (row.error() != null) {
+                report.recordError(row.rowNumber(), row.error());
+                continue;
+            }
+
+            var violations = validator.validate(row.customer());
+            if (!violations.isEmpty()) {
+                report.recordError(row.rowNumber(), violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+                continue;
+            }
+
+            chunk.add(row);
+            if (chunk.size() == importProperties.getChunkSize()) {
+                importChunk(addressBookId, chunk, report);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(addressBookId, chunk, report);
+        }
+
+        log.info("Imported {} customers into AddressBook with id:{}, duplicates:{}, failed:{}",
+                report.getImported(), addressBookId, report.getDuplicates(), report.getFailed());
+        return report;
+    }
+
+    /**
+     * Commits a chunk in its own transaction. A chunk that loses a unique key race with a concurrent add is
+     * retried, which counts the contacts added meanwhile as duplicates
+     */
+    private void importChunk(Long addressBookId, List<CustomerRow> chunk, ImportReport report) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                var result = transactionTemplate.execute(status -> insertChunk(addressBookId, chunk));
+                report.recordImported(result.imported());
+                report.recordDuplicates(result.duplicates());
+                return;
+
+            } catch (Exception ex) {
+                if (attempt < AddressBookService.MAX_WRITE_ATTEMPTS && AddressBookService.isUniqueKeyViolation(ex)) {
+                    log.info("Chunk conflicted with a concurrent write, retrying, attempt:{}", attempt);
+                    continue;
+                }
+                log.error("Error while importing customers into address book", ex);
+                chunk.forEach(row -> report.recordError(row.rowNumber(), NOT_IMPORTED));
+                return;
+            }
+        }
+    }
+
+    private ChunkResult insertChunk(Long addressBookId, List<CustomerRow> chunk) {
+        var batchSize = importProperties.getBatchSize();
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+
+        //Customer equality is the per address book unique key, so the set holds every contact already present
+        var phoneNumbers = chunk.stream().map(row -> row.customer().getPhoneNumber()).collect(Collectors.toSet());
+        var contacts = new HashSet<>(customerRepository.findByAddressBookIdAndPhoneNumberIn(addressBookId, phoneNumbers));
+        entityManager.clear();
+
+        var addressBook = entityManager.getReference(AddressBook.class, addressBookId);
+        List<CustomerEntry> importedCustomers = new ArrayList<>(chunk.size());
+        int imported = 0;
+        int duplicates = 0;
+        for (CustomerRow row : chunk) {
+            Customer customer = row.customer();
+            if (!contacts.add(customer)) {
+                duplicates++;
+                continue;
+            }
+            customer.setId(null);
+            customer.setAddressBook(addressBook);
+            entityManager.persist(customer);
+            importedCustomers.add(CustomerEntry.of(addressBookId, customer));
+
+            if (++imported % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+                addressBook = entityManager.getReference(AddressBook.class, addressBookId);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        if (!importedCustomers.isEmpty()) {
+            distinctCustomerRepository.registerCustomers(addressBookId,
+                    importedCustomers.stream().map(CustomerEntry::id).toList());
+            eventPublisher.publishEvent(new CustomersAddedEvent(importedCustomers));
+        }
+        return new ChunkResult(imported, duplicates);
+    }
+
+    private record ChunkResult(int imported, int duplicates) {
+    }
+}
@@ -0,0 +1,35 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * In-memory index of the customers of all AddressBooks. Indexes are recovered together at startup by the
+ * {@link CustomerSnapshotStore}, which reads the latest snapshot once for all of them, or each built from the
+ * database when they cannot be recovered
+ */
+public interface CustomerIndex {
+
+    /**
+     * @return false when the index is not kept, so it is neither recovered nor built
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Empties the index and fills it from a replay while the index is locked
+     * @param replay called once with what receives every added customer and the address book id and customer id
+     *               of every removed customer, returns false when the index could not be recovered
+     * @return result of the replay
+     */
+    boolean recover(BiPredicate<Consumer<CustomerEntry>, BiConsumer<Long, Long>> replay);
+
+    /**
+     * Replaces the index with one built from all customers in the database
+     */
+    void rebuild();
+}
@@ -0,0 +1,582 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.ReadModelProperties;
+import au.com.test.assignment.addressbook.model.ContactKey;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerSort;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Compact in-memory copy of all customers that the customers of an AddressBook and the distinct customers are
+ * read from instead of Customer entities. The customers of each address book are kept in columns of primitive
+ * arrays ordered by id: ids, contact hashes, first and last names as codes of a dictionary shared by all
+ * names, and phone numbers packed into a long, see {@link #packPhoneNumber}. That is 32 bytes per customer
+ * where an entity with its strings takes a few hundred. Rows of columns handed to a reader are never changed,
+ * adds fill spare capacity after the last row and removals copy the columns, so readers only hold the lock
+ * to pick the columns up. Like the {@link CustomerSearchService} index the model is recovered or built at
+ * startup and kept up to date from {@link CustomersAddedEvent} and {@link CustomersRemovedEvent} once their
+ * transactions commit. Names are not removed from the dictionary until the model is rebuilt.
+ * Only kept when address-book.read-model.enabled is set, the address.book.read.model.customers gauge holds its size
+ */
+@Slf4j
+@Service
+public class CustomerReadModel implements CustomerIndex {
+
+    public static final String CUSTOMERS_GAUGE = "address.book.read.model.customers";
+
+    /** characters a phone number can be packed from, the position of a character is its 4 bit code */
+    private static final String PHONE_CHARACTERS = "0123456789+ -()";
+
+    private static final int MAX_PACKED_PHONE_LENGTH = 15;
+
+    private static final int MIN_CAPACITY = 8;
+
+    private final CustomerRepository customerRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final ReadModelProperties readModelProperties;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongKeyMap<Columns> columnsByAddressBook = new LongKeyMap<>();
+
+    private Dictionary dictionary = new Dictionary();
+
+    private long size;
+
+    public CustomerReadModel(CustomerRepository customerRepository,
+                             ShardRouter shardRouter,
+                             ReadModelProperties readModelProperties,
+                             MeterRegistry meterRegistry) {
+        this.customerRepository = customerRepository;
+        this.shardRouter = shardRouter;
+        this.readModelProperties = readModelProperties;
+        Gauge.builder(CUSTOMERS_GAUGE, this, CustomerReadModel::size)
+                .description("Number of customers in the in-memory read model")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true when reads are served from the read model
+     */
+    @Override
+    public boolean isEnabled() {
+        return readModelProperties.isEnabled();
+    }
+
+    /**
+     * Replaces the read model with one built from all customers in the database, read shard by shard
+     */
+    @Override
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            clear();
+            shardRouter.forEach(customerRepository::streamAllEntries, this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Customer read model built with {} customers", size());
+    }
+
+    @Override
+    public boolean recover(BiPredicate<Consumer<CustomerEntry>, BiConsumer<Long, Long>> replay) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            return replay.test(this::index, this::unindex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of customers in the read model
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * All customers of an AddressBook
+     * @param addressBookId id of the address book
+     * @return customers in id order, empty when the address book has no customers or does not exist
+     */
+    public List<CustomerView> customersOf(Long addressBookId) {
+        var view = view(addressBookId);
+        List<CustomerView> customers = new ArrayList<>(view.columns().size);
+        for (int row = 0; row < view.columns().size; row++) {
+            customers.add(view.customerView(row));
+        }
+        return customers;
+    }
+
+    /**
+     * Keyset page of customers of an AddressBook, in the same order the database pages them in
+     * @param addressBookId id of the address book
+     * @param after last customer of the previous page, null for the first page
+     * @param limit maximum number of customers on the page
+     * @param sort order of the customers
+     * @return customers following after
+     */
+    List<CustomerView> pageOf(Long addressBookId, CustomerCursor after, int limit, CustomerSort sort) {
+        var view = view(addressBookId);
+        var columns = view.columns();
+
+        if (sort == CustomerSort.ID) {
+            int first = after == null ? 0 : columns.find(after.id() + 1);
+            first = first < 0 ? -first - 1 : first;
+            List<CustomerView> customers = new ArrayList<>(Math.min(limit, columns.size - first));
+            for (int row = first; row < columns.size && customers.size() < limit; row++) {
+                customers.add(view.customerView(row));
+            }
+            return customers;
+        }
+
+        int[] order = columns.nameOrder(view.names());
+        int first = after == null ? 0 : view.positionAfter(order, after);
+        List<CustomerView> customers = new ArrayList<>(Math.min(limit, order.length - first));
+        for (int position = first; position < order.length && customers.size() < limit; position++) {
+            customers.add(view.customerView(order[position]));
+        }
+        return customers;
+    }
+
+    /**
+     * Hands each distinct customer across all AddressBooks to the consumer, customers are distinct by their
+     * {@link ContactKey} like the distinct customers kept in the database. Customers are told apart by the hash
+     * of their key first and by the whole key only when they share a hash. No lock is held while the consumer runs
+     * @param consumer receives each distinct customer
+     */
+    public void forEachDistinct(Consumer<CustomerView> consumer) {
+        List<Columns> allColumns = new ArrayList<>();
+        String[] names;
+        lock.readLock().lock();
+        try {
+            columnsByAddressBook.forEachValue(allColumns::add);
+            names = dictionary.values;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        //position of the first customer of every contact hash, its columns in the high and its row in the low bits
+        LongKeyMap<Long> firstOfHash = new LongKeyMap<>();
+        //keys of customers sharing a hash with the first customer of the hash but not its key
+        Set<String> collidingContactKeys = new HashSet<>();
+        for (int index = 0; index < allColumns.size(); index++) {
+            var columns = allColumns.get(index);
+            var view = new View(columns, names);
+            for (int row = 0; row < columns.size; row++) {
+                long contactHash = columns.contactHashes[row];
+                var first = contactHash == 0 ? null : firstOfHash.get(contactHash);
+                if (first == null) {
+                    if (contactHash != 0) {
+                        firstOfHash.put(contactHash, (long) index << 32 | row);
+                    }
+                    consumer.accept(view.distinctView(row));
+                    continue;
+                }
+                var firstView = new View(allColumns.get((int) (first >>> 32)), names);
+                var contactKey = view.contactKey(row);
+                if (!contactKey.equals(firstView.contactKey(first.intValue()))
+                        && collidingContactKeys.add(contactKey)) {
+                    consumer.accept(view.distinctView(row));
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(AddressBookVersions.BEFORE_VERSION_BUMP)
+    public void onCustomersAdded(CustomersAddedEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            event.customers().forEach(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(AddressBookVersions.BEFORE_VERSION_BUMP)
+    public void onCustomersRemoved(CustomersRemovedEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            unindex(event.addressBookId(), event.customerIds());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private View view(Long addressBookId) {
+        lock.readLock().lock();
+        try {
+            var columns = columnsByAddressBook.get(addressBookId);
+            return new View(columns == null ? Columns.EMPTY : columns, dictionary.values);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void clear() {
+        columnsByAddressBook.clear();
+        dictionary = new Dictionary();
+        size = 0;
+    }
+
+    private void index(CustomerEntry customer) {
+        var columns = columnsByAddressBook.get(customer.addressBookId());
+        columns = columns == null ? Columns.EMPTY : columns;
+        int row = columns.find(customer.id());
+        if (row >= 0) {
+            return;
+        }
+        int firstName = dictionary.encode(customer.firstName());
+        int lastName = dictionary.encode(customer.lastName());
+        long phoneNumber = packPhoneNumber(customer.phoneNumber());
+        columnsByAddressBook.put(customer.addressBookId(), columns.insert(-row - 1, customer.id(),
+                customer.contactHash() == null ? 0 : customer.contactHash(), firstName, lastName, phoneNumber,
+                dictionary.values));
+        size++;
+    }
+
+    private void unindex(Long addressBookId, Long customerId) {
+        unindex(addressBookId, List.of(customerId));
+    }
+
+    private void unindex(Long addressBookId, Collection<Long> customerIds) {
+        var columns = columnsByAddressBook.get(addressBookId);
+        if (columns == null) {
+            return;
+        }
+        long[] removedIds = customerIds.stream().mapToLong(Long::longValue).sorted().toArray();
+        var remaining = columns.remove(removedIds);
+        size -= columns.size - remaining.size;
+        if (remaining.size == 0) {
+            columnsByAddressBook.remove(addressBookId);
+        } else {
+            columnsByAddressBook.put(addressBookId, remaining);
+        }
+    }
+
+    /**
+     * Packs a phone number of up to 15 characters of PHONE_CHARACTERS into a long, its length in the
+     * top 4 bits followed by the code of each character. Other phone numbers are kept in the dictionary,
+     * their length bits are 0 and the low bits hold their dictionary code
+     */
+    private long packPhoneNumber(String phoneNumber) {
+        if (phoneNumber == null || phoneNumber.isEmpty() || phoneNumber.length() > MAX_PACKED_PHONE_LENGTH) {
+            return dictionary.encode(phoneNumber);
+        }
+        long packed = 0;
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            int code = PHONE_CHARACTERS.indexOf(phoneNumber.charAt(i));
+            if (code < 0) {
+                return dictionary.encode(phoneNumber);
+            }
+            packed = packed << 4 | code;
+        }
+        return (long) phoneNumber.length() << 60 | packed;
+    }
+
+    private static String unpackPhoneNumber(long packed, String[] names) {
+        int length = (int) (packed >>> 60);
+        if (length == 0) {
+            return names[(int) packed];
+        }
+        char[] phoneNumber = new char[length];
+        for (int i = 0; i < length; i++) {
+            phoneNumber[i] = PHONE_CHARACTERS.charAt((int) (packed >>> 4 * (length - 1 - i)) & 0xF);
+        }
+        return new String(phoneNumber);
+    }
+
+    /**
+     * Columns of the customers of one address book and the dictionary names they were picked up with
+     */
+    private record View(Columns columns, String[] names) {
+
+        private String firstName(int row) {
+            return names[columns.firstNames[row]];
+        }
+
+        private String lastName(int row) {
+            return names[columns.lastNames[row]];
+        }
+
+        private String phoneNumber(int row) {
+            return unpackPhoneNumber(columns.phoneNumbers[row], names);
+        }
+
+        private CustomerView customerView(int row) {
+            return new CustomerView(columns.ids[row], firstName(row), lastName(row), phoneNumber(row));
+        }
+
+        private CustomerView distinctView(int row) {
+            return new CustomerView(firstName(row), lastName(row), phoneNumber(row));
+        }
+
+        private String contactKey(int row) {
+            return ContactKey.canonicalize(firstName(row), lastName(row), phoneNumber(row));
+        }
+
+        /**
+         * @return position of the first row in name order that comes after the cursor
+         */
+        private int positionAfter(int[] order, CustomerCursor after) {
+            int low = 0;
+            int high = order.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int row = order[middle];
+                int comparison = lastName(row).compareTo(after.lastName());
+                if (comparison == 0) {
+                    comparison = firstName(row).compareTo(after.firstName());
+                }
+                if (comparison == 0) {
+                    comparison = Long.compare(columns.ids[row], after.id());
+                }
+                if (comparison > 0) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Customers of one address book in id order. Rows below size never change once the columns are created
+     */
+    private static final class Columns {
+
+        private static final Columns EMPTY = new Columns(0);
+
+        private final long[] ids;
+
+        private final long[] contactHashes;
+
+        private final int[] firstNames;
+
+        private final int[] lastNames;
+
+        private final long[] phoneNumbers;
+
+        private final int size;
+
+        /** rows in lastName, firstName and id order, sorted on first use and carried forward by inserts and removals */
+        private volatile int[] nameOrder;
+
+        private Columns(int capacity) {
+            this(new long[capacity], new long[capacity], new int[capacity], new int[capacity], new long[capacity], 0);
+        }
+
+        private Columns(long[] ids, long[] contactHashes, int[] firstNames, int[] lastNames, long[] phoneNumbers,
+                        int size) {
+            this.ids = ids;
+            this.contactHashes = contactHashes;
+            this.firstNames = firstNames;
+            this.lastNames = lastNames;
+            this.phoneNumbers = phoneNumbers;
+            this.size = size;
+        }
+
+        /**
+         * @return row of the id, or -(insertion row) - 1 when there is none like {@link Arrays#binarySearch}
+         */
+        private int find(long id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        /**
+         * Ids mostly arrive in order, so the customer usually goes into spare capacity after the last row
+         * @param names dictionary values holding the names of the customer
+         */
+        private Columns insert(int row, long id, long contactHash, int firstName, int lastName, long phoneNumber,
+                               String[] names) {
+            var target = this;
+            if (row < size || size == ids.length) {
+                target = new Columns(size < ids.length ? ids.length : Math.max(MIN_CAPACITY, size + (size >> 1)));
+                target.copyRows(this, 0, 0, row);
+                target.copyRows(this, row, row + 1, size - row);
+            }
+            target.ids[row] = id;
+            target.contactHashes[row] = contactHash;
+            target.firstNames[row] = firstName;
+            target.lastNames[row] = lastName;
+            target.phoneNumbers[row] = phoneNumber;
+            var inserted = target.withSize(size + 1);
+            var order = nameOrder;
+            if (order != null) {
+                inserted.nameOrder = inserted.insertIntoNameOrder(order, row, names);
+            }
+            return inserted;
+        }
+
+        /**
+         * @param order name order of the columns the row was inserted into
+         * @return name order of these columns
+         */
+        private int[] insertIntoNameOrder(int[] order, int row, String[] names) {
+            int low = 0;
+            int high = order.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int other = order[middle] < row ? order[middle] : order[middle] + 1;
+                if (compareByName(other, row, names) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            var inserted = new int[order.length + 1];
+            for (int position = 0; position < order.length; position++) {
+                inserted[position < low ? position : position + 1] =
+                        order[position] < row ? order[position] : order[position] + 1;
+            }
+            inserted[low] = row;
+            return inserted;
+        }
+
+        /**
+         * @param removedIds ids in ascending order
+         */
+        private Columns remove(long[] removedIds) {
+            Columns target = null;
+            int from = 0;
+            int kept = 0;
+            int[] removedRows = new int[removedIds.length];
+            int removed = 0;
+            for (long id : removedIds) {
+                int row = find(id);
+                if (row < 0) {
+                    continue;
+                }
+                if (target == null) {
+                    target = new Columns(Math.max(MIN_CAPACITY, size - 1));
+                }
+                target.copyRows(this, from, kept, row - from);
+                kept += row - from;
+                from = row + 1;
+                removedRows[removed++] = row;
+            }
+            if (target == null) {
+                return this;
+            }
+            target.copyRows(this, from, kept, size - from);
+            var remaining = target.withSize(kept + size - from);
+            var order = nameOrder;
+            if (order != null) {
+                remaining.nameOrder = removeFromNameOrder(order, removedRows, removed);
+            }
+            return remaining;
+        }
+
+        /**
+         * @param removedRows rows removed in ascending order
+         * @return name order without the removed rows, every other row moved down by the rows removed before it
+         */
+        private static int[] removeFromNameOrder(int[] order, int[] removedRows, int removed) {
+            var remaining = new int[order.length - removed];
+            int kept = 0;
+            for (int row : order) {
+                int removedBefore = Arrays.binarySearch(removedRows, 0, removed, row);
+                if (removedBefore < 0) {
+                    remaining[kept++] = row - (-removedBefore - 1);
+                }
+            }
+            return remaining;
+        }
+
+        private int[] nameOrder(String[] names) {
+            var order = nameOrder;
+            if (order == null) {
+                order = IntStream.range(0, size).boxed()
+                        .sorted((row, other) -> compareByName(row, other, names))
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+                nameOrder = order;
+            }
+            return order;
+        }
+
+        private int compareByName(int row, int other, String[] names) {
+            int comparison = names[lastNames[row]].compareTo(names[lastNames[other]]);
+            if (comparison == 0) {
+                comparison = names[firstNames[row]].compareTo(names[firstNames[other]]);
+            }
+            return comparison != 0 ? comparison : Long.compare(ids[row], ids[other]);
+        }
+
+        private void copyRows(Columns source, int from, int to, int length) {
+            System.arraycopy(source.ids, from, ids, to, length);
+            System.arraycopy(source.contactHashes, from, contactHashes, to, length);
+            System.arraycopy(source.firstNames, from, firstNames, to, length);
+            System.arraycopy(source.lastNames, from, lastNames, to, length);
+            System.arraycopy(source.phoneNumbers, from, phoneNumbers, to, length);
+        }
+
+        private Columns withSize(int size) {
+            return new Columns(ids, contactHashes, firstNames, lastNames, phoneNumbers, size);
+        }
+    }
+
+    /**
+     * Codes of distinct strings. Values are only appended, so an array of values handed to a reader
+     * holds every code of the columns picked up with it
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        private String[] values = new String[MIN_CAPACITY];
+
+        private int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size();
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, code * 2);
+                }
+                values[code] = value;
+                codes.put(value, code);
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.exception.AddressBookException;
+import au.com.test.assignment.addressbook.model.ContactKey;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerSearchHit;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Searches customer contacts of all AddressBooks by name with an in-memory n-gram index.
+ * Every trigram of the normalized full name ("first last") points to the contacts containing it,
+ * and every two letter word prefix is indexed as well so two letter queries find names starting with them.
+ * A query is answered by checking the contacts of its rarest gram, so lookups stay fast as the number of
+ * contacts grows. The index is recovered at startup by the {@link CustomerSnapshotStore} when durable storage is
+ * enabled, otherwise built from the database, and kept up to date from {@link CustomersAddedEvent} and
+ * {@link CustomersRemovedEvent} once their transactions commit
+ */
+@Slf4j
+@Service
+public class CustomerSearchService implements CustomerIndex {
+
+    public static final int MIN_QUERY_LENGTH = 2;
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final char WORD_START = '^';
+
+    private static final Comparator<Ranked> RANKING = Comparator.comparingInt(Ranked::score).reversed()
+            .thenComparing(ranked -> ranked.contact().normalizedLastName)
+            .thenComparing(ranked -> ranked.contact().normalizedFirstName)
+            .thenComparing(ranked -> ranked.contact().contactKey);
+
+    private final CustomerRepository customerRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Contact> contactsByKey = new HashMap<>();
+
+    private final Map<Long, Contact> contactsByCustomerId = new HashMap<>();
+
+    private final Map<String, Set<Contact>> contactsByGram = new HashMap<>();
+
+    public CustomerSearchService(CustomerRepository customerRepository, ShardRouter shardRouter) {
+        this.customerRepository = customerRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Replaces the index with one built from all customers in the database, read shard by shard
+     */
+    @Override
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            clear();
+            shardRouter.forEach(customerRepository::streamAllEntries, this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Customer search index built with {} contacts", size());
+    }
+
+    @Override
+    public boolean recover(BiPredicate<Consumer<CustomerEntry>, BiConsumer<Long, Long>> replay) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            return replay.test(this::index, this::unindex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Searches customer contacts of all AddressBooks whose name contains the query, ignoring case and whitespace.
+     * Exact first, last or full name matches rank first, then names starting with the query,
+     * then names with a word starting with the query and then any other match
+     * @param query at least {@link #MIN_QUERY_LENGTH} characters of a name, queries shorter than
+     *              three characters only match the start of a word
+     * @param limit maximum number of contacts returned
+     * @return best matching contacts, best first
+     */
+    public List<CustomerSearchHit> searchCustomers(String query, int limit) {
+        var normalizedQuery = ContactKey.normalizeName(query);
+        if (normalizedQuery.length() < MIN_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Search query is too short");
+        }
+
+        try {
+            PriorityQueue<Ranked> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+
+            lock.readLock().lock();
+            try {
+                for (Contact contact : candidates(normalizedQuery)) {
+                    int score = contact.score(normalizedQuery);
+                    if (score > 0) {
+                        best.offer(new Ranked(contact, score));
+                        if (best.size() > limit) {
+                            best.poll();
+                        }
+                    }
+                }
+                return best.stream().sorted(RANKING).map(ranked -> ranked.contact().toHit()).toList();
+            } finally {
+                lock.readLock().unlock();
+            }
+
+        } catch (Exception ex) {
+            log.error("Error while searching customers", ex);
+            throw new AddressBookException(ex.getMessage());
+        }
+    }
+
+    /**
+     * @return number of distinct customer contacts in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return contactsByKey.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(AddressBookVersions.BEFORE_VERSION_BUMP)
+    public void onCustomersAdded(CustomersAddedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.customers().forEach(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(AddressBookVersions.BEFORE_VERSION_BUMP)
+    public void onCustomersRemoved(CustomersRemovedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.customerIds().forEach(customerId -> unindex(event.addressBookId(), customerId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clear() {
+        contactsByKey.clear();
+        contactsByCustomerId.clear();
+        contactsByGram.clear();
+    }
+
+    private void index(CustomerEntry customer) {
+        var contactKey = ContactKey.canonicalize(customer.firstName(), customer.lastName(), customer.phoneNumber());
+        var contact = contactsByKey.get(contactKey);
+        if (contact == null) {
+            contact = new Contact(contactKey, customer);
+            contactsByKey.put(contactKey, contact);
+            for (String gram : indexGrams(contact.fullName)) {
+                contactsByGram.computeIfAbsent(gram, key -> new HashSet<>()).add(contact);
+            }
+        }
+        contact.addressBookIdsByCustomerId.put(customer.id(), customer.addressBookId());
+        contactsByCustomerId.put(customer.id(), contact);
+    }
+
+    private void unindex(Long addressBookId, Long customerId) {
+        var contact = contactsByCustomerId.get(customerId);
+        if (contact == null || !addressBookId.equals(contact.addressBookIdsByCustomerId.get(customerId))) {
+            return;
+        }
+        contactsByCustomerId.remove(customerId);
+        contact.addressBookIdsByCustomerId.remove(customerId);
+        if (!contact.addressBookIdsByCustomerId.isEmpty()) {
+            return;
+        }
+        contactsByKey.remove(contact.contactKey);
+        for (String gram : indexGrams(contact.fullName)) {
+            var contacts = contactsByGram.get(gram);
+            contacts.remove(contact);
+            if (contacts.isEmpty()) {
+                contactsByGram.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * @return contacts containing the rarest gram of the query, a superset of the matching contacts
+     */
+    private Set<Contact> candidates(String normalizedQuery) {
+        Set<Contact> candidates = null;
+        for (String gram : queryGrams(normalizedQuery)) {
+            var contacts = contactsByGram.get(gram);
+            if (contacts == null) {
+                return Set.of();
+            }
+            if (candidates == null || contacts.size() < candidates.size()) {
+                candidates = contacts;
+            }
+        }
+        return candidates;
+    }
+
+    private static Set<String> indexGrams(String fullName) {
+        Set<String> grams = new HashSet<>();
+        for (String word : fullName.split(" ")) {
+            if (word.length() >= MIN_QUERY_LENGTH) {
+                grams.add(WORD_START + word.substring(0, MIN_QUERY_LENGTH));
+            }
+        }
+        for (int i = 0; i + GRAM_LENGTH <= fullName.length(); i++) {
+            grams.add(fullName.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private static List<String> queryGrams(String normalizedQuery) {
+        if (normalizedQuery.length() < GRAM_LENGTH) {
+            return List.of(WORD_START + normalizedQuery);
+        }
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= normalizedQuery.length(); i++) {
+            grams.add(normalizedQuery.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private record Ranked(Contact contact, int score) {
+    }
+
+    /**
+     * A distinct customer contact with the address books it is in
+     */
+    private static final class Contact {
+
+        private final String contactKey;
+
+        private final String firstName;
+
+        private final String lastName;
+
+        private final String phoneNumber;
+
+        private final String normalizedFirstName;
+
+        private final String normalizedLastName;
+
+        private final String fullName;
+
+        private final Map<Long, Long> addressBookIdsByCustomerId = new HashMap<>(2);
+
+        private Contact(String contactKey, CustomerEntry customer) {
+            this.contactKey = contactKey;
+            this.firstName = customer.firstName();
+            this.lastName = customer.lastName();
+            this.phoneNumber = customer.phoneNumber();
+            this.normalizedFirstName = ContactKey.normalizeName(firstName);
+            this.normalizedLastName = ContactKey.normalizeName(lastName);
+            this.fullName = normalizedFirstName + " " + normalizedLastName;
+        }
+
+        private int score(String normalizedQuery) {
+            if (normalizedFirstName.equals(normalizedQuery) || normalizedLastName.equals(normalizedQuery)
+                    || fullName.equals(normalizedQuery)) {
+                return 4;
+            }
+            if (fullName.startsWith(normalizedQuery) || normalizedLastName.startsWith(normalizedQuery)) {
+                return 3;
+            }
+            int at = fullName.indexOf(normalizedQuery);
+            if (at < 0) {
+                return 0;
+            }
+            return fullName.charAt(at - 1) == ' ' ? 2 : 1;
+        }
+
+        private CustomerSearchHit toHit() {
+            return new CustomerSearchHit(firstName, lastName, phoneNumber,
+                    addressBookIdsByCustomerId.values().stream().distinct().sorted().toList());
+        }
+    }
+}
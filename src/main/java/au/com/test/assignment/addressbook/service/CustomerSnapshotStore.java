@@ -0,0 +1,500 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.DurableStorageProperties;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerIdSummary;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps compact binary snapshots of all customers of all AddressBooks plus an append-only change log
+ * of the customers added and removed since, so the in-memory indexes can be recovered at startup without
+ * reading every customer from the database. A snapshot is written every snapshotInterval and starts a new
+ * change log. Changes are appended once their transactions commit and are flushed to the operating system,
+ * not forced to disk. At startup every {@link CustomerIndex} is recovered from one replay: the latest snapshot is
+ * memory mapped and read once with the change logs after it, each customer handed to all indexes. Recovery is only
+ * used when the number, highest id and sum of the ids of the recovered customers agree with the database,
+ * otherwise every index is built from the database. Recovery time is recorded by the
+ * address.book.snapshot.recovery timer. Does nothing unless durable storage is enabled
+ */
+@Slf4j
+@Service
+public class CustomerSnapshotStore implements SmartInitializingSingleton, DisposableBean {
+
+    public static final String RECOVERY_TIMER = "address.book.snapshot.recovery";
+
+    private static final int MAGIC = 0x41425332;
+
+    //longest string read back, larger lengths can only come from a corrupt file
+    private static final int MAX_STRING_BYTES = 1 << 24;
+
+    private static final byte END = 0;
+
+    private static final byte ADDED = 1;
+
+    private static final byte REMOVED = 2;
+
+    private static final String SNAPSHOT = "snapshot";
+
+    private static final String CHANGE_LOG = "log";
+
+    private static final Pattern FILE_NAME =
+            Pattern.compile("customers-(\\d+)\\.(" + SNAPSHOT + "|" + CHANGE_LOG + ")");
+
+    private final CustomerRepository customerRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final DurableStorageProperties durableStorageProperties;
+
+    private final Timer recoveryTimer;
+
+    private final ObjectProvider<CustomerIndex> customerIndexes;
+
+    private ScheduledExecutorService snapshotExecutor;
+
+    //sequence of the current change log, guarded by this
+    private long sequence;
+
+    private DataOutputStream changeLog;
+
+    //latest snapshot and the change logs after it found at startup
+    private Path recoverySnapshot;
+
+    private final List<Path> recoveryChangeLogs = new ArrayList<>();
+
+    //whether the recovered customers agree with the database, null until checked
+    private Boolean recoverable;
+
+    public CustomerSnapshotStore(CustomerRepository customerRepository,
+                                 ShardRouter shardRouter,
+                                 DurableStorageProperties durableStorageProperties,
+                                 MeterRegistry meterRegistry,
+                                 ObjectProvider<CustomerIndex> customerIndexes) {
+        this.customerRepository = customerRepository;
+        this.shardRouter = shardRouter;
+        this.durableStorageProperties = durableStorageProperties;
+        this.customerIndexes = customerIndexes;
+        this.recoveryTimer = Timer.builder(RECOVERY_TIMER)
+                .description("Time taken to recover an in-memory index from the latest snapshot and change log")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Finds the latest snapshot and starts a new change log after the existing files
+     */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!durableStorageProperties.isEnabled()) {
+            return;
+        }
+        var directory = durableStorageProperties.getDirectory();
+        Files.createDirectories(directory);
+
+        var snapshots = new TreeMap<Long, Path>();
+        var changeLogs = new TreeMap<Long, Path>();
+        try (var files = Files.list(directory)) {
+            files.forEach(file -> {
+                var matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    var filesOfType = SNAPSHOT.equals(matcher.group(2)) ? snapshots : changeLogs;
+                    filesOfType.put(Long.valueOf(matcher.group(1)), file);
+                }
+            });
+        }
+        if (!snapshots.isEmpty()) {
+            recoverySnapshot = snapshots.lastEntry().getValue();
+            recoveryChangeLogs.addAll(changeLogs.tailMap(snapshots.lastKey()).values());
+        }
+        sequence = Math.max(snapshots.isEmpty() ? 0 : snapshots.lastKey(),
+                changeLogs.isEmpty() ? 0 : changeLogs.lastKey()) + 1;
+        changeLog = openChangeLog(sequence);
+
+        var interval = durableStorageProperties.getSnapshotInterval().toMillis();
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "customer-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutor.scheduleWithFixedDelay(this::writeSnapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Durable storage in {}, latest snapshot: {}", directory, recoverySnapshot);
+    }
+
+    /**
+     * Recovers every enabled {@link CustomerIndex} from one replay, or builds each from the database when
+     * they cannot be recovered
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        var indexes = customerIndexes.orderedStream().filter(CustomerIndex::isEnabled).toList();
+        if (!indexes.isEmpty() && !recover(indexes, 0, customer -> {}, (addressBookId, customerId) -> {})) {
+            indexes.forEach(CustomerIndex::rebuild);
+        }
+    }
+
+    /**
+     * Locks and empties the indexes from next on one after another, then replays to all of them at once
+     */
+    private boolean recover(List<CustomerIndex> indexes, int next,
+                            Consumer<CustomerEntry> added, BiConsumer<Long, Long> removed) {
+        if (next == indexes.size()) {
+            return replay(added, removed);
+        }
+        return indexes.get(next).recover((indexAdded, indexRemoved) ->
+                recover(indexes, next + 1, added.andThen(indexAdded), removed.andThen(indexRemoved)));
+    }
+
+    /**
+     * Replays the latest snapshot and the changes since to in-memory indexes.
+     * The indexes must be empty and may be partly filled when the replay fails
+     * @param added receives every customer of the snapshot and every customer added since
+     * @param removed receives the address book id and customer id of every customer removed since
+     * @return true when the indexes were recovered, false when they have to be built from the database
+     */
+    public boolean replay(Consumer<CustomerEntry> added, BiConsumer<Long, Long> removed) {
+        if (!durableStorageProperties.isEnabled() || Boolean.FALSE.equals(recoverable)) {
+            return false;
+        }
+        if (recoverySnapshot == null) {
+            //without a snapshot the next startup would read every customer from the database again
+            rejectRecovery();
+            return false;
+        }
+
+        long started = System.nanoTime();
+        var customerIds = new BitSet();
+        long changes = 0;
+        try {
+            read(recoverySnapshot, true, added, removed, customerIds);
+            for (Path recoveryChangeLog : recoveryChangeLogs) {
+                changes += read(recoveryChangeLog, false, added, removed, customerIds);
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Snapshot {} cannot be recovered", recoverySnapshot, ex);
+            rejectRecovery();
+            return false;
+        }
+
+        synchronized (this) {
+            if (recoverable == null) {
+                var recovered = summarize(customerIds);
+                var customers = shardRouter.scatter(shard -> customerRepository.summarizeIds()).stream()
+                        .reduce(CustomerIdSummary.EMPTY, CustomerIdSummary::plus);
+                recoverable = recovered.equals(customers);
+                if (!recoverable) {
+                    log.warn("Snapshot {} and its change logs hold {} but the database holds {}",
+                            recoverySnapshot, recovered, customers);
+                    rejectRecovery();
+                    return false;
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        recoveryTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Recovered {} customers from snapshot {} and {} changes in {} ms",
+                customerIds.cardinality(), recoverySnapshot.getFileName(), changes,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return true;
+    }
+
+    /**
+     * Writes a snapshot of all customers in the database and starts a new change log.
+     * Change logs and snapshots before it are deleted once it is complete
+     */
+    public void writeSnapshot() throws IOException {
+        long snapshotSequence;
+        synchronized (this) {
+            changeLog.close();
+            snapshotSequence = ++sequence;
+            changeLog = openChangeLog(snapshotSequence);
+        }
+
+        long started = System.nanoTime();
+        var snapshot = file(snapshotSequence, SNAPSHOT);
+        var partialSnapshot = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        //changes committed while the snapshot is read are in both, replaying them again does not change the index
+        long customers;
+        try (var out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(partialSnapshot), 1 << 16))) {
+            out.writeInt(MAGIC);
+            var count = new long[1];
+            shardRouter.forEach(customerRepository::streamAllEntries, entry -> {
+                try {
+                    writeAdded(out, entry);
+                    count[0]++;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            out.writeByte(END);
+            out.writeLong(count[0]);
+            customers = count[0];
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        try (var channel = FileChannel.open(partialSnapshot, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(partialSnapshot, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (this) {
+            //a snapshot written before the indexes are recovered, like one of a freshly seeded database, is recovered
+            if (recoverable == null) {
+                recoverySnapshot = snapshot;
+                recoveryChangeLogs.clear();
+                recoveryChangeLogs.add(file(snapshotSequence, CHANGE_LOG));
+            }
+        }
+
+        try (var files = Files.list(durableStorageProperties.getDirectory())) {
+            for (Path file : files.toList()) {
+                var matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) < snapshotSequence) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        log.info("Wrote snapshot {} of {} customers in {} ms", snapshot.getFileName(), customers,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCustomersAdded(CustomersAddedEvent event) {
+        if (changeLog == null) {
+            return;
+        }
+        try {
+            for (CustomerEntry customer : event.customers()) {
+                writeAdded(changeLog, customer);
+            }
+            changeLog.flush();
+        } catch (IOException ex) {
+            log.error("Error while logging added customers", ex);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCustomersRemoved(CustomersRemovedEvent event) {
+        if (changeLog == null) {
+            return;
+        }
+        try {
+            for (Long customerId : event.customerIds()) {
+                changeLog.writeByte(REMOVED);
+                changeLog.writeLong(event.addressBookId());
+                changeLog.writeLong(customerId);
+            }
+            changeLog.flush();
+        } catch (IOException ex) {
+            log.error("Error while logging removed customers", ex);
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+        }
+        synchronized (this) {
+            if (changeLog != null) {
+                changeLog.close();
+                changeLog = null;
+            }
+        }
+    }
+
+    private void rejectRecovery() {
+        synchronized (this) {
+            recoverable = false;
+        }
+        snapshotExecutor.execute(this::writeSnapshotQuietly);
+    }
+
+    private void writeSnapshotQuietly() {
+        try {
+            writeSnapshot();
+        } catch (Exception ex) {
+            log.error("Error while writing customer snapshot", ex);
+        }
+    }
+
+    private static CustomerIdSummary summarize(BitSet customerIds) {
+        return new CustomerIdSummary(customerIds.cardinality(), Math.max(customerIds.length() - 1, 0),
+                customerIds.stream().asLongStream().sum());
+    }
+
+    /**
+     * @return number of records read
+     */
+    private static long read(Path file, boolean snapshot, Consumer<CustomerEntry> added,
+                             BiConsumer<Long, Long> removed, BitSet customerIds) throws IOException {
+        try (var in = new DataInputStream(new MappedInputStream(file))) {
+            if (snapshot && in.readInt() != MAGIC) {
+                throw new IOException("Not a customer snapshot: " + file);
+            }
+            long records = 0;
+            while (true) {
+                int type = in.read();
+                if (type == -1) {
+                    if (snapshot) {
+                        throw new EOFException("Incomplete customer snapshot: " + file);
+                    }
+                    return records;
+                }
+                try {
+                    switch (type) {
+                        case ADDED -> {
+                            var customer = new CustomerEntry(in.readLong(), in.readLong(), in.readLong(),
+                                    readString(in), readString(in), readString(in));
+                            customerIds.set(Math.toIntExact(customer.id()));
+                            added.accept(customer);
+                        }
+                        case REMOVED -> {
+                            var addressBookId = in.readLong();
+                            var customerId = in.readLong();
+                            customerIds.clear(Math.toIntExact(customerId));
+                            removed.accept(addressBookId, customerId);
+                        }
+                        case END -> {
+                            if (!snapshot || in.readLong() != records) {
+                                throw new IOException("Corrupt customer snapshot: " + file);
+                            }
+                            return records;
+                        }
+                        default -> throw new IOException("Unknown record in " + file);
+                    }
+                } catch (EOFException ex) {
+                    if (snapshot) {
+                        throw ex;
+                    }
+                    //the last change was only partly written before the application stopped
+                    return records;
+                }
+                records++;
+            }
+        }
+    }
+
+    private static void writeAdded(DataOutputStream out, CustomerEntry customer) throws IOException {
+        out.writeByte(ADDED);
+        out.writeLong(customer.id());
+        out.writeLong(customer.addressBookId());
+        out.writeLong(Objects.requireNonNullElse(customer.contactHash(), 0L));
+        writeString(out, customer.firstName());
+        writeString(out, customer.lastName());
+        writeString(out, customer.phoneNumber());
+    }
+
+    /**
+     * Writes the string as its length and its UTF-8 bytes, unlike writeUTF it takes strings of any length
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Corrupt string of " + length + " bytes");
+        }
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private DataOutputStream openChangeLog(long changeLogSequence) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file(changeLogSequence, CHANGE_LOG),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    private Path file(long fileSequence, String type) {
+        return durableStorageProperties.getDirectory().resolve("customers-" + fileSequence + "." + type);
+    }
+
+    /**
+     * Reads a file through read only memory mappings of at most 1GB at a time
+     */
+    private static final class MappedInputStream extends InputStream {
+
+        private static final long MAX_MAPPING = 1L << 30;
+
+        private final FileChannel channel;
+
+        private final long size;
+
+        private long position;
+
+        private MappedByteBuffer buffer;
+
+        private MappedInputStream(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.size = channel.size();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return map() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!map()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private boolean map() throws IOException {
+            if (buffer != null && buffer.hasRemaining()) {
+                return true;
+            }
+            if (position == size) {
+                return false;
+            }
+            long length = Math.min(MAX_MAPPING, size - position);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return true;
+        }
+    }
+}
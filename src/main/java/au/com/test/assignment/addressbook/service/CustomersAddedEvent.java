@@ -0,0 +1,11 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+
+import java.util.List;
+
+/**
+ * Published when customers are stored in address books, delivered to listeners once the transaction commits
+ */
+public record CustomersAddedEvent(List<CustomerEntry> customers) {
+}
@@ -0,0 +1,10 @@
+package au.com.test.assignment.addressbook.service;
+
+import java.util.Collection;
+
+/**
+ * Published when customers are removed from an address book, delivered to listeners once the transaction commits.
+ * customerIds are the requested ids, some of which may not have been in the address book
+ */
+public record CustomersRemovedEvent(Long addressBookId, Collection<Long> customerIds) {
+}
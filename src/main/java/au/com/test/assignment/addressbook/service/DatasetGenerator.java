@@ -0,0 +1,160 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.DatasetProperties;
+import au.com.test.assignment.addressbook.model.CustomerView;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a synthetic dataset of AddressBooks and their customers from {@link DatasetProperties}.
+ * Every customer is one of a numbered set of contacts, whose random name and phone number depend only on
+ * its number and the seed, so the same settings always give the same dataset. Phone numbers are distinct,
+ * so contacts with different numbers are different people. The customers per address book follow a Zipf
+ * distribution and a duplicateRate fraction of the customers of every book after the first are contacts
+ * of earlier books, never twice in the same book
+ */
+public class DatasetGenerator {
+
+    /**
+     * most distinct contacts, every one has its own eight digit mobile number
+     */
+    public static final long MAX_CONTACTS = 100_000_000L;
+
+    //coprime to MAX_CONTACTS, so multiplying by it permutes the phone numbers
+    private static final long PHONE_MULTIPLIER = 48_271L;
+
+    //tries to find a contact of an earlier book that is not yet in the book before adding a new contact instead
+    private static final int DUPLICATE_ATTEMPTS = 3;
+
+    private static final String[] FIRST_NAMES = {
+            "Oliver", "Charlotte", "Jack", "Amelia", "Noah", "Isla", "William", "Olivia", "Leo", "Mia",
+            "Henry", "Ava", "Thomas", "Grace", "James", "Chloe", "Lucas", "Willow", "Oscar", "Matilda",
+            "Ethan", "Ella", "Liam", "Harper", "Mason", "Sophie", "Hudson", "Ruby", "Charlie", "Zoe",
+            "Archie", "Evie", "Harrison", "Lily", "Samuel", "Isabella", "Max", "Sienna", "Alexander", "Emily",
+            "Daniel", "Hannah", "Benjamin", "Layla", "Luca", "Audrey", "Joshua", "Georgia", "Xavier", "Aria",
+            "Patrick", "Mei", "Arjun", "Priya", "Mohammed", "Fatima", "Minh", "Anh", "Wei", "Aroha"};
+
+    private static final String[] LAST_NAMES = {
+            "Smith", "Jones", "Williams", "Brown", "Wilson", "Taylor", "Johnson", "White", "Martin", "Anderson",
+            "Thompson", "Nguyen", "Thomas", "Walker", "Harris", "Lee", "Ryan", "Robinson", "Kelly", "King",
+            "Davis", "Wright", "Evans", "Roberts", "Green", "Hall", "Wood", "Jackson", "Clarke", "Patel",
+            "Khan", "Lewis", "James", "Phillips", "Mitchell", "Turner", "Campbell", "Edwards", "Young", "Scott",
+            "Murphy", "O'Brien", "Chen", "Wang", "Singh", "Kumar", "Tran", "Le", "Morris", "Cooper",
+            "Baker", "Collins", "Stewart", "Morgan", "Bell", "Hughes", "Ward", "Russell", "Papadopoulos", "Rossi"};
+
+    private final int addressBooks;
+
+    private final long customers;
+
+    private final long seed;
+
+    private final double skew;
+
+    private final double duplicateRate;
+
+    private long contacts;
+
+    public DatasetGenerator(DatasetProperties datasetProperties) {
+        if (datasetProperties.getAddressBooks() < 1 || datasetProperties.getCustomers() < 0
+                || datasetProperties.getCustomers() > MAX_CONTACTS) {
+            throw new IllegalArgumentException("A dataset needs at least one address book and at most "
+                    + MAX_CONTACTS + " customers");
+        }
+        this.addressBooks = datasetProperties.getAddressBooks();
+        this.customers = datasetProperties.getCustomers();
+        this.seed = datasetProperties.getSeed();
+        this.skew = datasetProperties.getSkew();
+        this.duplicateRate = datasetProperties.getDuplicateRate();
+    }
+
+    /**
+     * @return number of customers of each address book, in order, adding up to the customers of the dataset
+     */
+    public long[] customersPerAddressBook() {
+        var weights = new double[addressBooks];
+        double totalWeight = 0;
+        for (int i = 0; i < addressBooks; i++) {
+            weights[i] = 1 / Math.pow(i + 1, skew);
+            totalWeight += weights[i];
+        }
+        //rounding the running total keeps the sum exact
+        var counts = new long[addressBooks];
+        double cumulativeWeight = 0;
+        long assigned = 0;
+        for (int i = 0; i < addressBooks; i++) {
+            cumulativeWeight += weights[i];
+            long total = i == addressBooks - 1 ? customers : Math.round(customers * cumulativeWeight / totalWeight);
+            counts[i] = total - assigned;
+            assigned = total;
+        }
+        return counts;
+    }
+
+    /**
+     * Generates every customer of the dataset, the customers of each address book together and the books in order
+     * @param customerConsumer receives the index of the address book and the number of the contact of each customer
+     */
+    public void generate(CustomerConsumer customerConsumer) {
+        var random = new SplittableRandom(seed);
+        var counts = customersPerAddressBook();
+        contacts = 0;
+        for (int addressBook = 0; addressBook < addressBooks; addressBook++) {
+            //contacts of earlier books, new contacts of this book are numbered after them
+            long earlierContacts = contacts;
+            Set<Long> duplicates = new HashSet<>();
+            for (long i = 0; i < counts[addressBook]; i++) {
+                long contact = -1;
+                if (earlierContacts > 0 && random.nextDouble() < duplicateRate) {
+                    for (int attempt = 0; attempt < DUPLICATE_ATTEMPTS && contact < 0; attempt++) {
+                        long candidate = random.nextLong(earlierContacts);
+                        if (duplicates.add(candidate)) {
+                            contact = candidate;
+                        }
+                    }
+                }
+                customerConsumer.accept(addressBook, contact < 0 ? contacts++ : contact);
+            }
+        }
+    }
+
+    /**
+     * @return number of distinct contacts of the last generated dataset, numbered from 0
+     */
+    public long getContacts() {
+        return contacts;
+    }
+
+    /**
+     * @return name and phone number of the contact with the given number
+     */
+    public CustomerView contact(long contact) {
+        long hash = mix(seed ^ mix(contact));
+        var firstName = FIRST_NAMES[(int) Long.remainderUnsigned(hash, FIRST_NAMES.length)];
+        var lastName = LAST_NAMES[(int) Long.remainderUnsigned(hash >>> 32, LAST_NAMES.length)];
+        long phone = (contact * PHONE_MULTIPLIER + Math.floorMod(mix(seed), MAX_CONTACTS)) % MAX_CONTACTS;
+        //eight digits with leading zeros
+        return new CustomerView(firstName, lastName, "04" + Long.toString(MAX_CONTACTS + phone).substring(1));
+    }
+
+    /**
+     * @return name of the address book with the given index
+     */
+    public String addressBookName(int addressBook) {
+        return "Address Book " + (addressBook + 1);
+    }
+
+    //SplitMix64 finalizer
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    @FunctionalInterface
+    public interface CustomerConsumer {
+
+        void accept(int addressBook, long contact);
+    }
+}
@@ -0,0 +1,257 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.DatasetProperties;
+import au.com.test.assignment.addressbook.config.DurableStorageProperties;
+import au.com.test.assignment.addressbook.model.ContactKey;
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.repository.AddressBookRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seeds an empty database with the synthetic dataset of {@link DatasetGenerator} when address-book.dataset is
+ * enabled. Customers are inserted with plain JDBC batches, bypassing the entities, and committed batch by batch
+ * while their secondary indexes are dropped, distinct customers are counted from them in one statement.
+ * Runs while the application starts, before the in-memory indexes are built, so they include the dataset.
+ * With durable storage a snapshot is written straight away and the indexes are recovered from it.
+ * With several shards address books are dealt to the shards in turn, see {@link ShardRouter}
+ */
+@Slf4j
+@Service
+public class DatasetSeeder {
+
+    //allocation size of the entity id sequences
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    private static final String INSERT_ADDRESS_BOOK = "insert into address_book (id, name) values (?, ?)";
+
+    private static final String INSERT_CUSTOMER = "insert into customer (id, first_name, last_name, phone_number, " +
+            "address_book_id, contact_key, contact_hash) values (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_DISTINCT_CUSTOMERS = "insert into distinct_customer (contact_key, contact_hash, " +
+            "first_name, last_name, phone_number, reference_count) select contact_key, contact_hash, min(first_name), " +
+            "min(last_name), min(phone_number), count(*) from customer group by contact_key, contact_hash";
+
+    private final AddressBookRepository addressBookRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final CustomerSnapshotStore customerSnapshotStore;
+
+    private final DatasetProperties datasetProperties;
+
+    private final DurableStorageProperties durableStorageProperties;
+
+    private final ShardRouter shardRouter;
+
+    public DatasetSeeder(AddressBookRepository addressBookRepository,
+                         JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         CustomerSnapshotStore customerSnapshotStore,
+                         DatasetProperties datasetProperties,
+                         DurableStorageProperties durableStorageProperties,
+                         ShardRouter shardRouter) {
+        this.addressBookRepository = addressBookRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.customerSnapshotStore = customerSnapshotStore;
+        this.datasetProperties = datasetProperties;
+        this.durableStorageProperties = durableStorageProperties;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Seeds the dataset unless it is disabled or the database already has address books
+     */
+    @PostConstruct
+    public void seed() throws IOException {
+        if (!datasetProperties.isEnabled()) {
+            return;
+        }
+        if (shardRouter.scatter(shard -> addressBookRepository.count()).stream().anyMatch(count -> count > 0)) {
+            log.info("Database already has address books, dataset not seeded");
+            return;
+        }
+
+        long started = System.nanoTime();
+        var generator = new DatasetGenerator(datasetProperties);
+        int addressBooks = datasetProperties.getAddressBooks();
+        int shards = shardRouter.getShards();
+        var addressBookRows = new Batch[shards];
+        var customerRows = new Batch[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            addressBookRows[shard] = new Batch(shard, INSERT_ADDRESS_BOOK);
+            customerRows[shard] = new Batch(shard, INSERT_CUSTOMER);
+        }
+        withLargeCache(() -> {
+            for (int addressBook = 0; addressBook < addressBooks; addressBook++) {
+                var rows = addressBookRows[addressBook % shards];
+                rows.add(rows.nextId(), generator.addressBookName(addressBook));
+            }
+            flush(addressBookRows);
+
+            withoutCustomerIndexes(() -> {
+                generator.generate((addressBook, contact) -> {
+                    var customer = generator.contact(contact);
+                    var contactKey = ContactKey.canonicalize(customer.firstName(), customer.lastName(),
+                            customer.phoneNumber());
+                    var rows = customerRows[addressBook % shards];
+                    rows.add(rows.nextId(), customer.firstName(), customer.lastName(), customer.phoneNumber(),
+                            addressBookId(addressBook), contactKey, ContactKey.hash(contactKey));
+                });
+                flush(customerRows);
+            });
+
+            //grouped by the whole contact key, contacts sharing a hash stay distinct
+            shardRouter.forEachShard(shard ->
+                    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_DISTINCT_CUSTOMERS)));
+        });
+
+        //ids are generated after the seeded ones from now on
+        shardRouter.forEachShard(shard -> {
+            restartSequence("address_book_seq", addressBookRows[shard].nextId() - 1);
+            restartSequence("customer_seq", customerRows[shard].nextId() - 1);
+        });
+        var customers = Arrays.stream(customerRows).mapToLong(batch -> batch.rows).sum();
+        log.info("Seeded {} address books with {} customers of {} distinct contacts in {} ms",
+                addressBooks, customers, generator.getContacts(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        if (durableStorageProperties.isEnabled()) {
+            customerSnapshotStore.writeSnapshot();
+        }
+    }
+
+    /**
+     * Id of the address book of the dataset with the given index, on the shard it is dealt to
+     */
+    private long addressBookId(int addressBook) {
+        return shardRouter.firstId(addressBook % shardRouter.getShards()) + addressBook / shardRouter.getShards();
+    }
+
+    private static void flush(Batch[] batches) {
+        for (Batch batch : batches) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * Runs the work with database page caches of a quarter of the heap across all shards, the indexes of millions
+     * of customers do not fit the default cache and would be read back from disk for every batch. In-memory
+     * databases have no page cache
+     */
+    private void withLargeCache(Runnable work) {
+        var cacheSizeMegabytes = new ArrayList<List<Long>>();
+        shardRouter.forEachShard(shard -> {
+            cacheSizeMegabytes.add(jdbcTemplate.queryForList("select setting_value from information_schema.settings " +
+                    "where setting_name = 'info.CACHE_MAX_SIZE'", Long.class));
+            if (!cacheSizeMegabytes.get(shard).isEmpty()) {
+                jdbcTemplate.execute("set cache_size " +
+                        Runtime.getRuntime().maxMemory() / 4 / 1024 / shardRouter.getShards());
+            }
+        });
+        try {
+            work.run();
+        } finally {
+            shardRouter.forEachShard(shard -> {
+                if (!cacheSizeMegabytes.get(shard).isEmpty()) {
+                    jdbcTemplate.execute("set cache_size " + cacheSizeMegabytes.get(shard).get(0) * 1024);
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the work without the secondary indexes and unique constraints declared on {@link Customer} on any
+     * shard and creates them again afterwards. Creating an index sorts the rows, which is much faster than adding
+     * every customer to indexes in random order
+     */
+    private void withoutCustomerIndexes(Runnable work) {
+        var table = Customer.class.getAnnotation(Table.class);
+        shardRouter.forEachShard(shard -> {
+            for (UniqueConstraint uniqueConstraint : table.uniqueConstraints()) {
+                jdbcTemplate.execute("alter table customer drop constraint " + uniqueConstraint.name());
+            }
+            for (Index index : table.indexes()) {
+                jdbcTemplate.execute("drop index " + index.name());
+            }
+        });
+        try {
+            work.run();
+        } finally {
+            shardRouter.forEachShard(shard -> createCustomerIndexes(table));
+        }
+    }
+
+    private void createCustomerIndexes(Table table) {
+        for (UniqueConstraint uniqueConstraint : table.uniqueConstraints()) {
+            jdbcTemplate.execute("alter table customer add constraint " + uniqueConstraint.name() +
+                    " unique (" + String.join(", ", uniqueConstraint.columnNames()) + ")");
+        }
+        for (Index index : table.indexes()) {
+            jdbcTemplate.execute("create " + (index.unique() ? "unique " : "") + "index " + index.name() +
+                    " on customer (" + index.columnList() + ")");
+        }
+    }
+
+    private void restartSequence(String sequence, long lastId) {
+        //the pooled optimizer takes the ids up to the next value of the sequence
+        jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (lastId + ID_ALLOCATION_SIZE));
+    }
+
+    /**
+     * Rows of one insert statement into one shard, sent as one JDBC batch and committed every batchSize rows
+     */
+    private class Batch {
+
+        private final int shard;
+
+        private final String sql;
+
+        private final List<Object[]> pending = new ArrayList<>(datasetProperties.getBatchSize());
+
+        private long rows;
+
+        Batch(int shard, String sql) {
+            this.shard = shard;
+            this.sql = sql;
+        }
+
+        /**
+         * @return id of the next row, ids of the rows of a shard start at its first id
+         */
+        long nextId() {
+            return shardRouter.firstId(shard) + rows;
+        }
+
+        void add(Object... row) {
+            pending.add(row);
+            rows++;
+            if (pending.size() == datasetProperties.getBatchSize()) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!pending.isEmpty()) {
+                shardRouter.onShard(shard,
+                        () -> transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(sql, pending)));
+                pending.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package au.com.test.assignment.addressbook.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Number of distinct customers across all shards, kept as counting them merges the distinct customers of every
+ * shard. It is counted again once customers of any address book changed, as told by {@link CustomersAddedEvent}
+ * and {@link CustomersRemovedEvent} after their transactions commit
+ */
+@Service
+public class DistinctCustomerCount {
+
+    private final AtomicLong changes = new AtomicLong();
+
+    private volatile Count count;
+
+    /**
+     * A count taken while customers change is kept as the count before the change, so it is taken again by the
+     * next call
+     * @param counter counts the distinct customers
+     * @return the kept count, or the count of the counter when customers changed since it was kept
+     */
+    public long get(LongSupplier counter) {
+        var changesBefore = changes.get();
+        var current = count;
+        if (current != null && current.changes() == changesBefore) {
+            return current.value();
+        }
+        var value = counter.getAsLong();
+        count = new Count(changesBefore, value);
+        return value;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomersAdded(CustomersAddedEvent event) {
+        changes.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomersRemoved(CustomersRemovedEvent event) {
+        changes.incrementAndGet();
+    }
+
+    private record Count(long changes, long value) {
+    }
+}
@@ -0,0 +1,19 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.CacheConfig;
+import org.springframework.cache.annotation.CacheEvict;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Evicts the cached AddressBook once the annotated method has changed its customers.
+ * The annotated method must have an addressBookId parameter
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@CacheEvict(cacheNames = CacheConfig.ADDRESS_BOOKS, key = "#addressBookId")
+public @interface EvictAddressBookCaches {
+}
@@ -0,0 +1,15 @@
+package au.com.test.assignment.addressbook.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Routes the database work of the annotated method to the shard of its AddressBook, see {@link ShardRouter}.
+ * The annotated method must have the addressBookId as its first parameter
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OnAddressBookShard {
+}
@@ -0,0 +1,197 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.exception.AddressBookException;
+import au.com.test.assignment.addressbook.model.ContactKey;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerLocation;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * Resolves phone numbers to the customers of all AddressBooks with an in-memory index keyed by the
+ * phone number in E.164 form as a long, see {@link ContactKey#phoneKey}. Each phone number maps to a
+ * long array of customer id and address book id pairs. The index is built at startup like the
+ * {@link CustomerSearchService} index and kept up to date from {@link CustomersAddedEvent} and
+ * {@link CustomersRemovedEvent} once their transactions commit. Lookup latency is recorded by the address.book.phone.lookup timer
+ */
+@Slf4j
+@Service
+public class PhoneLookupService implements CustomerIndex {
+
+    public static final String LOOKUP_TIMER = "address.book.phone.lookup";
+
+    private final CustomerRepository customerRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final Timer lookupTimer;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongKeyMap<long[]> customersByPhone = new LongKeyMap<>();
+
+    private final LongKeyMap<Long> phoneByCustomerId = new LongKeyMap<>();
+
+    public PhoneLookupService(CustomerRepository customerRepository,
+                              ShardRouter shardRouter,
+                              MeterRegistry meterRegistry) {
+        this.customerRepository = customerRepository;
+        this.shardRouter = shardRouter;
+        this.lookupTimer = Timer.builder(LOOKUP_TIMER)
+                .description("Time taken to resolve a phone number to customers")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Replaces the index with one built from all customers in the database, read shard by shard
+     */
+    @Override
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            clear();
+            shardRouter.forEach(customerRepository::streamAllEntries, this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Phone number index built with {} phone numbers", size());
+    }
+
+    @Override
+    public boolean recover(BiPredicate<Consumer<CustomerEntry>, BiConsumer<Long, Long>> replay) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            return replay.test(this::index, this::unindex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds all customers of all AddressBooks with the phone number, compared in E.164 form
+     * @param phoneNumber phone number in any format accepted for a customer
+     * @return where the customers with the phone number are stored, in the order they were added
+     */
+    public List<CustomerLocation> lookupPhoneNumber(String phoneNumber) {
+        long phoneKey = ContactKey.phoneKey(phoneNumber);
+        if (phoneKey == 0) {
+            throw new IllegalArgumentException("Invalid phone number");
+        }
+
+        try {
+            return lookupTimer.record(() -> {
+                long[] customers;
+                lock.readLock().lock();
+                try {
+                    customers = customersByPhone.get(phoneKey);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (customers == null) {
+                    return List.of();
+                }
+                List<CustomerLocation> locations = new ArrayList<>(customers.length / 2);
+                for (int i = 0; i < customers.length; i += 2) {
+                    locations.add(new CustomerLocation(customers[i], customers[i + 1]));
+                }
+                return locations;
+            });
+
+        } catch (Exception ex) {
+            log.error("Error while looking up phone number", ex);
+            throw new AddressBookException(ex.getMessage());
+        }
+    }
+
+    /**
+     * @return number of distinct phone numbers in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return customersByPhone.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(AddressBookVersions.BEFORE_VERSION_BUMP)
+    public void onCustomersAdded(CustomersAddedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.customers().forEach(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(AddressBookVersions.BEFORE_VERSION_BUMP)
+    public void onCustomersRemoved(CustomersRemovedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.customerIds().forEach(customerId -> unindex(event.addressBookId(), customerId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clear() {
+        customersByPhone.clear();
+        phoneByCustomerId.clear();
+    }
+
+    /**
+     * Arrays are replaced rather than changed in place, so an array handed to a reader never changes
+     */
+    private void index(CustomerEntry customer) {
+        long phoneKey = ContactKey.phoneKey(customer.phoneNumber());
+        if (phoneKey == 0 || phoneByCustomerId.put(customer.id(), phoneKey) != null) {
+            return;
+        }
+        long[] customers = customersByPhone.get(phoneKey);
+        long[] updated = customers == null ? new long[2] : Arrays.copyOf(customers, customers.length + 2);
+        updated[updated.length - 2] = customer.id();
+        updated[updated.length - 1] = customer.addressBookId();
+        customersByPhone.put(phoneKey, updated);
+    }
+
+    private void unindex(Long addressBookId, Long customerId) {
+        Long phoneKey = phoneByCustomerId.get(customerId);
+        if (phoneKey == null) {
+            return;
+        }
+        long[] customers = customersByPhone.get(phoneKey);
+        for (int i = 0; i < customers.length; i += 2) {
+            if (customers[i] == customerId && customers[i + 1] == addressBookId) {
+                phoneByCustomerId.remove(customerId);
+                if (customers.length == 2) {
+                    customersByPhone.remove(phoneKey);
+                } else {
+                    long[] updated = new long[customers.length - 2];
+                    System.arraycopy(customers, 0, updated, 0, i);
+                    System.arraycopy(customers, i + 2, updated, i, customers.length - i - 2);
+                    customersByPhone.put(phoneKey, updated);
+                }
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.ShardContext;
+import au.com.test.assignment.addressbook.config.ShardingProperties;
+import au.com.test.assignment.addressbook.exception.AddressBookException;
+import au.com.test.assignment.addressbook.exception.AddressBookNotFoundException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Routes database work to the shards AddressBooks are partitioned across, see {@link ShardingProperties}.
+ * Shard n holds the address books and customers with ids from n * idRange + 1, so the shard of an address book
+ * follows from its id and work on one address book touches only its shard. Work across address books is
+ * scattered to every shard in parallel, each shard in its own read-only transaction on its own thread, and the
+ * partial results are gathered by the caller. With a single shard all work runs on the calling thread
+ */
+@Service
+public class ShardRouter {
+
+    //rows a shard reads ahead of a merge before it waits for the merge to take them
+    static final int MERGE_BUFFER_SIZE = 1000;
+
+    private static final Object END = new Object();
+
+    private final int shards;
+
+    private final long idRange;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    //unbounded, a merge waits for all its shards at once and must not queue behind the shards of other merges
+    private final ExecutorService executor;
+
+    public ShardRouter(ShardingProperties shardingProperties, PlatformTransactionManager transactionManager) {
+        if (shardingProperties.getShards() < 1
+                || shardingProperties.getShards() * shardingProperties.getIdRange() > Integer.MAX_VALUE) {
+            throw new IllegalStateException("address-book.sharding needs at least one shard and shards * idRange " +
+                    "below 2^31, shards:" + shardingProperties.getShards() + " idRange:" + shardingProperties.getIdRange());
+        }
+        this.shards = shardingProperties.getShards();
+        this.idRange = shardingProperties.getIdRange();
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        var threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "shard-query-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @return shard holding the address book
+     * @throws AddressBookNotFoundException when the id is beyond the ids of all shards
+     */
+    public int shardOf(Long addressBookId) {
+        var shard = addressBookId < 1 ? 0 : (addressBookId - 1) / idRange;
+        if (shard >= shards) {
+            throw new AddressBookNotFoundException("Address Book not found");
+        }
+        return (int) shard;
+    }
+
+    /**
+     * @return id of the first address book and customer stored in the shard
+     */
+    public long firstId(int shard) {
+        return shard * idRange + 1;
+    }
+
+    /**
+     * @return shard for a new address book, shards take new address books in turn
+     */
+    public int nextShard() {
+        return Math.floorMod(nextShard.getAndIncrement(), shards);
+    }
+
+    /**
+     * Runs the work on the calling thread with its database work routed to the shard
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        var previous = ShardContext.enter(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.exit(previous);
+        }
+    }
+
+    /**
+     * Runs the work on every shard in turn on the calling thread, given the shard it runs on
+     */
+    public void forEachShard(IntConsumer work) {
+        for (int shard = 0; shard < shards; shard++) {
+            int current = shard;
+            onShard(shard, () -> {
+                work.accept(current);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Runs the query on all shards in parallel, each in a read-only transaction
+     * @param query given the shard it runs on
+     * @return result of every shard in shard order
+     */
+    public <T> List<T> scatter(IntFunction<T> query) {
+        if (shards == 1) {
+            return Collections.singletonList(readOnly(0, query));
+        }
+        List<CompletableFuture<T>> results = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            int current = shard;
+            results.add(CompletableFuture.supplyAsync(() -> readOnly(current, query), executor));
+        }
+        try {
+            return results.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+    }
+
+    /**
+     * Streams the rows of all shards one shard after the other to the consumer, each shard in a read-only
+     * transaction. Used where the order of the rows does not matter and they are only read once
+     * @param rows opens the stream of rows of a shard, it is closed once read
+     */
+    public <T> void forEach(Supplier<Stream<T>> rows, Consumer<? super T> consumer) {
+        for (int shard = 0; shard < shards; shard++) {
+            readOnly(shard, current -> {
+                try (var shardRows = rows.get()) {
+                    shardRows.forEach(consumer);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Streams the rows of all shards to the consumer in the order of the comparator, each shard must supply its
+     * rows in that order. Shards are read in parallel, each hands its rows over through a buffer of
+     * {@link #MERGE_BUFFER_SIZE} rows and the calling thread merges them, so memory use does not grow with the
+     * number of rows. Reading stops on every shard when the consumer fails
+     * @param rows opens the stream of rows of a shard, it is closed once read
+     */
+    public <T> void forEachMerged(Supplier<Stream<T>> rows, Comparator<? super T> order, Consumer<? super T> consumer) {
+        if (shards == 1) {
+            forEach(rows, consumer);
+            return;
+        }
+
+        var stopped = new AtomicBoolean();
+        List<MergeInput<T>> inputs = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            var input = new MergeInput<T>(stopped);
+            inputs.add(input);
+            int current = shard;
+            executor.execute(() -> input.fill(() -> readOnly(current, ignored -> {
+                try (var shardRows = rows.get()) {
+                    shardRows.forEach(input::put);
+                }
+                return null;
+            })));
+        }
+
+        try {
+            var heads = new PriorityQueue<MergeInput<T>>(shards, (first, second) -> order.compare(first.head, second.head));
+            for (MergeInput<T> input : inputs) {
+                if (input.advance()) {
+                    heads.add(input);
+                }
+            }
+            while (!heads.isEmpty()) {
+                var input = heads.poll();
+                consumer.accept(input.head);
+                if (input.advance()) {
+                    heads.add(input);
+                }
+            }
+        } finally {
+            stopped.set(true);
+        }
+    }
+
+    private <T> T readOnly(int shard, IntFunction<T> query) {
+        return onShard(shard, () -> readOnlyTransaction.execute(status -> query.apply(shard)));
+    }
+
+    /**
+     * Rows of one shard of a merge, handed over from the thread reading the shard to the merging thread
+     */
+    private static class MergeInput<T> {
+
+        private final BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(MERGE_BUFFER_SIZE);
+
+        private final AtomicBoolean stopped;
+
+        private T head;
+
+        MergeInput(AtomicBoolean stopped) {
+            this.stopped = stopped;
+        }
+
+        /**
+         * Reads the shard, ending the rows with an END marker or whatever the read threw
+         */
+        void fill(Runnable read) {
+            try {
+                read.run();
+                offer(END);
+            } catch (CancellationException ex) {
+                //the merge stopped, nobody takes the rest of the rows
+            } catch (Throwable ex) {
+                //errors too, the merging thread waits for the END marker or a failure
+                offer(ex);
+            }
+        }
+
+        void put(T row) {
+            offer(row);
+        }
+
+        private void offer(Object element) {
+            try {
+                while (!buffer.offer(element, 100, TimeUnit.MILLISECONDS)) {
+                    if (stopped.get()) {
+                        throw new CancellationException("Merge stopped");
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while reading shard");
+            }
+        }
+
+        /**
+         * Takes the next row of the shard as head
+         * @return false when the shard has no more rows
+         */
+        @SuppressWarnings("unchecked")
+        boolean advance() {
+            Object next;
+            try {
+                next = buffer.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new AddressBookException("Interrupted while merging shards");
+            }
+            if (next == END) {
+                return false;
+            }
+            if (next instanceof RuntimeException failure) {
+                throw failure;
+            }
+            if (next instanceof Error failure) {
+                throw failure;
+            }
+            head = (T) next;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.ShardContext;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs methods annotated with {@link OnAddressBookShard} on the shard of their AddressBook. Ordered before the
+ * transaction and cache advice, so the transaction of the method is opened on that shard
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ShardRoutingAspect {
+
+    private final ShardRouter shardRouter;
+
+    public ShardRoutingAspect(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    @Around("@annotation(au.com.test.assignment.addressbook.service.OnAddressBookShard)")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (shardRouter.getShards() == 1) {
+            return joinPoint.proceed();
+        }
+        var previous = ShardContext.enter(shardRouter.shardOf((Long) joinPoint.getArgs()[0]));
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardContext.exit(previous);
+        }
+    }
+}
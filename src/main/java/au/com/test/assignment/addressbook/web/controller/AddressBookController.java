@@ -2,25 +2,81 @@ package au.com.test.assignment.addressbook.web.controller;
 
 
 import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.AddressBookPage;
+import au.com.test.assignment.addressbook.model.AddressBookSummary;
+import au.com.test.assignment.addressbook.model.AddressBookView;
 import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerPage;
+import au.com.test.assignment.addressbook.model.CustomerSort;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import au.com.test.assignment.addressbook.model.ImportReport;
 import au.com.test.assignment.addressbook.service.AddressBookService;
+import au.com.test.assignment.addressbook.service.AddressBookVersions;
+import au.com.test.assignment.addressbook.service.CustomerAddCoalescer;
+import au.com.test.assignment.addressbook.service.CustomerImportService;
+import au.com.test.assignment.addressbook.web.controller.streaming.CsvCustomerReader;
+import au.com.test.assignment.addressbook.web.controller.streaming.JsonCustomerReader;
+import au.com.test.assignment.addressbook.web.controller.streaming.StreamFormat;
+import au.com.test.assignment.addressbook.web.controller.streaming.StreamingResponseWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Set;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 @RestController
+@Validated
 public class AddressBookController {
 
+    //customers removed in one request, their rows stay locked until all of them are removed
+    static final int MAX_REMOVED_CUSTOMERS = 1000;
+
+    private static final List<MediaType> VIEW_MEDIA_TYPES = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR);
+
     private final AddressBookService addressBookService;
 
-    public AddressBookController(AddressBookService addressBookService) {
+    private final CustomerAddCoalescer customerAddCoalescer;
+
+    private final AddressBookVersions addressBookVersions;
+
+    private final CustomerImportService customerImportService;
+
+    private final StreamingResponseWriter streamingResponseWriter;
+
+    private final ObjectMapper objectMapper;
+
+    public AddressBookController(AddressBookService addressBookService,
+                                 CustomerAddCoalescer customerAddCoalescer,
+                                 AddressBookVersions addressBookVersions,
+                                 CustomerImportService customerImportService,
+                                 StreamingResponseWriter streamingResponseWriter,
+                                 ObjectMapper objectMapper) {
         this.addressBookService = addressBookService;
+        this.customerAddCoalescer = customerAddCoalescer;
+        this.addressBookVersions = addressBookVersions;
+        this.customerImportService = customerImportService;
+        this.streamingResponseWriter = streamingResponseWriter;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(summary = "Create new Address Book")
@@ -36,18 +92,76 @@ public class AddressBookController {
         return addressBookService.createAddressBook(addressBook);
     }
 
+    @Operation(summary = "Retrieve a page of Address Books as summaries, or with their customers")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of Address Books in id order",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = AddressBookPage.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid Request",
+                    content = @Content)
+    })
+    @GetMapping("/api/v1/address-book")
+    public AddressBookPage<?> retrieveAddressBooks(
+            @Parameter(description = "nextCursor of the previous page, omit for the first page")
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int size,
+            @Parameter(description = "include all customers of each Address Book instead of their count, " +
+                    "pages then hold at most 20 Address Books")
+            @RequestParam(defaultValue = "false") boolean customers) {
+
+        return customers
+                ? addressBookService.retrieveAddressBooksWithCustomers(cursor, size)
+                : addressBookService.retrieveAddressBooks(cursor, size);
+    }
+
     @Operation(summary = "Get a Address Book by it's id")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Retrieved specified Address Book",
                     content = { @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = AddressBook.class)) }),
+                            schema = @Schema(implementation = AddressBookView.class)) }),
+            @ApiResponse(responseCode = "304", description = "Address Book has not changed since the If-None-Match ETag",
+                    content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid id supplied",
                     content = @Content),
             @ApiResponse(responseCode = "404", description = "Address Book not found",
                     content = @Content) })
     @GetMapping("/api/v1/address-book/{addressBookId}")
-    public AddressBook retrieveAddressBook(@PathVariable Long addressBookId) {
-        return addressBookService.retrieveAddressBook(addressBookId);
+    public ResponseEntity<AddressBookView> retrieveAddressBook(
+            @PathVariable Long addressBookId,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        var mediaType = viewMediaType(accept);
+        var currentETag = addressBookVersions.currentETag(addressBookId, mediaType);
+        if (isNotModified(addressBookId, ifNoneMatch, currentETag)) {
+            return notModified(currentETag);
+        }
+        //a cached view older than the version read above is a cache miss, so the ETag is never older than it
+        var addressBook = addressBookService.retrieveAddressBook(addressBookId);
+        return ok(addressBookVersions.eTag(addressBook.version(), mediaType), mediaType).body(addressBook);
+    }
+
+    @Operation(summary = "Get id, name and number of customers of a Address Book by it's id")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Summary of specified Address Book",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = AddressBookSummary.class)) }),
+            @ApiResponse(responseCode = "304", description = "Address Book has not changed since the If-None-Match ETag",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "Address Book not found",
+                    content = @Content) })
+    @GetMapping("/api/v1/address-book/{addressBookId}/summary")
+    public ResponseEntity<AddressBookSummary> retrieveAddressBookSummary(
+            @PathVariable Long addressBookId,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        var mediaType = viewMediaType(accept);
+        var currentETag = addressBookVersions.currentETag(addressBookId, mediaType);
+        if (isNotModified(addressBookId, ifNoneMatch, currentETag)) {
+            return notModified(currentETag);
+        }
+        return ok(currentETag, mediaType).body(addressBookService.retrieveAddressBookSummary(addressBookId));
     }
 
     @Operation(summary = "Create a new customer contact in Address Book")
@@ -62,7 +176,7 @@ public class AddressBookController {
     public Customer addContactToAddressBook(
             @PathVariable Long addressBookId, @Valid @RequestBody Customer customer) {
 
-        return addressBookService.addCustomerToAddressBook(addressBookId, customer);
+        return customerAddCoalescer.addCustomerToAddressBook(addressBookId, customer);
     }
 
     @Operation(summary = "Remove a customer contact from specified Address Book")
@@ -80,29 +194,207 @@ public class AddressBookController {
         addressBookService.removeCustomerFromAddressBook(addressBookId, customerId);
     }
 
-    @Operation(summary = "Retrieve all customers of specified Address Book")
+    @Operation(summary = "Remove several customer contacts from specified Address Book in one request",
+            description = "At most " + MAX_REMOVED_CUSTOMERS + " customer ids can be removed in one request")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "All customers of the specified Address Book",
+            @ApiResponse(responseCode = "200", description = "Number of customers removed from specified Address Book",
                     content = { @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = AddressBook.class)) }),
+                            schema = @Schema(implementation = Integer.class)) }),
+            @ApiResponse(responseCode = "400",
+                    description = "Invalid Request or more than " + MAX_REMOVED_CUSTOMERS + " customer ids",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "Address Book not found",
+                    content = @Content)
+    })
+    @DeleteMapping("/api/v1/address-book/{addressBookId}/customers")
+    public int removeCustomersFromAddressBook(@PathVariable Long addressBookId,
+                                              @RequestBody @Size(max = MAX_REMOVED_CUSTOMERS) List<Long> customerIds) {
+        return addressBookService.removeCustomersFromAddressBook(addressBookId, customerIds);
+    }
+
+    @Operation(summary = "Import customer contacts into specified Address Book from a JSON array or CSV upload")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Counts of imported, duplicate and failed rows",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ImportReport.class)) }),
+            @ApiResponse(responseCode = "404", description = "Address Book not found",
+                    content = @Content)
+    })
+    @PostMapping(value = "/api/v1/address-book/{addressBookId}/customers/import",
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ImportReport importCustomersFromJson(@PathVariable Long addressBookId,
+                                                InputStream body) throws IOException {
+        return customerImportService.importCustomers(addressBookId, new JsonCustomerReader(objectMapper, body));
+    }
+
+    @PostMapping(value = "/api/v1/address-book/{addressBookId}/customers/import", consumes = "text/csv")
+    public ImportReport importCustomersFromCsv(@PathVariable Long addressBookId, InputStream body) {
+        return customerImportService.importCustomers(addressBookId, new CsvCustomerReader(body));
+    }
+
+    @Operation(summary = "Retrieve a page of customers of specified Address Book")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of customers of the specified Address Book",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CustomerPage.class)),
+                            @Content(mediaType = "application/cbor",
+                            schema = @Schema(implementation = CustomerPage.class)) }),
+            @ApiResponse(responseCode = "304", description = "Customers have not changed since the If-None-Match ETag",
+                    content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid Request",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "Address Book not found",
                     content = @Content)
     })
     @GetMapping("/api/v1/address-book/{addressBookId}/customers")
-    public Set<Customer> retrieveCustomersFromAddressBook(@PathVariable Long addressBookId) {
-        return addressBookService.retrieveCustomersOfAddressBook(addressBookId);
+    public ResponseEntity<CustomerPage> retrieveCustomersFromAddressBook(
+            @PathVariable Long addressBookId,
+            @Parameter(description = "nextCursor of the previous page, omit for the first page")
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int size,
+            @RequestParam(defaultValue = "ID") CustomerSort sort,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        //read before the customers, so the ETag never claims changes the page does not include
+        var mediaType = viewMediaType(accept);
+        var currentETag = addressBookVersions.currentETag(addressBookId, mediaType);
+        if (isNotModified(addressBookId, ifNoneMatch, currentETag)) {
+            return notModified(currentETag);
+        }
+        return ok(currentETag, mediaType)
+                .body(addressBookService.retrieveCustomersOfAddressBook(addressBookId, cursor, size, sort));
+    }
+
+    @Operation(summary = "Export all customers of specified Address Book as NDJSON, CSV or CBOR, " +
+            "compressed by the server when the client accepts it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "All customers of the specified Address Book",
+                    content = { @Content(mediaType = "application/x-ndjson",
+                            schema = @Schema(implementation = CustomerView.class)),
+                            @Content(mediaType = "text/csv",
+                            schema = @Schema(implementation = CustomerView.class)),
+                            @Content(mediaType = "application/cbor",
+                            array = @ArraySchema(schema = @Schema(implementation = CustomerView.class))) }),
+            @ApiResponse(responseCode = "404", description = "Address Book not found",
+                    content = @Content)
+    })
+    @GetMapping("/api/v1/address-book/{addressBookId}/customers/export")
+    public void exportCustomersOfAddressBook(
+            @PathVariable Long addressBookId,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletResponse response) throws IOException {
+
+        StreamFormat format = StreamFormat.fromAcceptHeader(accept, StreamFormat.NDJSON);
+        StreamingResponseWriter.RowWriter<CustomerView> writer = streamingResponseWriter
+                .open(response, format, CustomerView.class)
+                .withHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("address-book-" + addressBookId + "." + format.getFileExtension())
+                        .build().toString());
+        addressBookService.exportCustomersOfAddressBook(addressBookId, writer);
+        writer.close();
     }
 
     @Operation(summary = "Retrieves distinct customers from all Address Books")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Distinct customers from all Address Book",
                     content = { @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = AddressBook.class)) }),
+                            array = @ArraySchema(schema = @Schema(implementation = CustomerView.class))),
+                            @Content(mediaType = "application/x-ndjson",
+                            schema = @Schema(implementation = CustomerView.class)),
+                            @Content(mediaType = "application/cbor",
+                            array = @ArraySchema(schema = @Schema(implementation = CustomerView.class))) }),
             @ApiResponse(responseCode = "400", description = "Invalid Request",
                     content = @Content)
     })
     @GetMapping("/api/v1/address-book/customers")
-    public Set<Customer> retrieveDistinctCustomersFromAllAddressBooks() {
-        return addressBookService.retrieveDistinctCustomersFromAllAddressBooks();
+    public void retrieveDistinctCustomersFromAllAddressBooks(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletResponse response) throws IOException {
+
+        StreamingResponseWriter.RowWriter<CustomerView> writer =
+                streamingResponseWriter.open(response, StreamFormat.fromAcceptHeader(accept), CustomerView.class);
+        addressBookService.retrieveDistinctCustomersFromAllAddressBooks(writer);
+        //only completed on success, so a failure before the first row still gets an error response
+        writer.close();
+    }
+
+    /**
+     * Picks the media type an ETag'd body is written in the way message converters negotiate it, the accepted
+     * type of highest quality and then the most specific one, JSON when both are accepted alike
+     * @return JSON or CBOR
+     */
+    static MediaType viewMediaType(String accept) {
+        if (!StringUtils.hasText(accept)) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType selected = null;
+        double selectedQuality = 0;
+        boolean selectedConcrete = false;
+        for (MediaType acceptedType : MediaType.parseMediaTypes(accept)) {
+            double quality = acceptedType.getQualityValue();
+            boolean concrete = acceptedType.isConcrete();
+            for (MediaType mediaType : VIEW_MEDIA_TYPES) {
+                if (quality > 0 && acceptedType.includes(mediaType) && (selected == null || quality > selectedQuality
+                        || quality == selectedQuality && concrete && !selectedConcrete)) {
+                    selected = mediaType;
+                    selectedQuality = quality;
+                    selectedConcrete = concrete;
+                }
+            }
+        }
+        return selected == null ? MediaType.APPLICATION_JSON : selected;
+    }
+
+    /**
+     * JSON and CBOR share a URL, so responses vary by Accept and carry the ETag of their media type
+     */
+    private static ResponseEntity.BodyBuilder ok(String eTag, MediaType mediaType) {
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).contentType(mediaType);
+    }
+
+    private static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+    }
+
+    /**
+     * @return true when the If-None-Match header matches the current ETag of an address book that exists,
+     * so a missing address book is still answered with 404
+     */
+    private boolean isNotModified(Long addressBookId, String ifNoneMatch, String currentETag) {
+        return matchesETag(ifNoneMatch, currentETag) && addressBookService.existsAddressBook(addressBookId);
+    }
+
+    /**
+     * @return true when the If-None-Match header is * or one of its ETags is the given ETag, compared weakly
+     */
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        if (ifNoneMatch.trim().equals("*")) {
+            return true;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            if (opaqueTag(tag.trim()).equals(opaqueTag(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    @Operation(summary = "Counts distinct customers across all Address Books")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Number of distinct customers across all Address Books",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Long.class)) })
+    })
+    @GetMapping("/api/v1/address-book/customers/count")
+    public long countDistinctCustomersFromAllAddressBooks() {
+        return addressBookService.countDistinctCustomersFromAllAddressBooks();
     }
-}
\ No newline at end of file
+}
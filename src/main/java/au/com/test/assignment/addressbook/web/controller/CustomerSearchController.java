@@ -0,0 +1,71 @@
+package au.com.test.assignment.addressbook.web.controller;
+
+import au.com.test.assignment.addressbook.model.CustomerLocation;
+import au.com.test.assignment.addressbook.model.CustomerSearchHit;
+import au.com.test.assignment.addressbook.service.CustomerSearchService;
+import au.com.test.assignment.addressbook.service.PhoneLookupService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@Validated
+public class CustomerSearchController {
+
+    private final CustomerSearchService customerSearchService;
+
+    private final PhoneLookupService phoneLookupService;
+
+    public CustomerSearchController(CustomerSearchService customerSearchService,
+                                    PhoneLookupService phoneLookupService) {
+        this.customerSearchService = customerSearchService;
+        this.phoneLookupService = phoneLookupService;
+    }
+
+    @Operation(summary = "Search customers of all Address Books by name")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Best matching customers, best first, " +
+                    "each with the Address Books it is in",
+                    content = { @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = CustomerSearchHit.class))) }),
+            @ApiResponse(responseCode = "400", description = "Invalid Request",
+                    content = @Content)
+    })
+    @GetMapping("/api/v1/customers/search")
+    public List<CustomerSearchHit> searchCustomers(
+            @Parameter(description = "part of a first or last name, two letter queries match the start of a name")
+            @RequestParam("q") @Size(min = CustomerSearchService.MIN_QUERY_LENGTH, max = 100) String query,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) int limit) {
+        return customerSearchService.searchCustomers(query, limit);
+    }
+
+    @Operation(summary = "Find customers of all Address Books by phone number")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ids of the customers with the phone number " +
+                    "and of their Address Books",
+                    content = { @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = CustomerLocation.class))) }),
+            @ApiResponse(responseCode = "400", description = "Invalid phone number",
+                    content = @Content)
+    })
+    @GetMapping("/api/v1/customers/phone/{phoneNumber}")
+    public List<CustomerLocation> lookupPhoneNumber(
+            @Parameter(description = "phone number in any format, numbers without a country code are taken as Australian")
+            @PathVariable String phoneNumber) {
+        return phoneLookupService.lookupPhoneNumber(phoneNumber);
+    }
+}
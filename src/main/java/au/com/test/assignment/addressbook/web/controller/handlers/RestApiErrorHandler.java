@@ -1,14 +1,22 @@
 package au.com.test.assignment.addressbook.web.controller.handlers;
 
+import au.com.test.assignment.addressbook.config.MetricsConfig;
 import au.com.test.assignment.addressbook.exception.AddressBookException;
 import au.com.test.assignment.addressbook.exception.AddressBookNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.TypeMismatchException;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -20,8 +28,17 @@ import java.util.Map;
 
 @Order(Ordered.HIGHEST_PRECEDENCE)
 @ControllerAdvice
+@Slf4j
 public class RestApiErrorHandler {
 
+    private final Counter notFoundCounter;
+
+    public RestApiErrorHandler(MeterRegistry meterRegistry) {
+        this.notFoundCounter = Counter.builder(MetricsConfig.NOT_FOUND_COUNTER)
+                .description("Requests for an Address Book that does not exist")
+                .register(meterRegistry);
+    }
+
     @ResponseBody
     @ExceptionHandler(AddressBookException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -33,16 +50,38 @@ public class RestApiErrorHandler {
     @ExceptionHandler(AddressBookNotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public ApiResponse handleAddressBookNotFoundException(AddressBookNotFoundException ex) {
+        notFoundCounter.increment();
         return new ApiResponse(new ApiError(HttpStatus.NOT_FOUND.value(), ex.getMessage()));
     }
 
+    /**
+     * Handles requests the server cannot make sense of, such as invalid arguments and unreadable bodies
+     */
     @ResponseBody
-    @ExceptionHandler(RuntimeException.class)
+    @ExceptionHandler({IllegalArgumentException.class, TypeMismatchException.class,
+            HttpMessageNotReadableException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
-    public ApiResponse handleException(RuntimeException ex) {
+    public ApiResponse handleBadRequest(RuntimeException ex) {
         return new ApiResponse(new ApiError(HttpStatus.BAD_REQUEST.value(), "Bad Request"));
     }
 
+    /**
+     * Handles any other error, Spring MVC errors keep the status they carry and everything else is a
+     * server fault
+     */
+    @ResponseBody
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<ApiResponse> handleException(RuntimeException ex) {
+        HttpStatusCode status = ex instanceof ErrorResponse errorResponse
+                ? errorResponse.getStatusCode() : HttpStatus.INTERNAL_SERVER_ERROR;
+        if (status.is5xxServerError()) {
+            log.error("Request failed", ex);
+        }
+        var reason = HttpStatus.resolve(status.value());
+        return ResponseEntity.status(status).body(new ApiResponse(new ApiError(status.value(),
+                reason != null ? reason.getReasonPhrase() : "Error")));
+    }
+
     @ResponseBody
     @ExceptionHandler(ConstraintViolationException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
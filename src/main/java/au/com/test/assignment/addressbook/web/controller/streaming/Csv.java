@@ -0,0 +1,67 @@
+package au.com.test.assignment.addressbook.web.controller.streaming;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 support, quoted fields may span lines
+ */
+public final class Csv {
+
+    //longest record read, bounds the memory a quote that is never closed takes
+    static final int MAX_RECORD_LENGTH = 1 << 20;
+
+    private Csv() {
+    }
+
+    /**
+     * Reads the next record. Fields may be quoted, a quote inside a quoted field is written twice and a line
+     * break inside a quoted field is part of the field. Records end with LF or CRLF
+     * @return fields of the record, null at the end of the input
+     * @throws IllegalArgumentException when a quoted field is not closed or the record is too long
+     */
+    public static List<String> readRecord(BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c < 0) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int length = 0;
+        for (; c >= 0; c = reader.read()) {
+            if (++length > MAX_RECORD_LENGTH) {
+                throw new IllegalArgumentException("Record longer than " + MAX_RECORD_LENGTH + " characters");
+            }
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
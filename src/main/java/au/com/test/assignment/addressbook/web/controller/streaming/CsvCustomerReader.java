@@ -0,0 +1,128 @@
+package au.com.test.assignment.addressbook.web.controller.streaming;
+
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerRow;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads customers from CSV with the columns firstName, lastName and phoneNumber one record at a time.
+ * A header record naming the columns is optional, with one the columns may come in any order and the id
+ * column written by the export is ignored, so an exported file can be imported again. Blank lines are skipped,
+ * reading stops at a malformed record as the records after it can no longer be told apart
+ */
+public class CsvCustomerReader implements Iterator<CustomerRow> {
+
+    static final List<String> COLUMNS = List.of("firstName", "lastName", "phoneNumber");
+
+    //written by the export, ids are given by the address book on import
+    static final String ID_COLUMN = "id";
+
+    private final BufferedReader reader;
+
+    private long rowNumber;
+
+    private boolean firstRecord = true;
+
+    private boolean ended;
+
+    //position of every column of COLUMNS in a record and the number of fields of a record
+    private int[] positions = {0, 1, 2};
+
+    private int fieldCount = COLUMNS.size();
+
+    private CustomerRow next;
+
+    public CsvCustomerReader(InputStream inputStream) {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !ended) {
+            next = readRow();
+        }
+        return next != null;
+    }
+
+    @Override
+    public CustomerRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var row = next;
+        next = null;
+        return row;
+    }
+
+    private CustomerRow readRow() {
+        try {
+            List<String> fields;
+            while ((fields = Csv.readRecord(reader)) != null) {
+                var header = firstRecord && readHeader(fields);
+                firstRecord = false;
+                if (!header && !(fields.size() == 1 && fields.get(0).isBlank())) {
+                    rowNumber++;
+                    return toRow(fields);
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            ended = true;
+            return CustomerRow.failed(++rowNumber, ex.getMessage());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        ended = true;
+        return null;
+    }
+
+    /**
+     * Takes the positions of the columns from the record when it names them all
+     * @return whether the record is a header
+     */
+    private boolean readHeader(List<String> fields) {
+        var names = fields.stream().map(String::strip).toList();
+        var positions = new int[COLUMNS.size()];
+        for (int column = 0; column < COLUMNS.size(); column++) {
+            var name = COLUMNS.get(column);
+            positions[column] = indexOfIgnoreCase(names, name);
+            if (positions[column] < 0) {
+                return false;
+            }
+        }
+        if (names.stream().anyMatch(name -> indexOfIgnoreCase(COLUMNS, name) < 0 && !name.equalsIgnoreCase(ID_COLUMN))) {
+            return false;
+        }
+        this.positions = positions;
+        this.fieldCount = names.size();
+        return true;
+    }
+
+    private CustomerRow toRow(List<String> fields) {
+        if (fields.size() != fieldCount) {
+            return CustomerRow.failed(rowNumber, "Expected " + fieldCount + " columns: " + String.join(",", COLUMNS));
+        }
+        return CustomerRow.of(rowNumber, Customer.builder()
+                .firstName(fields.get(positions[0]).strip())
+                .lastName(fields.get(positions[1]).strip())
+                .phoneNumber(fields.get(positions[2]).strip())
+                .build());
+    }
+
+    private static int indexOfIgnoreCase(List<String> names, String name) {
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
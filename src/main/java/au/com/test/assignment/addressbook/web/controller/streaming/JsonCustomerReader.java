@@ -0,0 +1,86 @@
+package au.com.test.assignment.addressbook.web.controller.streaming;
+
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerRow;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads customers from a JSON array one element at a time. An element that is not a valid
+ * customer is reported as a failed row, malformed JSON ends the upload with a failed row
+ */
+public class JsonCustomerReader implements Iterator<CustomerRow> {
+
+    private final ObjectMapper objectMapper;
+
+    private final JsonParser parser;
+
+    private long rowNumber;
+
+    private boolean started;
+
+    private boolean finished;
+
+    private CustomerRow next;
+
+    public JsonCustomerReader(ObjectMapper objectMapper, InputStream inputStream) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = objectMapper.getFactory().createParser(inputStream);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            next = readRow();
+        }
+        return next != null;
+    }
+
+    @Override
+    public CustomerRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var row = next;
+        next = null;
+        return row;
+    }
+
+    private CustomerRow readRow() {
+        try {
+            if (!started) {
+                started = true;
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    finished = true;
+                    return CustomerRow.failed(0, "Expected a JSON array of customers");
+                }
+            }
+            var token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                finished = true;
+                return null;
+            }
+            rowNumber++;
+            JsonNode element = parser.readValueAsTree();
+            try {
+                return CustomerRow.of(rowNumber, objectMapper.treeToValue(element, Customer.class));
+            } catch (JsonProcessingException ex) {
+                return CustomerRow.failed(rowNumber, "Invalid customer: " + ex.getOriginalMessage());
+            }
+        } catch (JsonProcessingException ex) {
+            finished = true;
+            return CustomerRow.failed(rowNumber, "Malformed JSON, remaining rows skipped: " + ex.getOriginalMessage());
+        } catch (IOException ex) {
+            finished = true;
+            return CustomerRow.failed(rowNumber, "Upload could not be read, remaining rows skipped");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package au.com.test.assignment.addressbook.web.controller.streaming;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Formats a streamed collection of rows can be written in
+ */
+public enum StreamFormat {
+
+    JSON(MediaType.APPLICATION_JSON, "json"),
+    NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+    CSV(new MediaType("text", "csv"), "csv"),
+    CBOR(MediaType.APPLICATION_CBOR, "cbor");
+
+    private final MediaType mediaType;
+
+    private final String fileExtension;
+
+    StreamFormat(MediaType mediaType, String fileExtension) {
+        this.mediaType = mediaType;
+        this.fileExtension = fileExtension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Whether the format is binary, so the response has no character encoding
+     */
+    public boolean isBinary() {
+        return this == CBOR;
+    }
+
+    /**
+     * Picks the format the Accept header prefers, falling back to JSON
+     * @param acceptHeader value of the Accept request header, may be null
+     * @return format to write the response in
+     */
+    public static StreamFormat fromAcceptHeader(String acceptHeader) {
+        return fromAcceptHeader(acceptHeader, JSON);
+    }
+
+    /**
+     * Picks the format the Accept header prefers, by quality first and specificity second. Types with q=0 are
+     * refused by the client and never picked
+     * @param acceptHeader value of the Accept request header, may be null
+     * @param fallback format used when none of the accepted types is supported
+     * @return format to write the response in
+     */
+    public static StreamFormat fromAcceptHeader(String acceptHeader, StreamFormat fallback) {
+        if (!StringUtils.hasText(acceptHeader)) {
+            return fallback;
+        }
+        List<MediaType> acceptedTypes = new ArrayList<>(MediaType.parseMediaTypes(acceptHeader));
+        acceptedTypes.removeIf(acceptedType -> acceptedType.getQualityValue() == 0);
+        MimeTypeUtils.sortBySpecificity(acceptedTypes);
+        //the sort is stable, so types of the same quality stay in order of specificity
+        acceptedTypes.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType acceptedType : acceptedTypes) {
+            for (StreamFormat format : values()) {
+                if (format.mediaType.equalsTypeAndSubtype(acceptedType)) {
+                    return format;
+                }
+            }
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,130 @@
+package au.com.test.assignment.addressbook.web.controller.streaming;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Writes rows straight to the servlet response as they are produced, so large
+ * result sets are never held in memory as a whole. Server compression gzips the body when the client accepts it
+ */
+@Component
+public class StreamingResponseWriter {
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectMapper cborMapper;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+
+    private final Map<Class<?>, CsvSchema> csvSchemas = new ConcurrentHashMap<>();
+
+    public StreamingResponseWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.cborMapper = objectMapper.copyWith(new CBORFactory());
+    }
+
+    /**
+     * Returns a writer rows can be passed to. Nothing is written to the response until the
+     * first row is accepted or the writer is closed, so a failure before that point can still
+     * be answered with an error response. The writer must be closed to complete the response
+     * @param response servlet response to write to
+     * @param format format of the response body
+     * @param rowType type of the rows, used to derive the CSV columns
+     * @return writer accepting rows
+     */
+    public <T> RowWriter<T> open(HttpServletResponse response, StreamFormat format, Class<T> rowType) {
+        return new RowWriter<>(response, format, rowType);
+    }
+
+    private JsonGenerator createGenerator(OutputStream outputStream, StreamFormat format, Class<?> rowType)
+            throws IOException {
+        if (format == StreamFormat.CSV) {
+            var generator = csvMapper.getFactory().createGenerator(outputStream);
+            generator.setSchema(csvSchemas.computeIfAbsent(rowType, type -> csvMapper.schemaFor(type).withHeader()));
+            return generator;
+        }
+        if (format == StreamFormat.CBOR) {
+            //an indefinite length array, written like the JSON array as rows arrive
+            var generator = cborMapper.getFactory().createGenerator(outputStream);
+            generator.writeStartArray();
+            return generator;
+        }
+        var generator = objectMapper.getFactory().createGenerator(outputStream);
+        if (format == StreamFormat.JSON) {
+            generator.writeStartArray();
+        } else {
+            generator.setRootValueSeparator(null);
+        }
+        return generator;
+    }
+
+    public class RowWriter<T> implements Consumer<T>, AutoCloseable {
+
+        private final HttpServletResponse response;
+        private final StreamFormat format;
+        private final Class<T> rowType;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private JsonGenerator generator;
+
+        RowWriter(HttpServletResponse response, StreamFormat format, Class<T> rowType) {
+            this.response = response;
+            this.format = format;
+            this.rowType = rowType;
+        }
+
+        /**
+         * Adds a header that is only sent once the response body is started
+         */
+        public RowWriter<T> withHeader(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        private JsonGenerator generator() throws IOException {
+            if (generator == null) {
+                headers.forEach(response::setHeader);
+                response.setContentType(format.getMediaType().toString());
+                if (!format.isBinary()) {
+                    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                }
+                generator = createGenerator(response.getOutputStream(), format, rowType);
+            }
+            return generator;
+        }
+
+        @Override
+        public void accept(T row) {
+            try {
+                generator().writeObject(row);
+                if (format == StreamFormat.NDJSON) {
+                    generator.writeRaw('\n');
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator();
+            if (format == StreamFormat.JSON || format == StreamFormat.CBOR) {
+                generator.writeEndArray();
+            }
+            generator.close();
+        }
+    }
+}
@@ -1,31 +1,72 @@
 package au.com.test.assignment.addressbook;
 
+import au.com.test.assignment.addressbook.config.CacheConfig;
+import au.com.test.assignment.addressbook.config.ImportProperties;
+import au.com.test.assignment.addressbook.config.MetricsConfig;
 import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.AddressBookPage;
+import au.com.test.assignment.addressbook.model.AddressBookView;
 import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerLocation;
+import au.com.test.assignment.addressbook.model.CustomerPage;
+import au.com.test.assignment.addressbook.model.CustomerSearchHit;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import au.com.test.assignment.addressbook.model.ImportReport;
 import au.com.test.assignment.addressbook.repository.AddressBookRepository;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import au.com.test.assignment.addressbook.repository.DistinctCustomerRepository;
 import au.com.test.assignment.addressbook.service.AddressBookService;
+import au.com.test.assignment.addressbook.service.CustomerSearchService;
+import au.com.test.assignment.addressbook.service.PhoneLookupService;
+import au.com.test.assignment.addressbook.utils.RequestCost;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.cache.CacheManager;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 import static au.com.test.assignment.addressbook.utils.TestUtils.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @DirtiesContext
 public class AddressBookIntegrationTest {
 
+    private static final Logger log = LoggerFactory.getLogger(AddressBookIntegrationTest.class);
+
+    private static final int WRITER_THREADS = 64;
+
+    private static final int CUSTOMERS_PER_WRITER = 20;
+
+    private static final int LARGE_ADDRESS_BOOK_SIZE = 10_000;
+
     @LocalServerPort
     private int port;
 
@@ -35,9 +76,30 @@ public class AddressBookIntegrationTest {
     @Autowired
     private AddressBookRepository addressBookRepository;
 
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private DistinctCustomerRepository distinctCustomerRepository;
+
     @Autowired
     private AddressBookService addressBookService;
 
+    @Autowired
+    private CustomerSearchService customerSearchService;
+
+    @Autowired
+    private PhoneLookupService phoneLookupService;
+
+    @Autowired
+    private ImportProperties importProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CacheManager cacheManager;
+
     private static HttpHeaders headers;
 
     @BeforeAll
@@ -49,6 +111,9 @@ public class AddressBookIntegrationTest {
     @BeforeEach
     public void cleanUp() {
         addressBookRepository.deleteAll();
+        distinctCustomerRepository.deleteAll();
+        customerSearchService.rebuild();
+        phoneLookupService.rebuild();
     }
 
     private String createURLWithPort() {
@@ -84,6 +149,31 @@ public class AddressBookIntegrationTest {
         assertEquals(retrievedAddressBook.getId(), savedAddressBook.getId());
     }
 
+    @Test
+    public void answersWithCurrentETagWhenCachedAddressBookIsOlder() {
+        AddressBook savedAddressBook = addressBookRepository.save(AddressBook.builder().name("test-address-book").build());
+        String requestUrl = createURLWithPort() + savedAddressBook.getId();
+        HttpEntity<String> entity = new HttpEntity<>("", headers);
+
+        ResponseEntity<AddressBookView> before = restTemplate.exchange(
+                requestUrl, HttpMethod.GET, entity, AddressBookView.class);
+        restTemplate.exchange(requestUrl + "/customer", HttpMethod.POST,
+                new HttpEntity<>(asJsonString(getTestCustomer()), headers), Customer.class);
+        //a slow read from before the add puts its view once the add has evicted it
+        cacheManager.getCache(CacheConfig.ADDRESS_BOOKS).put(savedAddressBook.getId(), before.getBody());
+        ResponseEntity<AddressBookView> after = restTemplate.exchange(
+                requestUrl, HttpMethod.GET, entity, AddressBookView.class);
+        HttpHeaders conditionalHeaders = new HttpHeaders();
+        conditionalHeaders.setIfNoneMatch(after.getHeaders().getETag());
+        ResponseEntity<String> notModified = restTemplate.exchange(
+                requestUrl, HttpMethod.GET, new HttpEntity<>(conditionalHeaders), String.class);
+
+        assertEquals(200, after.getStatusCode().value());
+        assertEquals(1, after.getBody().customers().size());
+        assertNotEquals(before.getHeaders().getETag(), after.getHeaders().getETag());
+        assertEquals(304, notModified.getStatusCode().value());
+    }
+
     @Test
     public void addsNewCustomerToAddressBook() {
         AddressBook addressBook = AddressBook.builder().name("test-address-book").build();
@@ -96,12 +186,33 @@ public class AddressBookIntegrationTest {
 
         Customer savedCustomer = response.getBody();
 
-        AddressBook book = addressBookService.retrieveAddressBook(savedAddressBook.getId());
+        AddressBookView book = addressBookService.retrieveAddressBook(savedAddressBook.getId());
 
         assertNotNull(savedCustomer);
         assertEquals(response.getStatusCode().value(), 200);
-        assertEquals(book.getCustomers().size(), 1);
-        assertEquals(book.getCustomers().stream().findFirst().get().getId(), savedCustomer.getId());
+        assertEquals(book.customers().size(), 1);
+        assertEquals(book.customers().get(0).id(), savedCustomer.getId());
+    }
+
+    @Test
+    public void addsSameCustomerToAddressBookOnlyOnce() {
+        AddressBook savedAddressBook = addressBookRepository.save(getTestAddressBook());
+        String requestUrl = createURLWithPort() + savedAddressBook.getId() + "/customer";
+        Customer existingCustomer = savedAddressBook.getCustomers().stream().findFirst().get();
+
+        HttpEntity<String> entity = new HttpEntity<>(asJsonString(Customer.builder()
+                .firstName(existingCustomer.getFirstName())
+                .lastName(existingCustomer.getLastName())
+                .phoneNumber(existingCustomer.getPhoneNumber())
+                .build()), headers);
+        ResponseEntity<Customer> response = restTemplate.exchange(
+                requestUrl, HttpMethod.POST, entity, new ParameterizedTypeReference<>(){});
+
+        AddressBookView book = addressBookService.retrieveAddressBook(savedAddressBook.getId());
+
+        assertEquals(response.getStatusCode().value(), 200);
+        assertEquals(response.getBody().getId(), existingCustomer.getId());
+        assertEquals(book.customers().size(), 1);
     }
 
     @Test
@@ -118,11 +229,89 @@ public class AddressBookIntegrationTest {
         ResponseEntity<Void> response = restTemplate.exchange(
                 requestUrl, HttpMethod.DELETE, entity, new ParameterizedTypeReference<>(){});
 
-        AddressBook retrieveAddressBook = addressBookService.retrieveAddressBook(savedAddressBook.getId());
+        AddressBookView retrieveAddressBook = addressBookService.retrieveAddressBook(savedAddressBook.getId());
 
         assertNotNull(retrieveAddressBook);
         assertEquals(response.getStatusCode().value(), 200);
-        assertEquals(retrieveAddressBook.getCustomers().size(), 0);
+        assertEquals(retrieveAddressBook.customers().size(), 0);
+    }
+
+    @Test
+    public void removesSeveralCustomersFromAddressBook() {
+        AddressBook addressBook = getTestAddressBook();
+        addressBook.getCustomers().add(getTestCustomer());
+
+        AddressBook savedAddressBook = addressBookRepository.save(addressBook);
+
+        List<Long> customerIds = savedAddressBook.getCustomers().stream().map(Customer::getId).toList();
+
+        String requestUrl = createURLWithPort() + savedAddressBook.getId() + "/customers";
+
+        HttpEntity<String> entity = new HttpEntity<>(asJsonString(customerIds), headers);
+        ResponseEntity<Integer> response = restTemplate.exchange(
+                requestUrl, HttpMethod.DELETE, entity, new ParameterizedTypeReference<>(){});
+
+        AddressBookView retrieveAddressBook = addressBookService.retrieveAddressBook(savedAddressBook.getId());
+
+        assertEquals(response.getStatusCode().value(), 200);
+        assertEquals(response.getBody(), 2);
+        assertEquals(retrieveAddressBook.customers().size(), 0);
+    }
+
+    @Test
+    public void importsCustomersFromJsonInChunks() {
+        AddressBook savedAddressBook = addressBookRepository.save(getTestAddressBook());
+        String requestUrl = createURLWithPort() + savedAddressBook.getId() + "/customers/import";
+        int chunkSize = importProperties.getChunkSize();
+        int batchSize = importProperties.getBatchSize();
+        importProperties.setChunkSize(2);
+        importProperties.setBatchSize(2);
+
+        List<Customer> customers = List.of(
+                getTestCustomers().iterator().next(),
+                Customer.builder().firstName("a").lastName("a").phoneNumber("1").build(),
+                Customer.builder().firstName("b").lastName("b").build(),
+                Customer.builder().firstName("c").lastName("c").phoneNumber("2").build(),
+                Customer.builder().firstName("a").lastName("a").phoneNumber("1").build(),
+                Customer.builder().firstName("d").lastName("d").phoneNumber("3").build());
+
+        try {
+            HttpEntity<String> entity = new HttpEntity<>(asJsonString(customers), headers);
+            ResponseEntity<ImportReport> response = restTemplate.exchange(
+                    requestUrl, HttpMethod.POST, entity, new ParameterizedTypeReference<>(){});
+
+            ImportReport report = response.getBody();
+            AddressBookView book = addressBookService.retrieveAddressBook(savedAddressBook.getId());
+
+            assertEquals(response.getStatusCode().value(), 200);
+            assertEquals(report.getImported(), 3);
+            assertEquals(report.getDuplicates(), 2);
+            assertEquals(report.getFailed(), 1);
+            assertEquals(report.getErrors().get(0).row(), 3);
+            assertEquals(book.customers().size(), 4);
+        } finally {
+            importProperties.setChunkSize(chunkSize);
+            importProperties.setBatchSize(batchSize);
+        }
+    }
+
+    @Test
+    public void importsCustomersFromCsv() {
+        AddressBook savedAddressBook = addressBookRepository.save(AddressBook.builder().name("test-address-book").build());
+        String requestUrl = createURLWithPort() + savedAddressBook.getId() + "/customers/import";
+
+        HttpHeaders csvHeaders = new HttpHeaders();
+        csvHeaders.setContentType(MediaType.parseMediaType("text/csv"));
+        HttpEntity<String> entity = new HttpEntity<>(
+                "firstName,lastName,phoneNumber\na,a,1\nb,b,2\n", csvHeaders);
+        ResponseEntity<ImportReport> response = restTemplate.exchange(
+                requestUrl, HttpMethod.POST, entity, new ParameterizedTypeReference<>(){});
+
+        AddressBookView book = addressBookService.retrieveAddressBook(savedAddressBook.getId());
+
+        assertEquals(response.getStatusCode().value(), 200);
+        assertEquals(response.getBody().getImported(), 2);
+        assertEquals(book.customers().size(), 2);
     }
 
     @Test
@@ -134,14 +323,199 @@ public class AddressBookIntegrationTest {
         String requestUrl = createURLWithPort() + savedAddressBook.getId() + "/customers";
 
         HttpEntity<String> entity = new HttpEntity<>("", headers);
-        ResponseEntity<Set<Customer>> response = restTemplate.exchange(
+        ResponseEntity<CustomerPage> response = restTemplate.exchange(
                 requestUrl, HttpMethod.GET, entity, new ParameterizedTypeReference<>(){});
 
-        Set<Customer> customers = response.getBody();
+        CustomerPage customers = response.getBody();
 
         assertNotNull(customers);
         assertEquals(response.getStatusCode().value(), 200);
-        assertEquals(customers.size(), 1);
+        assertEquals(customers.customers().size(), 1);
+        assertNull(customers.nextCursor());
+    }
+
+    @Test
+    public void pagesThroughCustomersFromAddressBook() {
+        AddressBook addressBook = getTestAddressBook();
+        addressBook.getCustomers().add(getTestCustomer());
+        addressBook.getCustomers().add(Customer.builder().firstName("test3").lastName("testing3").phoneNumber("789").build());
+
+        AddressBook savedAddressBook = addressBookRepository.save(addressBook);
+
+        String requestUrl = createURLWithPort() + savedAddressBook.getId() + "/customers?size=2&sort=NAME";
+
+        HttpEntity<String> entity = new HttpEntity<>("", headers);
+        ResponseEntity<CustomerPage> firstPage = restTemplate.exchange(
+                requestUrl, HttpMethod.GET, entity, new ParameterizedTypeReference<>(){});
+        ResponseEntity<CustomerPage> secondPage = restTemplate.exchange(
+                requestUrl + "&cursor=" + firstPage.getBody().nextCursor(), HttpMethod.GET, entity,
+                new ParameterizedTypeReference<>(){});
+
+        assertEquals(firstPage.getBody().customers().size(), 2);
+        assertNotNull(firstPage.getBody().nextCursor());
+        assertEquals(secondPage.getBody().customers().size(), 1);
+        assertEquals(secondPage.getBody().customers().get(0).lastName(), "testing3");
+        assertNull(secondPage.getBody().nextCursor());
+    }
+
+    @Test
+    public void compressesLargeCustomerPagesOnly() {
+        AddressBook addressBook = getTestAddressBook();
+        for (int i = 0; i < 100; i++) {
+            addressBook.getCustomers().add(Customer.builder()
+                    .firstName("first" + i).lastName("last" + i).phoneNumber("04" + (10_000_000 + i)).build());
+        }
+        AddressBook savedAddressBook = addressBookRepository.save(addressBook);
+
+        HttpHeaders gzipHeaders = new HttpHeaders();
+        gzipHeaders.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ResponseEntity<byte[]> largePage = restTemplate.exchange(
+                createURLWithPort() + savedAddressBook.getId() + "/customers?size=100", HttpMethod.GET,
+                new HttpEntity<>(gzipHeaders), byte[].class);
+        ResponseEntity<byte[]> smallPage = restTemplate.exchange(
+                createURLWithPort() + savedAddressBook.getId() + "/customers?size=1", HttpMethod.GET,
+                new HttpEntity<>(gzipHeaders), byte[].class);
+
+        assertEquals(largePage.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), "gzip");
+        assertNull(smallPage.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void compressesExportedCustomersOnce() throws IOException {
+        AddressBook savedAddressBook = addressBookRepository.save(getTestAddressBook());
+
+        HttpHeaders gzipHeaders = new HttpHeaders();
+        gzipHeaders.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        gzipHeaders.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+        ResponseEntity<byte[]> export = restTemplate.exchange(
+                createURLWithPort() + savedAddressBook.getId() + "/customers/export", HttpMethod.GET,
+                new HttpEntity<>(gzipHeaders), byte[].class);
+
+        assertEquals(export.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), "gzip");
+        try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(export.getBody()))) {
+            assertTrue(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8).startsWith("{\"id\":"));
+        }
+    }
+
+    @Test
+    public void listsAddressBooksWithSameStatementsWhateverThePageSize() {
+        for (int i = 0; i < 6; i++) {
+            addressBookService.createAddressBook(getTestAddressBook());
+        }
+        String listUrl = createURLWithPort().replaceAll("/$", "");
+        HttpEntity<String> entity = new HttpEntity<>("", headers);
+        RequestCost listAddressBooks = RequestCost.ofEndpoint(meterRegistry, "GET", "/api/v1/address-book");
+
+        for (int size : List.of(2, 6)) {
+            listAddressBooks.measure(() -> restTemplate.exchange(
+                            listUrl + "?size=" + size, HttpMethod.GET, entity, String.class))
+                    .assertRequests(1)
+                    .assertStatementsAtMost(1)
+                    .assertEntitiesLoadedAtMost(0);
+            listAddressBooks.measure(() -> restTemplate.exchange(
+                            listUrl + "?customers=true&size=" + size, HttpMethod.GET, entity, String.class))
+                    .assertRequests(1)
+                    .assertStatementsAtMost(2)
+                    .assertEntitiesLoadedAtMost(0);
+        }
+        ResponseEntity<AddressBookPage<AddressBookView>> allWithCustomers = restTemplate.exchange(
+                listUrl + "?size=6&customers=true", HttpMethod.GET, entity, new ParameterizedTypeReference<>(){});
+
+        assertEquals(allWithCustomers.getBody().addressBooks().size(), 6);
+        assertEquals(allWithCustomers.getBody().addressBooks().get(5).customers().size(), 1);
+        assertNull(allWithCustomers.getBody().nextCursor());
+    }
+
+    @Test
+    public void boundsWorkOfRequestsToLargeAddressBook() {
+        Set<Customer> customers = new HashSet<>();
+        for (int i = 0; i < LARGE_ADDRESS_BOOK_SIZE; i++) {
+            customers.add(Customer.builder()
+                    .firstName("first" + i).lastName("last" + i).phoneNumber("04" + (10_000_000 + i)).build());
+        }
+        Long addressBookId = addressBookService.createAddressBook(AddressBook.builder()
+                .name("large-address-book").customers(customers).build()).getId();
+        String addressBookUrl = createURLWithPort() + addressBookId;
+        HttpEntity<String> entity = new HttpEntity<>("", headers);
+
+        //every endpoint is called once before it is measured, so one-off initialisation is not counted
+        Runnable addCustomer = () -> addCustomer(addressBookUrl + "/customer", Customer.builder()
+                .firstName("added").lastName("customer").phoneNumber(String.valueOf(System.nanoTime())).build());
+        addCustomer.run();
+        RequestCost.ofEndpoint(meterRegistry, "POST", "/api/v1/address-book/{addressBookId}/customer")
+                .measure(addCustomer)
+                .assertRequests(1)
+                .assertStatementsAtMost(4)
+                .assertEntitiesLoadedAtMost(0)
+                .assertAllocatedBytesAtMost(1_000_000);
+
+        Runnable retrievePage = () -> restTemplate.exchange(
+                addressBookUrl + "/customers?size=100", HttpMethod.GET, entity, String.class);
+        retrievePage.run();
+        RequestCost.ofEndpoint(meterRegistry, "GET", "/api/v1/address-book/{addressBookId}/customers")
+                .measure(retrievePage)
+                .assertRequests(1)
+                .assertStatementsAtMost(2)
+                .assertEntitiesLoadedAtMost(0)
+                .assertAllocatedBytesAtMost(1_000_000);
+
+        Runnable retrieveSummary = () -> restTemplate.exchange(
+                addressBookUrl + "/summary", HttpMethod.GET, entity, String.class);
+        retrieveSummary.run();
+        RequestCost.ofEndpoint(meterRegistry, "GET", "/api/v1/address-book/{addressBookId}/summary")
+                .measure(retrieveSummary)
+                .assertRequests(1)
+                .assertStatementsAtMost(1)
+                .assertEntitiesLoadedAtMost(0)
+                .assertAllocatedBytesAtMost(500_000);
+
+        RequestCost.ofEndpoint(meterRegistry, "GET", "/api/v1/address-book/{addressBookId}")
+                .measure(() -> restTemplate.exchange(addressBookUrl, HttpMethod.GET, entity, String.class))
+                .assertRequests(1)
+                .assertStatementsAtMost(2)
+                .assertEntitiesLoadedAtMost(0);
+    }
+
+    @Test
+    public void exportsCustomersFromAddressBookAsCsv() {
+        AddressBook savedAddressBook = addressBookRepository.save(getTestAddressBook());
+        Long customerId = savedAddressBook.getCustomers().stream().findFirst().get().getId();
+
+        String requestUrl = createURLWithPort() + savedAddressBook.getId() + "/customers/export";
+
+        HttpHeaders csvHeaders = new HttpHeaders();
+        csvHeaders.setAccept(List.of(MediaType.parseMediaType("text/csv")));
+        ResponseEntity<String> response = restTemplate.exchange(
+                requestUrl, HttpMethod.GET, new HttpEntity<>(csvHeaders), String.class);
+
+        assertEquals(response.getStatusCode().value(), 200);
+        assertEquals(response.getBody(), "id,firstName,lastName,phoneNumber\n" + customerId + ",test2,testing2,456\n");
+    }
+
+    @Test
+    public void importsCustomersExportedAsCsv() {
+        AddressBook exported = addressBookRepository.save(getTestAddressBook());
+        AddressBook imported = addressBookRepository.save(AddressBook.builder().name("imported").build());
+
+        HttpHeaders csvHeaders = new HttpHeaders();
+        csvHeaders.setAccept(List.of(MediaType.parseMediaType("text/csv")));
+        String csv = restTemplate.exchange(createURLWithPort() + exported.getId() + "/customers/export",
+                HttpMethod.GET, new HttpEntity<>(csvHeaders), String.class).getBody();
+
+        csvHeaders = new HttpHeaders();
+        csvHeaders.setContentType(MediaType.parseMediaType("text/csv"));
+        ResponseEntity<ImportReport> response = restTemplate.exchange(
+                createURLWithPort() + imported.getId() + "/customers/import", HttpMethod.POST,
+                new HttpEntity<>(csv, csvHeaders), new ParameterizedTypeReference<>(){});
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(1, response.getBody().getImported());
+        assertEquals(0, response.getBody().getFailed());
+        assertEquals(List.of(new CustomerView(null, "test2", "testing2", "456")),
+                addressBookService.retrieveAddressBook(imported.getId()).customers().stream()
+                        .map(customer -> new CustomerView(null, customer.firstName(), customer.lastName(),
+                                customer.phoneNumber()))
+                        .toList());
     }
 
     @Test
@@ -162,7 +536,7 @@ public class AddressBookIntegrationTest {
         AddressBook addressBook3 = AddressBook
                 .builder()
                 .name("test-address-book3")
-                .customers(Set.of(getTestCustomer()))
+                .customers(Set.of(Customer.builder().firstName(" Test ").lastName("TESTING").phoneNumber("0123").build()))
                 .build();
 
         addressBookService.createAddressBook(addressBook1);
@@ -180,6 +554,137 @@ public class AddressBookIntegrationTest {
         assertNotNull(customers);
         assertEquals(response.getStatusCode().value(), 200);
         assertEquals(customers.size(), 1);
+
+        ResponseEntity<Long> countResponse = restTemplate.exchange(
+                requestUrl + "/count", HttpMethod.GET, entity, Long.class);
+
+        assertEquals(countResponse.getStatusCode().value(), 200);
+        assertEquals(countResponse.getBody(), 1L);
+    }
+
+    @Test
+    public void searchesCustomersAddedToAndRemovedFromAddressBooks() {
+        AddressBook savedAddressBook = addressBookRepository.save(
+                AddressBook.builder().name("test-address-book").build());
+        String customerUrl = createURLWithPort() + savedAddressBook.getId() + "/customer";
+        String searchUrl = "http://localhost:" + port + "/api/v1/customers/search?q=esti";
+
+        ResponseEntity<Customer> added = restTemplate.exchange(customerUrl, HttpMethod.POST,
+                new HttpEntity<>(asJsonString(getTestCustomer()), headers), Customer.class);
+        ResponseEntity<List<CustomerSearchHit>> found = restTemplate.exchange(searchUrl, HttpMethod.GET,
+                new HttpEntity<>("", headers), new ParameterizedTypeReference<>(){});
+
+        assertEquals(found.getStatusCode().value(), 200);
+        assertEquals(found.getBody(), List.of(new CustomerSearchHit("test", "testing", "123",
+                List.of(savedAddressBook.getId()))));
+
+        restTemplate.exchange(customerUrl + "/" + added.getBody().getId(), HttpMethod.DELETE,
+                new HttpEntity<>("", headers), Void.class);
+        ResponseEntity<List<CustomerSearchHit>> notFound = restTemplate.exchange(searchUrl, HttpMethod.GET,
+                new HttpEntity<>("", headers), new ParameterizedTypeReference<>(){});
+
+        assertEquals(notFound.getBody(), List.of());
+    }
+
+    @Test
+    public void looksUpCustomersByPhoneNumber() {
+        AddressBook savedAddressBook = addressBookService.createAddressBook(getTestAddressBook());
+        Customer customer = savedAddressBook.getCustomers().iterator().next();
+        String requestUrl = "http://localhost:" + port + "/api/v1/customers/phone/+61456";
+
+        ResponseEntity<List<CustomerLocation>> response = restTemplate.exchange(requestUrl, HttpMethod.GET,
+                new HttpEntity<>("", headers), new ParameterizedTypeReference<>(){});
+
+        assertEquals(response.getStatusCode().value(), 200);
+        assertEquals(response.getBody(), List.of(new CustomerLocation(customer.getId(), savedAddressBook.getId())));
     }
-}
 
+    @Test
+    public void recordsDatabaseWorkAndLatencyOfRequests() {
+        AddressBook savedAddressBook = addressBookService.createAddressBook(getTestAddressBook());
+        HttpEntity<String> entity = new HttpEntity<>("", headers);
+        double notFound = meterRegistry.counter(MetricsConfig.NOT_FOUND_COUNTER).count();
+        List<ResponseEntity<String>> responses = new ArrayList<>();
+
+        var cost = RequestCost.ofEndpoint(meterRegistry, "GET", "/api/v1/address-book/{addressBookId}").measure(() -> {
+            responses.add(restTemplate.exchange(
+                    createURLWithPort() + savedAddressBook.getId(), HttpMethod.GET, entity, String.class));
+            responses.add(restTemplate.exchange(
+                    createURLWithPort() + (savedAddressBook.getId() + 1000), HttpMethod.GET, entity, String.class));
+        });
+
+        assertEquals(responses.get(1).getStatusCode().value(), 404);
+        assertEquals(meterRegistry.counter(MetricsConfig.NOT_FOUND_COUNTER).count(), notFound + 1);
+        //the address book and its customers are read as projections, so no entity is loaded
+        cost.assertRequests(2).assertStatementsAtMost(2).assertEntitiesLoadedAtMost(0);
+        assertTrue(cost.allocatedBytes() > 0);
+        assertNotNull(meterRegistry.get(MetricsConfig.SERVICE_TIMER)
+                .tags("class", AddressBookService.class.getName(), "method", "retrieveAddressBook").timer());
+    }
+
+    @Test
+    public void addsAndRemovesCustomersOfOneAddressBookConcurrently() throws Exception {
+        Long addressBookId = addressBookRepository.save(AddressBook.builder().name("test-address-book").build()).getId();
+        String customerUrl = createURLWithPort() + addressBookId + "/customer";
+        ExecutorService executor = Executors.newFixedThreadPool(WRITER_THREADS);
+
+        //every writer adds its own customers and the same shared customer
+        List<Callable<List<Long>>> writers = new ArrayList<>();
+        for (int writer = 0; writer < WRITER_THREADS; writer++) {
+            int writerId = writer;
+            writers.add(() -> {
+                List<Long> customerIds = new ArrayList<>();
+                for (int i = 0; i < CUSTOMERS_PER_WRITER; i++) {
+                    customerIds.add(addCustomer(customerUrl, Customer.builder().firstName("writer" + writerId)
+                            .lastName("customer" + i).phoneNumber(String.valueOf(1000 * writerId + i)).build()));
+                }
+                customerIds.add(addCustomer(customerUrl, getTestCustomer()));
+                return customerIds;
+            });
+        }
+        long started = System.nanoTime();
+        List<List<Long>> added = new ArrayList<>();
+        for (Future<List<Long>> result : executor.invokeAll(writers)) {
+            added.add(result.get());
+        }
+        long addedNanos = System.nanoTime() - started;
+        int adds = WRITER_THREADS * (CUSTOMERS_PER_WRITER + 1);
+        log.info("{} concurrent adds to one address book from {} threads at {} adds/s",
+                adds, WRITER_THREADS, adds * 1_000_000_000L / addedNanos);
+
+        int expectedCustomers = WRITER_THREADS * CUSTOMERS_PER_WRITER + 1;
+        assertEquals(customerRepository.count(), expectedCustomers);
+        assertEquals(distinctCustomerRepository.count(), expectedCustomers);
+        assertEquals(added.stream().map(customerIds -> customerIds.get(CUSTOMERS_PER_WRITER)).distinct().count(), 1);
+
+        //every writer removes half of its own customers and the shared customer
+        List<Callable<Void>> removers = new ArrayList<>();
+        for (List<Long> customerIds : added) {
+            removers.add(() -> {
+                for (Long customerId : customerIds.subList(CUSTOMERS_PER_WRITER / 2, customerIds.size())) {
+                    restTemplate.exchange(customerUrl + "/" + customerId, HttpMethod.DELETE,
+                            new HttpEntity<>("", headers), Void.class);
+                }
+                return null;
+            });
+        }
+        for (Future<Void> result : executor.invokeAll(removers)) {
+            result.get();
+        }
+        executor.shutdown();
+
+        int remainingCustomers = WRITER_THREADS * CUSTOMERS_PER_WRITER / 2;
+        assertEquals(customerRepository.count(), remainingCustomers);
+        assertEquals(distinctCustomerRepository.count(), remainingCustomers);
+        assertEquals(distinctCustomerRepository.findAll().stream()
+                .filter(distinctCustomer -> distinctCustomer.getReferenceCount() != 1).count(), 0);
+        assertEquals(phoneLookupService.size(), remainingCustomers);
+    }
+
+    private Long addCustomer(String customerUrl, Customer customer) {
+        ResponseEntity<Customer> response = restTemplate.exchange(customerUrl, HttpMethod.POST,
+                new HttpEntity<>(asJsonString(customer), headers), Customer.class);
+        assertEquals(response.getStatusCode().value(), 200);
+        return response.getBody().getId();
+    }
+}
@@ -0,0 +1,33 @@
+package au.com.test.assignment.addressbook.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ContactKeyTest {
+
+    @Test
+    public void convertsNationalAndInternationalNumbersToSameE164() {
+        assertEquals("+61412345678", ContactKey.toE164("0412 345 678"));
+        assertEquals("+61412345678", ContactKey.toE164("+61 412 345 678"));
+        assertEquals("+61412345678", ContactKey.toE164("0061412345678"));
+        assertEquals("+61412345678", ContactKey.toE164("412345678"));
+    }
+
+    @Test
+    public void takesLeadingCountryCodeWithoutPlusAsInternational() {
+        assertEquals("+61412345678", ContactKey.toE164("61412345678"));
+        assertEquals("+61412345678", ContactKey.toE164("61 412 345 678"));
+        assertEquals(ContactKey.phoneKey("0412345678"), ContactKey.phoneKey("61412345678"));
+        assertEquals(ContactKey.canonicalize("Mary", "Smith", "0412345678"),
+                ContactKey.canonicalize("mary", "SMITH", "61412345678"));
+    }
+
+    @Test
+    public void keepsShortNumbersStartingWithCountryCodeNational() {
+        assertEquals("+61612345678", ContactKey.toE164("612345678"));
+        assertEquals("+6161", ContactKey.toE164("61"));
+        assertEquals("+61123", ContactKey.toE164("123"));
+        assertEquals("", ContactKey.toE164(" - "));
+    }
+}
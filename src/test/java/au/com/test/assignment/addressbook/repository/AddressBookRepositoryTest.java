@@ -1,6 +1,9 @@
 package au.com.test.assignment.addressbook.repository;
 
 import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.AddressBookSummary;
+import au.com.test.assignment.addressbook.utils.RequestCost;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -8,13 +11,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.List;
+
 import static au.com.test.assignment.addressbook.utils.TestUtils.getTestAddressBook;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
-@DataJpaTest
+//Hibernate statistics measure the cost of the queries, they are off in production
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
 @ExtendWith(SpringExtension.class)
 @AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
 public class AddressBookRepositoryTest {
@@ -22,6 +34,9 @@ public class AddressBookRepositoryTest {
     @Autowired
     AddressBookRepository addressBookRepository;
 
+    @Autowired
+    TestEntityManager entityManager;
+
 
     @Test
     public void savesNewAddressBook() {
@@ -44,6 +59,47 @@ public class AddressBookRepositoryTest {
         assertEquals(addressBook.getId(), savedAddressBook.getId());
     }
 
+    @Test
+    public void loadsCustomersLazily() {
+        AddressBook savedAddressBook = addressBookRepository.save(getTestAddressBook());
+        entityManager.flush();
+        entityManager.clear();
+
+        AddressBook addressBook = addressBookRepository.findById(savedAddressBook.getId()).get();
+        assertFalse(Hibernate.isInitialized(addressBook.getCustomers()));
+        assertEquals(addressBook.getCustomers().size(), 1);
+    }
+
+    @Test
+    public void summarisesAddressBookWithCustomerCount() {
+        AddressBook savedAddressBook = addressBookRepository.save(getTestAddressBook());
+        AddressBook emptyAddressBook = addressBookRepository.save(AddressBook.builder().name("empty").build());
+        entityManager.flush();
+
+        assertEquals(addressBookRepository.findSummaryById(savedAddressBook.getId()).get(),
+                new AddressBookSummary(savedAddressBook.getId(), "test-address-book", 1L));
+        assertEquals(addressBookRepository.findSummaryById(emptyAddressBook.getId()).get().customerCount(), 0L);
+        assertFalse(addressBookRepository.findSummaryById(-1L).isPresent());
+    }
+
+    @Test
+    public void pagesThroughAddressBookSummariesById() {
+        AddressBook first = addressBookRepository.save(getTestAddressBook());
+        AddressBook second = addressBookRepository.save(AddressBook.builder().name("second").build());
+        AddressBook third = addressBookRepository.save(getTestAddressBook());
+        entityManager.flush();
+        entityManager.clear();
+
+        RequestCost.ofCurrentThread(entityManager.getEntityManager().getEntityManagerFactory())
+                .measure(() -> addressBookRepository.findSummaryPageOrderedById(0L, PageRequest.ofSize(1000)))
+                .assertStatementsAtMost(1)
+                .assertEntitiesLoadedAtMost(0);
+        assertEquals(addressBookRepository.findSummaryPageOrderedById(0L, PageRequest.ofSize(2)), List.of(
+                new AddressBookSummary(first.getId(), "test-address-book", 1L),
+                new AddressBookSummary(second.getId(), "second", 0L)));
+        assertEquals(addressBookRepository.findSummaryPageOrderedById(second.getId(), PageRequest.ofSize(2)), List.of(
+                new AddressBookSummary(third.getId(), "test-address-book", 1L)));
+    }
 
     @AfterEach
     public void destroy() {
@@ -0,0 +1,118 @@
+package au.com.test.assignment.addressbook.repository;
+
+import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerIdSummary;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static au.com.test.assignment.addressbook.utils.TestUtils.getTestCustomer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@ExtendWith(SpringExtension.class)
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class CustomerRepositoryTest {
+
+    @Autowired
+    AddressBookRepository addressBookRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Test
+    public void deletesCustomersOnlyFromSpecifiedAddressBook() {
+        AddressBook addressBook = addressBookRepository.save(AddressBook.builder()
+                .name("test-address-book1")
+                .customers(new HashSet<>(Set.of(getTestCustomer())))
+                .build());
+        AddressBook otherAddressBook = addressBookRepository.save(AddressBook.builder()
+                .name("test-address-book2")
+                .customers(new HashSet<>(Set.of(getTestCustomer())))
+                .build());
+        Long customerId = addressBook.getCustomers().iterator().next().getId();
+        Long otherCustomerId = otherAddressBook.getCustomers().iterator().next().getId();
+
+        assertEquals(0, customerRepository.deleteFromAddressBook(addressBook.getId(), otherCustomerId));
+        assertEquals(1, customerRepository.deleteAllFromAddressBook(
+                addressBook.getId(), List.of(customerId, otherCustomerId)));
+        assertEquals(1, customerRepository.count());
+    }
+
+    @Test
+    public void summarizesIdsOfAllCustomers() {
+        assertEquals(CustomerIdSummary.EMPTY, customerRepository.summarizeIds());
+
+        AddressBook addressBook = addressBookRepository.save(AddressBook.builder()
+                .name("test-address-book1")
+                .customers(new HashSet<>(Set.of(getTestCustomer(),
+                        Customer.builder().firstName("other").lastName("testing").phoneNumber("789").build())))
+                .build());
+        List<Long> ids = addressBook.getCustomers().stream().map(Customer::getId).toList();
+
+        assertEquals(new CustomerIdSummary(2, ids.stream().mapToLong(Long::longValue).max().orElseThrow(),
+                ids.stream().mapToLong(Long::longValue).sum()), customerRepository.summarizeIds());
+    }
+
+    @Test
+    public void findsCustomersOfSeveralAddressBooksInOneQuery() {
+        AddressBook addressBook = addressBookRepository.save(AddressBook.builder()
+                .name("test-address-book1")
+                .customers(new HashSet<>(Set.of(getTestCustomer())))
+                .build());
+        AddressBook otherAddressBook = addressBookRepository.save(AddressBook.builder()
+                .name("test-address-book2")
+                .customers(new HashSet<>(Set.of(getTestCustomer())))
+                .build());
+        addressBookRepository.save(AddressBook.builder()
+                .name("test-address-book3")
+                .customers(new HashSet<>(Set.of(getTestCustomer())))
+                .build());
+
+        List<CustomerEntry> customers = customerRepository.findAllEntriesByAddressBookIdIn(
+                List.of(otherAddressBook.getId(), addressBook.getId()));
+
+        assertEquals(List.of(addressBook.getId(), otherAddressBook.getId()),
+                customers.stream().map(CustomerEntry::addressBookId).toList());
+    }
+
+    @Test
+    public void pagesThroughCustomersOfAddressBookByName() {
+        AddressBook addressBook = addressBookRepository.save(AddressBook.builder()
+                .name("test-address-book1")
+                .customers(new HashSet<>(Set.of(
+                        Customer.builder().firstName("b").lastName("smith").phoneNumber("1").build(),
+                        Customer.builder().firstName("a").lastName("smith").phoneNumber("2").build(),
+                        Customer.builder().firstName("a").lastName("jones").phoneNumber("3").build())))
+                .build());
+
+        List<CustomerView> firstPage = customerRepository.findFirstPageOrderedByName(
+                addressBook.getId(), PageRequest.ofSize(2));
+        CustomerView last = firstPage.get(1);
+        List<CustomerView> secondPage = customerRepository.findPageOrderedByName(
+                addressBook.getId(), last.lastName(), last.firstName(), last.id(), PageRequest.ofSize(2));
+
+        assertEquals(List.of("jones", "smith"), firstPage.stream().map(CustomerView::lastName).toList());
+        assertEquals("a", firstPage.get(1).firstName());
+        assertEquals(1, secondPage.size());
+        assertEquals("b", secondPage.get(0).firstName());
+    }
+
+    @AfterEach
+    public void destroy() {
+        addressBookRepository.deleteAll();
+    }
+}
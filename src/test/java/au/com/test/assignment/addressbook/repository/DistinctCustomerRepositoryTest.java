@@ -0,0 +1,114 @@
+package au.com.test.assignment.addressbook.repository;
+
+import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import au.com.test.assignment.addressbook.model.DistinctCustomer;
+import au.com.test.assignment.addressbook.model.DistinctCustomerEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static au.com.test.assignment.addressbook.utils.TestUtils.getTestCustomer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@ExtendWith(SpringExtension.class)
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+public class DistinctCustomerRepositoryTest {
+
+    @Autowired
+    AddressBookRepository addressBookRepository;
+
+    @Autowired
+    DistinctCustomerRepository distinctCustomerRepository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Test
+    public void countsCustomersWithSameContactKeyOnce() {
+        Customer otherCustomer = Customer.builder().firstName("other").lastName("testing").phoneNumber("789").build();
+        AddressBook addressBook = saveAddressBook("test-address-book1", getTestCustomer(), otherCustomer);
+        AddressBook otherAddressBook = saveAddressBook("test-address-book2",
+                Customer.builder().firstName(" TEST ").lastName("Testing").phoneNumber("+61 123").build());
+
+        distinctCustomerRepository.registerCustomers(addressBook.getId(), customerIds(addressBook));
+        distinctCustomerRepository.registerCustomers(otherAddressBook.getId(), customerIds(otherAddressBook));
+
+        List<CustomerView> customers;
+        try (var distinctCustomers = distinctCustomerRepository.streamAll()) {
+            customers = distinctCustomers.toList();
+        }
+        assertEquals(2, customers.size());
+        assertEquals(Set.of("other", "test"), customers.stream()
+                .map(customer -> customer.firstName().strip().toLowerCase()).collect(Collectors.toSet()));
+        assertEquals(List.of(1L, 2L), distinctCustomerRepository.findAll().stream()
+                .map(DistinctCustomer::getReferenceCount).sorted().toList());
+    }
+
+    @Test
+    public void keepsContactsSharingHashApart() {
+        AddressBook addressBook = saveAddressBook("test-address-book1", getTestCustomer(),
+                Customer.builder().firstName("other").lastName("testing").phoneNumber("789").build());
+        AddressBook otherAddressBook = saveAddressBook("test-address-book2", getTestCustomer());
+        //every contact gets the same hash, as contacts with colliding hashes would
+        entityManager.getEntityManager().createNativeQuery("update customer set contact_hash = 42").executeUpdate();
+
+        distinctCustomerRepository.registerCustomers(addressBook.getId(), customerIds(addressBook));
+        distinctCustomerRepository.registerCustomers(otherAddressBook.getId(), customerIds(otherAddressBook));
+
+        List<DistinctCustomerEntry> customers;
+        try (var distinctCustomers = distinctCustomerRepository.streamAllOrderedByContactHash()) {
+            customers = distinctCustomers.toList();
+        }
+        assertEquals(2, customers.size());
+        assertEquals(Set.of("other", "test"), customers.stream()
+                .map(DistinctCustomerEntry::firstName).collect(Collectors.toSet()));
+        assertEquals(List.of(1L, 2L), distinctCustomerRepository.findAll().stream()
+                .map(DistinctCustomer::getReferenceCount).sorted().toList());
+
+        distinctCustomerRepository.releaseCustomers(otherAddressBook.getId(), customerIds(otherAddressBook));
+        distinctCustomerRepository.deleteUnreferenced(otherAddressBook.getId(), customerIds(otherAddressBook));
+        entityManager.clear();
+        assertEquals(List.of(1L, 1L), distinctCustomerRepository.findAll().stream()
+                .map(DistinctCustomer::getReferenceCount).toList());
+    }
+
+    @Test
+    public void deletesDistinctCustomerWhenLastReferenceIsReleased() {
+        AddressBook addressBook = saveAddressBook("test-address-book1", getTestCustomer());
+        AddressBook otherAddressBook = saveAddressBook("test-address-book2", getTestCustomer());
+        distinctCustomerRepository.registerCustomers(addressBook.getId(), customerIds(addressBook));
+        distinctCustomerRepository.registerCustomers(otherAddressBook.getId(), customerIds(otherAddressBook));
+
+        distinctCustomerRepository.releaseCustomers(addressBook.getId(), customerIds(addressBook));
+        distinctCustomerRepository.deleteUnreferenced(addressBook.getId(), customerIds(addressBook));
+        assertEquals(1, distinctCustomerRepository.count());
+
+        distinctCustomerRepository.releaseCustomers(otherAddressBook.getId(), customerIds(otherAddressBook));
+        distinctCustomerRepository.deleteUnreferenced(otherAddressBook.getId(), customerIds(otherAddressBook));
+        assertEquals(0, distinctCustomerRepository.count());
+    }
+
+    private AddressBook saveAddressBook(String name, Customer... customers) {
+        return addressBookRepository.saveAndFlush(AddressBook.builder()
+                .name(name)
+                .customers(new HashSet<>(Set.of(customers)))
+                .build());
+    }
+
+    private static List<Long> customerIds(AddressBook addressBook) {
+        return addressBook.getCustomers().stream().map(Customer::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,141 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.CacheConfig;
+import au.com.test.assignment.addressbook.model.AddressBookView;
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.repository.AddressBookRepository;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import au.com.test.assignment.addressbook.repository.DistinctCustomerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static au.com.test.assignment.addressbook.utils.TestUtils.getTestCustomer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@DirtiesContext
+public class AddressBookServiceCachingTest {
+
+    @MockBean
+    private AddressBookRepository addressBookRepository;
+
+    @MockBean
+    private CustomerRepository customerRepository;
+
+    @MockBean
+    private DistinctCustomerRepository distinctCustomerRepository;
+
+    @SpyBean
+    private AddressBookVersions addressBookVersions;
+
+    @Autowired
+    private AddressBookService addressBookService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    public void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    public void retrievesAddressBookFromCache() {
+        when(addressBookRepository.findNameById(any(Long.class))).thenReturn(Optional.of("test"));
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+
+        AddressBookView addressBook = addressBookService.retrieveAddressBook(1L);
+        AddressBookView cachedAddressBook = addressBookService.retrieveAddressBook(1L);
+
+        assertSame(addressBook, cachedAddressBook);
+        verify(addressBookRepository, times(1)).findNameById(1L);
+        verify(customerRepository, times(1)).findAllByAddressBookId(1L);
+    }
+
+    @Test
+    public void readsAddressBookAgainWhenCachedViewIsOlderThanItsVersion() {
+        when(addressBookRepository.findNameById(any(Long.class))).thenReturn(Optional.of("test"));
+        addressBookVersions.onCustomersRemoved(new CustomersRemovedEvent(1L, List.of(5L)));
+        long version = addressBookVersions.currentVersion(1L);
+        //a slow read of the version before the change puts its view after the change has been evicted
+        cacheManager.getCache(CacheConfig.ADDRESS_BOOKS).put(1L, new AddressBookView(1L, "test", List.of(), version - 1));
+
+        AddressBookView addressBook = addressBookService.retrieveAddressBook(1L);
+
+        assertEquals(version, addressBook.version());
+        assertSame(addressBook, addressBookService.retrieveAddressBook(1L));
+        verify(addressBookRepository, times(1)).findNameById(1L);
+    }
+
+    @Test
+    public void evictsCachedAddressBookWhenCustomerIsAdded() {
+        Customer customer = getTestCustomer();
+        when(addressBookRepository.findNameById(any(Long.class))).thenReturn(Optional.of("test"));
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.saveAndFlush(any(Customer.class))).thenAnswer(invocation -> {
+            Customer saved = invocation.getArgument(0);
+            saved.setId(3L);
+            return saved;
+        });
+
+        addressBookService.retrieveAddressBook(1L);
+        addressBookService.retrieveAddressBook(2L);
+        addressBookService.addCustomerToAddressBook(1L, customer);
+        addressBookService.retrieveAddressBook(1L);
+        addressBookService.retrieveAddressBook(2L);
+
+        verify(addressBookRepository, times(2)).findNameById(1L);
+        verify(addressBookRepository, times(1)).findNameById(2L);
+    }
+
+    @Test
+    public void evictsCachedAddressBookWhenCustomerIsRemoved() {
+        when(addressBookRepository.findNameById(any(Long.class))).thenReturn(Optional.of("test"));
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.lockFromAddressBook(any(Long.class), anyCollection())).thenReturn(List.of(5L));
+        when(customerRepository.deleteFromAddressBook(any(Long.class), any(Long.class))).thenReturn(1);
+
+        addressBookService.retrieveAddressBook(1L);
+        addressBookService.removeCustomerFromAddressBook(1L, 5L);
+        addressBookService.retrieveAddressBook(1L);
+
+        verify(addressBookRepository, times(2)).findNameById(1L);
+    }
+
+    @Test
+    public void evictsCachedAddressBookBeforeBumpingItsVersion() {
+        when(addressBookRepository.findNameById(any(Long.class))).thenReturn(Optional.of("test"));
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.saveAndFlush(any(Customer.class))).thenAnswer(invocation -> {
+            Customer saved = invocation.getArgument(0);
+            saved.setId(3L);
+            return saved;
+        });
+        AtomicBoolean cachedWhenBumped = new AtomicBoolean();
+        doAnswer(invocation -> {
+            cachedWhenBumped.set(cacheManager.getCache(CacheConfig.ADDRESS_BOOKS).get(1L) != null);
+            return invocation.callRealMethod();
+        }).when(addressBookVersions).onCustomersAdded(any(CustomersAddedEvent.class));
+
+        addressBookService.retrieveAddressBook(1L);
+        addressBookService.addCustomerToAddressBook(1L, getTestCustomer());
+
+        verify(addressBookVersions, times(1)).onCustomersAdded(any(CustomersAddedEvent.class));
+        assertFalse(cachedWhenBumped.get());
+    }
+}
@@ -1,19 +1,52 @@
 package au.com.test.assignment.addressbook.service;
 
+import au.com.test.assignment.addressbook.config.CacheConfig;
+import au.com.test.assignment.addressbook.config.ShardingProperties;
+import au.com.test.assignment.addressbook.exception.AddressBookException;
+import au.com.test.assignment.addressbook.exception.AddressBookNotFoundException;
 import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.AddressBookPage;
+import au.com.test.assignment.addressbook.model.AddressBookSummary;
+import au.com.test.assignment.addressbook.model.AddressBookView;
 import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerPage;
+import au.com.test.assignment.addressbook.model.CustomerSort;
+import au.com.test.assignment.addressbook.model.CustomerView;
 import au.com.test.assignment.addressbook.repository.AddressBookRepository;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import au.com.test.assignment.addressbook.repository.DistinctCustomerRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static au.com.test.assignment.addressbook.utils.TestUtils.getTestAddressBook;
 import static au.com.test.assignment.addressbook.utils.TestUtils.getTestCustomer;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 
@@ -23,70 +56,437 @@ public class AddressBookServiceTest {
     @Mock
     private AddressBookRepository addressBookRepository;
 
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private DistinctCustomerRepository distinctCustomerRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private CustomerReadModel customerReadModel;
+
+    @Mock
+    private AddressBookVersions addressBookVersions;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(new ShardingProperties(), mock(PlatformTransactionManager.class));
+
+    @Spy
+    private DistinctCustomerCount distinctCustomerCount = new DistinctCustomerCount();
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.ADDRESS_BOOKS);
+
     @InjectMocks
     AddressBookService addressBookService;
 
     @Test
     public void createsAddressBook() {
         AddressBook addressBook = getTestAddressBook();
-        when(addressBookRepository.save(any(AddressBook.class))).thenReturn(getTestAddressBook());
+        AddressBook savedAddressBook = getTestAddressBook();
+        savedAddressBook.setId(1L);
+        savedAddressBook.getCustomers().iterator().next().setId(2L);
+        when(addressBookRepository.saveAndFlush(any(AddressBook.class))).thenReturn(savedAddressBook);
 
         addressBookService.createAddressBook(addressBook);
 
-        verify(addressBookRepository, times(1)).save(addressBook);
+        verify(addressBookRepository, times(1)).saveAndFlush(addressBook);
+        verify(distinctCustomerRepository, times(1)).registerCustomers(1L, List.of(2L));
     }
 
     @Test
     public void addCustomerToAddressBook() {
-        when(addressBookRepository.findById(any(Long.class))).thenReturn(Optional.of(getTestAddressBook()));
-        when(addressBookRepository.save(any(AddressBook.class))).thenReturn(getTestAddressBook());
+        Customer customer = getTestCustomer();
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(addressBookRepository.getReferenceById(any(Long.class))).thenReturn(getTestAddressBook());
+        when(customerRepository.saveAndFlush(any(Customer.class))).thenAnswer(invocation -> {
+            Customer saved = invocation.getArgument(0);
+            saved.setId(2L);
+            return saved;
+        });
+
+        Customer savedCustomer = addressBookService.addCustomerToAddressBook(1L, customer);
+
+        assertEquals(customer, savedCustomer);
+        verify(addressBookRepository, times(1)).existsById(1L);
+        verify(customerRepository, times(1)).saveAndFlush(customer);
+        verify(distinctCustomerRepository, times(1)).registerCustomers(1L, List.of(2L));
+        verify(eventPublisher, times(1)).publishEvent(any(CustomersAddedEvent.class));
+        verify(addressBookRepository, never()).findById(any(Long.class));
+        verify(addressBookRepository, never()).save(any(AddressBook.class));
+    }
+
+    @Test
+    public void addCustomerToAddressBookReturnsExistingCustomerWhenAlreadyPresent() {
+        Customer existingCustomer = getTestCustomer();
+        existingCustomer.setId(5L);
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.findByAddressBookIdAndFirstNameAndLastNameAndPhoneNumber(
+                1L, "test", "testing", "123")).thenReturn(Optional.of(existingCustomer));
+
+        Customer savedCustomer = addressBookService.addCustomerToAddressBook(1L, getTestCustomer());
+
+        assertEquals(5L, savedCustomer.getId());
+        verify(customerRepository, never()).saveAndFlush(any(Customer.class));
+        verify(distinctCustomerRepository, never()).registerCustomers(any(Long.class), anyCollection());
+    }
+
+    @Test
+    public void addCustomerToAddressBookThrowsWhenAddressBookDoesNotExist() {
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(false);
+
+        assertThrows(AddressBookNotFoundException.class,
+                () -> addressBookService.addCustomerToAddressBook(1L, getTestCustomer()));
+
+        verify(customerRepository, never()).saveAndFlush(any(Customer.class));
+    }
+
+    @Test
+    public void addCustomerToAddressBookRetriesWhenConcurrentAddOfSameContactWins() {
+        Customer concurrentlyAddedCustomer = getTestCustomer();
+        concurrentlyAddedCustomer.setId(5L);
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.findByAddressBookIdAndFirstNameAndLastNameAndPhoneNumber(
+                1L, "test", "testing", "123"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(concurrentlyAddedCustomer));
+        when(customerRepository.saveAndFlush(any(Customer.class)))
+                .thenThrow(new DuplicateKeyException("uk_customer_address_book_contact"));
+
+        Customer savedCustomer = addressBookService.addCustomerToAddressBook(1L, getTestCustomer());
+
+        assertEquals(5L, savedCustomer.getId());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(distinctCustomerRepository, never()).registerCustomers(any(Long.class), anyCollection());
+    }
 
-        addressBookService.addCustomerToAddressBook(1L, getTestCustomer());
+    @Test
+    public void addCustomerToAddressBookGivesUpAfterRepeatedConflicts() {
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.saveAndFlush(any(Customer.class)))
+                .thenThrow(new DuplicateKeyException("uk_customer_address_book_contact"));
+
+        assertThrows(AddressBookException.class,
+                () -> addressBookService.addCustomerToAddressBook(1L, getTestCustomer()));
+
+        verify(customerRepository, times(AddressBookService.MAX_WRITE_ATTEMPTS)).saveAndFlush(any(Customer.class));
+    }
+
+    @Test
+    public void addCustomerToAddressBookDoesNotRetryOtherIntegrityViolations() {
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.saveAndFlush(any(Customer.class)))
+                .thenThrow(new DataIntegrityViolationException("NULL not allowed for column FIRST_NAME"));
+
+        assertThrows(AddressBookException.class,
+                () -> addressBookService.addCustomerToAddressBook(1L, getTestCustomer()));
+
+        verify(customerRepository, times(1)).saveAndFlush(any(Customer.class));
+    }
+
+    @Test
+    public void recognisesUniqueKeyViolationReportedByDatabase() {
+        var duplicate = new DataIntegrityViolationException("could not execute statement",
+                new SQLException("Unique index or primary key violation", "23505"));
+        var nullColumn = new DataIntegrityViolationException("could not execute statement",
+                new SQLException("NULL not allowed for column", "23502"));
+
+        assertTrue(AddressBookService.isUniqueKeyViolation(duplicate));
+        assertFalse(AddressBookService.isUniqueKeyViolation(nullColumn));
+    }
+
+    @Test
+    public void addCustomersToAddressBookStoresEachNewContactOnce() {
+        Customer existingCustomer = getTestCustomer();
+        existingCustomer.setId(5L);
+        Customer newCustomer = Customer.builder().firstName("other").lastName("testing").phoneNumber("789").build();
+        Customer sameNewCustomer = Customer.builder().firstName("other").lastName("testing").phoneNumber("789").build();
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.findByAddressBookIdAndPhoneNumberIn(any(Long.class), anyCollection()))
+                .thenReturn(List.of(existingCustomer));
+        when(customerRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> {
+            List<Customer> saved = invocation.getArgument(0);
+            saved.forEach(customer -> customer.setId(6L));
+            return saved;
+        });
+
+        List<Customer> customers = addressBookService.addCustomersToAddressBook(1L,
+                List.of(getTestCustomer(), newCustomer, sameNewCustomer));
 
-        verify(addressBookRepository, times(1)).findById(1L);
-        verify(addressBookRepository, times(1)).save(any(AddressBook.class));
+        assertEquals(List.of(5L, 6L, 6L), customers.stream().map(Customer::getId).toList());
+        verify(customerRepository, times(1)).saveAllAndFlush(List.of(newCustomer));
+        verify(distinctCustomerRepository, times(1)).registerCustomers(1L, List.of(6L));
+        verify(eventPublisher, times(1)).publishEvent(any(CustomersAddedEvent.class));
     }
 
     @Test
     public void removeCustomerFromAddressBook() {
-        AddressBook addressBook = getTestAddressBook();
-        Customer customer = addressBook.getCustomers().stream().findFirst().get();
-        customer.setId(1L);
-        addressBook.setId(1L);
+        when(customerRepository.lockFromAddressBook(any(Long.class), anyCollection())).thenReturn(List.of(1L));
+        when(customerRepository.deleteFromAddressBook(any(Long.class), any(Long.class))).thenReturn(1);
+
+        boolean removed = addressBookService.removeCustomerFromAddressBook(1L, 1L);
+
+        assertTrue(removed);
+        verify(customerRepository, times(1)).deleteFromAddressBook(1L, 1L);
+        verify(distinctCustomerRepository, times(1)).releaseCustomers(1L, List.of(1L));
+        verify(distinctCustomerRepository, times(1)).deleteUnreferenced(1L, List.of(1L));
+        verify(eventPublisher, times(1)).publishEvent(new CustomersRemovedEvent(1L, List.of(1L)));
+        verify(addressBookRepository, never()).findById(any(Long.class));
+        verify(addressBookRepository, never()).save(any(AddressBook.class));
+    }
+
+    @Test
+    public void removeCustomerFromAddressBookReportsCustomerNotInAddressBook() {
+        when(customerRepository.lockFromAddressBook(any(Long.class), anyCollection())).thenReturn(List.of());
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+
+        boolean removed = addressBookService.removeCustomerFromAddressBook(1L, 2L);
+
+        assertFalse(removed);
+    }
+
+    @Test
+    public void removeCustomerFromAddressBookThrowsWhenAddressBookDoesNotExist() {
+        when(customerRepository.lockFromAddressBook(any(Long.class), anyCollection())).thenReturn(List.of());
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(false);
+
+        assertThrows(AddressBookNotFoundException.class,
+                () -> addressBookService.removeCustomerFromAddressBook(1L, 2L));
+    }
+
+    @Test
+    public void removeCustomersFromAddressBook() {
+        when(customerRepository.lockFromAddressBook(any(Long.class), anyCollection()))
+                .thenReturn(List.of(1L, 2L, 3L));
+        when(customerRepository.deleteAllFromAddressBook(any(Long.class), anyCollection())).thenReturn(3);
+
+        int removed = addressBookService.removeCustomersFromAddressBook(1L, List.of(1L, 2L, 3L, 4L));
 
-        when(addressBookRepository.findById(any(Long.class))).thenReturn(Optional.of(addressBook));
-        when(addressBookRepository.save(any(AddressBook.class))).thenReturn(addressBook);
+        assertEquals(3, removed);
+        verify(customerRepository, times(1)).deleteAllFromAddressBook(1L, List.of(1L, 2L, 3L));
+        verify(distinctCustomerRepository, times(1)).releaseCustomers(1L, List.of(1L, 2L, 3L));
+        verify(eventPublisher, times(1)).publishEvent(new CustomersRemovedEvent(1L, List.of(1L, 2L, 3L)));
+        verify(addressBookRepository, never()).existsById(any(Long.class));
+    }
+
+    @Test
+    public void retrievePageOfCustomersOfAddressBook() {
+        List<CustomerView> customers = List.of(
+                new CustomerView(1L, "a", "a", "1"),
+                new CustomerView(2L, "b", "b", "2"),
+                new CustomerView(3L, "c", "c", "3"));
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.findPageOrderedById(any(Long.class), any(Long.class), any(Pageable.class)))
+                .thenReturn(customers);
+
+        CustomerPage page = addressBookService.retrieveCustomersOfAddressBook(1L, "7", 2, CustomerSort.ID);
+
+        assertEquals(customers.subList(0, 2), page.customers());
+        assertEquals("2", page.nextCursor());
+        verify(customerRepository, times(1)).findPageOrderedById(1L, 7L, PageRequest.ofSize(3));
+        verify(addressBookRepository, never()).findById(any(Long.class));
+    }
+
+    @Test
+    public void retrieveLastPageOfCustomersOfAddressBookOrderedByName() {
+        List<CustomerView> customers = List.of(new CustomerView(9L, "first", "last", "1"));
+        String cursor = new CustomerCursor(4L, "smith", "john").encode(CustomerSort.NAME);
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.findPageOrderedByName(any(Long.class), any(), any(), any(Long.class), any(Pageable.class)))
+                .thenReturn(customers);
+
+        CustomerPage page = addressBookService.retrieveCustomersOfAddressBook(1L, cursor, 2, CustomerSort.NAME);
+
+        assertEquals(customers, page.customers());
+        assertNull(page.nextCursor());
+        verify(customerRepository, times(1))
+                .findPageOrderedByName(1L, "smith", "john", 4L, PageRequest.ofSize(3));
+    }
+
+    @Test
+    public void retrievePageOfCustomersOfAddressBookFromReadModel() {
+        List<CustomerView> customers = List.of(new CustomerView(9L, "first", "last", "1"));
+        when(customerReadModel.isEnabled()).thenReturn(true);
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerReadModel.pageOf(any(Long.class), any(), anyInt(), any())).thenReturn(customers);
+
+        CustomerPage page = addressBookService.retrieveCustomersOfAddressBook(1L, "7", 2, CustomerSort.ID);
+
+        assertEquals(customers, page.customers());
+        verify(customerReadModel, times(1)).pageOf(1L, new CustomerCursor(7L, null, null), 3, CustomerSort.ID);
+        verify(customerRepository, never()).findPageOrderedById(any(Long.class), any(Long.class), any(Pageable.class));
+    }
 
-        addressBookService.removeCustomerFromAddressBook(1L, 1L);
+    @Test
+    public void retrievePageOfCustomersOfAddressBookRejectsInvalidCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> addressBookService.retrieveCustomersOfAddressBook(1L, "not-a-cursor", 2, CustomerSort.NAME));
+    }
+
+    @Test
+    public void exportCustomersOfAddressBook() {
+        CustomerView customer = new CustomerView(1L, "test", "testing", "123");
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(true);
+        when(customerRepository.streamByAddressBookId(any(Long.class))).thenReturn(Stream.of(customer));
+        List<CustomerView> customers = new ArrayList<>();
 
-        verify(addressBookRepository, times(1)).findById(1L);
-        verify(addressBookRepository, times(1)).save(any(AddressBook.class));
+        addressBookService.exportCustomersOfAddressBook(1L, customers::add);
+
+        assertEquals(List.of(customer), customers);
+        verify(addressBookRepository, never()).findById(any(Long.class));
     }
 
     @Test
-    public void retrieveCustomersOfAddressBook() {
-        when(addressBookRepository.findById(any(Long.class))).thenReturn(Optional.of(getTestAddressBook()));
+    public void exportCustomersOfAddressBookThrowsWhenAddressBookDoesNotExist() {
+        when(addressBookRepository.existsById(any(Long.class))).thenReturn(false);
 
-        addressBookService.retrieveCustomersOfAddressBook(1L);
+        assertThrows(AddressBookNotFoundException.class,
+                () -> addressBookService.exportCustomersOfAddressBook(1L, customer -> {}));
 
-        verify(addressBookRepository, times(1)).findById(1L);
+        verify(customerRepository, never()).streamByAddressBookId(any(Long.class));
     }
 
     @Test
     public void retrieveAddressBook() {
-        when(addressBookRepository.findById(any(Long.class))).thenReturn(Optional.of(getTestAddressBook()));
+        List<CustomerView> customers = List.of(new CustomerView(1L, "test", "testing", "123"));
+        when(addressBookRepository.findNameById(any(Long.class))).thenReturn(Optional.of("test"));
+        when(customerRepository.findAllByAddressBookId(any(Long.class))).thenReturn(customers);
+        when(addressBookVersions.currentVersion(any(Long.class))).thenReturn(4L);
+
+        assertEquals(new AddressBookView(1L, "test", customers, 4L), addressBookService.retrieveAddressBook(1L));
+        verify(addressBookRepository, never()).findById(any(Long.class));
+    }
+
+    @Test
+    public void retrieveAddressBookThrowsWhenAddressBookDoesNotExist() {
+        when(addressBookRepository.findNameById(any(Long.class))).thenReturn(Optional.empty());
+
+        assertThrows(AddressBookNotFoundException.class, () -> addressBookService.retrieveAddressBook(1L));
+        verify(customerRepository, never()).findAllByAddressBookId(any(Long.class));
+    }
+
+    @Test
+    public void existsAddressBookReadsAddressBookUntilItIsKnown() {
+        when(addressBookRepository.existsById(1L)).thenReturn(true);
+
+        assertTrue(addressBookService.existsAddressBook(1L));
+        assertFalse(addressBookService.existsAddressBook(2L));
+        verify(addressBookVersions, times(1)).markKnown(1L);
+        verify(addressBookVersions, never()).markKnown(2L);
+
+        when(addressBookVersions.isKnown(1L)).thenReturn(true);
+
+        assertTrue(addressBookService.existsAddressBook(1L));
+        verify(addressBookRepository, times(1)).existsById(1L);
+    }
+
+    @Test
+    public void retrieveAddressBookSummary() {
+        var summary = new AddressBookSummary(1L, "test", 3L);
+        when(addressBookRepository.findSummaryById(any(Long.class))).thenReturn(Optional.of(summary));
+
+        assertEquals(summary, addressBookService.retrieveAddressBookSummary(1L));
+        verifyNoInteractions(customerRepository);
+    }
+
+    @Test
+    public void retrieveAddressBookSummaryThrowsWhenAddressBookDoesNotExist() {
+        when(addressBookRepository.findSummaryById(any(Long.class))).thenReturn(Optional.empty());
+
+        assertThrows(AddressBookNotFoundException.class, () -> addressBookService.retrieveAddressBookSummary(1L));
+    }
+
+    @Test
+    public void retrievePageOfAddressBooks() {
+        var first = new AddressBookSummary(1L, "first", 2L);
+        var second = new AddressBookSummary(2L, "second", 0L);
+        when(addressBookRepository.findSummaryPageOrderedById(any(Long.class), any(Pageable.class)))
+                .thenReturn(List.of(first, second));
+
+        assertEquals(new AddressBookPage<>(List.of(first), "1"), addressBookService.retrieveAddressBooks(null, 1));
+        verify(addressBookRepository).findSummaryPageOrderedById(0L, PageRequest.ofSize(2));
+        verifyNoInteractions(customerRepository);
+    }
+
+    @Test
+    public void retrievePageOfAddressBooksWithCustomers() {
+        when(addressBookRepository.findSummaryPageOrderedById(any(Long.class), any(Pageable.class)))
+                .thenReturn(List.of(new AddressBookSummary(3L, "first", 2L), new AddressBookSummary(4L, "second", 0L)));
+        when(customerRepository.findAllEntriesByAddressBookIdIn(anyCollection())).thenReturn(List.of(
+                new CustomerEntry(5L, 3L, 5L, "test", "testing", "123"),
+                new CustomerEntry(6L, 3L, 6L, "test2", "testing2", "456")));
+
+        var page = addressBookService.retrieveAddressBooksWithCustomers("2", 5);
 
-        addressBookService.retrieveAddressBook(1L);
+        assertEquals(new AddressBookPage<>(List.of(
+                new AddressBookView(3L, "first", List.of(new CustomerView(5L, "test", "testing", "123"),
+                        new CustomerView(6L, "test2", "testing2", "456")), 0L),
+                new AddressBookView(4L, "second", List.of(), 0L)), null), page);
+        verify(addressBookRepository).findSummaryPageOrderedById(2L, PageRequest.ofSize(6));
+        verify(customerRepository, times(1)).findAllEntriesByAddressBookIdIn(Set.of(3L, 4L));
+    }
+
+    @Test
+    public void retrievePageOfAddressBooksRejectsInvalidCursor() {
+        var exception = assertThrows(IllegalArgumentException.class,
+                () -> addressBookService.retrieveAddressBooks("not-a-cursor", 5));
+
+        assertEquals("Invalid cursor", exception.getMessage());
+        verifyNoInteractions(addressBookRepository);
+    }
+
+    @Test
+    public void capsSizeOfPageOfAddressBooksWithCustomers() {
+        when(addressBookRepository.findSummaryPageOrderedById(any(Long.class), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        addressBookService.retrieveAddressBooksWithCustomers(null, 1000);
 
-        verify(addressBookRepository, times(1)).findById(1L);
+        verify(addressBookRepository).findSummaryPageOrderedById(0L,
+                PageRequest.ofSize(AddressBookService.MAX_PAGE_SIZE_WITH_CUSTOMERS + 1));
     }
 
     @Test
     public void retrieveDistinctCustomersFromAllAddressBooks() {
+        CustomerView customer = new CustomerView("test", "testing", "123");
+        when(distinctCustomerRepository.streamAll()).thenReturn(Stream.of(customer));
+        List<CustomerView> customers = new ArrayList<>();
 
-        addressBookService.retrieveDistinctCustomersFromAllAddressBooks();
+        addressBookService.retrieveDistinctCustomersFromAllAddressBooks(customers::add);
 
-        verify(addressBookRepository, times(1)).findAll();
+        verify(distinctCustomerRepository, times(1)).streamAll();
+        verify(addressBookRepository, never()).findAll();
+        assertEquals(List.of(customer), customers);
+    }
+
+    @Test
+    public void retrieveDistinctCustomersFromReadModel() {
+        CustomerView customer = new CustomerView("test", "testing", "123");
+        when(customerReadModel.isEnabled()).thenReturn(true);
+        doAnswer(invocation -> {
+            Consumer<CustomerView> consumer = invocation.getArgument(0);
+            consumer.accept(customer);
+            return null;
+        }).when(customerReadModel).forEachDistinct(any());
+        List<CustomerView> customers = new ArrayList<>();
+
+        addressBookService.retrieveDistinctCustomersFromAllAddressBooks(customers::add);
+
+        assertEquals(List.of(customer), customers);
+        verify(distinctCustomerRepository, never()).streamAll();
+    }
+
+    @Test
+    public void countDistinctCustomersFromAllAddressBooks() {
+        when(distinctCustomerRepository.count()).thenReturn(3L);
 
+        assertEquals(3L, addressBookService.countDistinctCustomersFromAllAddressBooks());
+        verify(customerRepository, never()).count();
     }
 }
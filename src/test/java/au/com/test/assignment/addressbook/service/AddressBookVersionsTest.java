@@ -0,0 +1,50 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AddressBookVersionsTest {
+
+    private final AddressBookVersions addressBookVersions = new AddressBookVersions();
+
+    @Test
+    public void bumpsVersionOfEachChangedAddressBookOnce() {
+        addressBookVersions.onCustomersAdded(new CustomersAddedEvent(List.of(
+                new CustomerEntry(1L, 1L, 1L, "Mary", "Smith", "0400000001"),
+                new CustomerEntry(2L, 1L, 2L, "John", "Smith", "0400000002"),
+                new CustomerEntry(3L, 2L, 3L, "Anna", "Brown", "0400000003"))));
+        addressBookVersions.onCustomersRemoved(new CustomersRemovedEvent(2L, List.of(3L)));
+
+        assertEquals(1, addressBookVersions.currentVersion(1L));
+        assertEquals(2, addressBookVersions.currentVersion(2L));
+        assertEquals(0, addressBookVersions.currentVersion(3L));
+    }
+
+    @Test
+    public void tagsVersionsWithStartOfApplication() {
+        String eTag = addressBookVersions.currentETag(1L, MediaType.APPLICATION_JSON);
+
+        assertTrue(eTag.matches("W/\"[0-9a-z]+-0-json\""));
+        assertEquals(eTag, addressBookVersions.eTag(0L, MediaType.APPLICATION_JSON));
+        assertNotEquals(eTag, addressBookVersions.eTag(0L, MediaType.APPLICATION_CBOR));
+        assertNotEquals(eTag, new AddressBookVersions().eTag(1L, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void remembersAddressBooksKnownToExist() {
+        assertFalse(addressBookVersions.isKnown(1L));
+
+        addressBookVersions.markKnown(1L);
+        addressBookVersions.onCustomersRemoved(new CustomersRemovedEvent(2L, List.of(3L)));
+        addressBookVersions.markKnown(2L);
+
+        assertTrue(addressBookVersions.isKnown(1L));
+        assertEquals(0, addressBookVersions.currentVersion(1L));
+        assertEquals(1, addressBookVersions.currentVersion(2L));
+    }
+}
@@ -0,0 +1,198 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.WriteCoalescingProperties;
+import au.com.test.assignment.addressbook.exception.AddressBookException;
+import au.com.test.assignment.addressbook.exception.AddressBookNotFoundException;
+import au.com.test.assignment.addressbook.model.Customer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static au.com.test.assignment.addressbook.utils.TestUtils.getTestCustomer;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomerAddCoalescerTest {
+
+    private static final int CALLERS = 4;
+
+    private static final String PENDING_PHONE_NUMBER = "pending";
+
+    @Mock
+    private AddressBookService addressBookService;
+
+    private WriteCoalescingProperties writeCoalescingProperties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CustomerAddCoalescer customerAddCoalescer;
+
+    private final Map<String, Thread> callerThreads = new ConcurrentHashMap<>();
+
+    private final Map<String, Thread> addingThreads = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        writeCoalescingProperties = new WriteCoalescingProperties();
+        //a full batch is committed at once, so the long delay is never waited for
+        writeCoalescingProperties.setMaxDelay(Duration.ofSeconds(30));
+        writeCoalescingProperties.setMaxBatchSize(CALLERS);
+        meterRegistry = new SimpleMeterRegistry();
+        customerAddCoalescer = new CustomerAddCoalescer(addressBookService, writeCoalescingProperties, meterRegistry);
+    }
+
+    @Test
+    public void commitsConcurrentAddsToAnAddressBookTogether() throws Exception {
+        when(addressBookService.addCustomersToAddressBook(any(Long.class), anyList())).thenAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(1);
+            customers.forEach(customer -> customer.setId(Long.valueOf(customer.getPhoneNumber())));
+            return customers;
+        });
+
+        var release = new CountDownLatch(1);
+        Future<Customer> pendingAdd = addPendingUntil(1L, release);
+
+        List<Future<Customer>> results = addConcurrently(1L, CALLERS);
+
+        for (int caller = 0; caller < CALLERS; caller++) {
+            assertEquals(results.get(caller).get().getId(), caller);
+        }
+        verify(addressBookService, times(1)).addCustomersToAddressBook(eq(1L),
+                argThat(customers -> customers.size() == CALLERS));
+        release.countDown();
+        assertEquals(PENDING_PHONE_NUMBER, pendingAdd.get().getPhoneNumber());
+        assertEquals(meterRegistry.summary(CustomerAddCoalescer.BATCH_SIZE_SUMMARY).totalAmount(), CALLERS + 1);
+    }
+
+    @Test
+    public void commitsLoneAddRightAway() {
+        Customer customer = getTestCustomer();
+        when(addressBookService.addCustomerToAddressBook(1L, customer)).thenReturn(customer);
+
+        assertSame(customer, assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> customerAddCoalescer.addCustomerToAddressBook(1L, customer)));
+        verify(addressBookService, never()).addCustomersToAddressBook(any(Long.class), anyList());
+    }
+
+    @Test
+    public void addsCustomersOfAFailedBatchOneAtATime() throws Exception {
+        when(addressBookService.addCustomersToAddressBook(any(Long.class), anyList()))
+                .thenThrow(new AddressBookException("value too long for column"));
+        when(addressBookService.addCustomerToAddressBook(any(Long.class), any(Customer.class))).thenAnswer(invocation -> {
+            Customer customer = invocation.getArgument(1);
+            if (customer.getPhoneNumber().equals("0")) {
+                throw new AddressBookException("value too long for column");
+            }
+            addingThreads.put(customer.getPhoneNumber(), Thread.currentThread());
+            return customer;
+        });
+        var release = new CountDownLatch(1);
+        Future<Customer> pendingAdd = addPendingUntil(1L, release);
+
+        List<Future<Customer>> results = addConcurrently(1L, CALLERS);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> results.get(0).get());
+        assertInstanceOf(AddressBookException.class, failure.getCause());
+        for (int caller = 1; caller < CALLERS; caller++) {
+            assertEquals(results.get(caller).get().getPhoneNumber(), String.valueOf(caller));
+            //each caller adds its own customer, not the caller that committed the batch
+            assertSame(callerThreads.get(String.valueOf(caller)), addingThreads.get(String.valueOf(caller)));
+        }
+        verify(addressBookService, times(1)).addCustomersToAddressBook(eq(1L), anyList());
+        release.countDown();
+        pendingAdd.get();
+        verify(addressBookService, times(CALLERS + 1)).addCustomerToAddressBook(eq(1L), any(Customer.class));
+    }
+
+    @Test
+    public void failsEveryAddOfABatchWhenAddressBookDoesNotExist() throws Exception {
+        when(addressBookService.addCustomersToAddressBook(any(Long.class), anyList()))
+                .thenThrow(new AddressBookNotFoundException("Address Book Not Found"));
+        var release = new CountDownLatch(1);
+        Future<Customer> pendingAdd = addPendingUntil(1L, release);
+
+        for (Future<Customer> result : addConcurrently(1L, CALLERS)) {
+            ExecutionException failure = assertThrows(ExecutionException.class, result::get);
+            assertInstanceOf(AddressBookNotFoundException.class, failure.getCause());
+        }
+        release.countDown();
+        pendingAdd.get();
+        verify(addressBookService, times(1)).addCustomerToAddressBook(any(Long.class), any(Customer.class));
+    }
+
+    @Test
+    public void addsCustomerOnItsOwnWhenCoalescingIsDisabled() {
+        writeCoalescingProperties.setMaxDelay(Duration.ZERO);
+        Customer customer = getTestCustomer();
+        when(addressBookService.addCustomerToAddressBook(1L, customer)).thenReturn(customer);
+
+        assertSame(customerAddCoalescer.addCustomerToAddressBook(1L, customer), customer);
+        verify(addressBookService, never()).addCustomersToAddressBook(any(Long.class), anyList());
+    }
+
+    private List<Future<Customer>> addConcurrently(Long addressBookId, int callers) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Callable<Customer>> adds = new ArrayList<>();
+            for (int caller = 0; caller < callers; caller++) {
+                Customer customer = customer(caller);
+                adds.add(() -> {
+                    callerThreads.put(customer.getPhoneNumber(), Thread.currentThread());
+                    return customerAddCoalescer.addCustomerToAddressBook(addressBookId, customer);
+                });
+            }
+            return executor.invokeAll(adds);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Starts an add that is committed on its own and stays pending until released, so adds made to the address
+     * book meanwhile wait for each other and are committed together
+     */
+    private Future<Customer> addPendingUntil(Long addressBookId, CountDownLatch release) throws InterruptedException {
+        var committing = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            committing.countDown();
+            release.await();
+            return invocation.getArgument(1);
+        }).when(addressBookService).addCustomerToAddressBook(eq(addressBookId),
+                argThat(customer -> PENDING_PHONE_NUMBER.equals(customer.getPhoneNumber())));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Customer customer = Customer.builder().firstName("pending").lastName("last")
+                    .phoneNumber(PENDING_PHONE_NUMBER).build();
+            var pendingAdd = executor.submit(() -> customerAddCoalescer.addCustomerToAddressBook(addressBookId, customer));
+            committing.await();
+            return pendingAdd;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Customer customer(int caller) {
+        return Customer.builder().firstName("first" + caller).lastName("last")
+                .phoneNumber(String.valueOf(caller)).build();
+    }
+}
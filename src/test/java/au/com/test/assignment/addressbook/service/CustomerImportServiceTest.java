@@ -0,0 +1,106 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.ImportProperties;
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerRow;
+import au.com.test.assignment.addressbook.model.ImportReport;
+import au.com.test.assignment.addressbook.repository.AddressBookRepository;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import au.com.test.assignment.addressbook.repository.DistinctCustomerRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.Validator;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static au.com.test.assignment.addressbook.utils.TestUtils.getTestCustomer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomerImportServiceTest {
+
+    @Mock
+    private AddressBookRepository addressBookRepository;
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private DistinctCustomerRepository distinctCustomerRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Mock
+    private Validator validator;
+
+    @Spy
+    private ImportProperties importProperties = new ImportProperties();
+
+    @InjectMocks
+    private CustomerImportService customerImportService;
+
+    @BeforeEach
+    public void setUp() {
+        when(addressBookRepository.existsById(1L)).thenReturn(true);
+        when(entityManager.unwrap(Session.class)).thenReturn(mock(Session.class));
+    }
+
+    @Test
+    public void retriesChunkThatLostUniqueKeyRaceAndCountsRacedContactAsDuplicate() {
+        Customer raced = getTestCustomer();
+        Customer added = Customer.builder().firstName("other").lastName("testing").phoneNumber("456").build();
+        when(customerRepository.findByAddressBookIdAndPhoneNumberIn(any(Long.class), anyCollection()))
+                .thenReturn(List.of())
+                .thenReturn(List.of(getTestCustomer()));
+        doThrow(new ConstraintViolationException("could not execute statement",
+                new SQLException("Unique index or primary key violation", "23505"), "customer_contact"))
+                .doNothing()
+                .when(entityManager).flush();
+
+        ImportReport report = customerImportService.importCustomers(1L,
+                List.of(CustomerRow.of(1, raced), CustomerRow.of(2, added)).iterator());
+
+        assertEquals(1, report.getImported());
+        assertEquals(1, report.getDuplicates());
+        assertEquals(0, report.getFailed());
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    public void reportsFixedMessageForRowsOfChunkThatCannotBeCommitted() {
+        doThrow(new PersistenceException("could not execute statement",
+                new SQLException("NULL not allowed for column \"PHONE_NUMBER\"", "23502")))
+                .when(entityManager).flush();
+
+        ImportReport report = customerImportService.importCustomers(1L,
+                List.of(CustomerRow.of(1, getTestCustomer())).iterator());
+
+        assertEquals(0, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(List.of(new ImportReport.RowError(1, CustomerImportService.NOT_IMPORTED)), report.getErrors());
+        verify(transactionTemplate, times(1)).execute(any());
+    }
+}
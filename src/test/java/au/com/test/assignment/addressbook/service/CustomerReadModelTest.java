@@ -0,0 +1,185 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.ReadModelProperties;
+import au.com.test.assignment.addressbook.config.ShardingProperties;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerSort;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomerReadModelTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ReadModelProperties readModelProperties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CustomerReadModel customerReadModel;
+
+    @BeforeEach
+    public void setUp() {
+        readModelProperties = new ReadModelProperties();
+        readModelProperties.setEnabled(true);
+        meterRegistry = new SimpleMeterRegistry();
+        customerReadModel = new CustomerReadModel(customerRepository,
+                new ShardRouter(new ShardingProperties(), transactionManager),
+                readModelProperties, meterRegistry);
+    }
+
+    @Test
+    public void pagesCustomersOfAddressBookInIdAndNameOrder() {
+        customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(5L, 1L, "Mary", "Smith", "0400 000 005"),
+                entry(2L, 1L, "John", "Smith", "0400 000 002"),
+                entry(9L, 1L, "Anna", "Brown", "0400 000 009"),
+                entry(3L, 2L, "Other", "Book", "0400 000 003"))));
+
+        assertEquals(List.of(view(2L, "John", "Smith"), view(5L, "Mary", "Smith")),
+                customerReadModel.pageOf(1L, null, 2, CustomerSort.ID));
+        assertEquals(List.of(view(9L, "Anna", "Brown")),
+                customerReadModel.pageOf(1L, new CustomerCursor(5L, null, null), 2, CustomerSort.ID));
+        assertEquals(List.of(view(9L, "Anna", "Brown"), view(2L, "John", "Smith")),
+                customerReadModel.pageOf(1L, null, 2, CustomerSort.NAME));
+        assertEquals(List.of(view(5L, "Mary", "Smith")),
+                customerReadModel.pageOf(1L, new CustomerCursor(2L, "Smith", "John"), 2, CustomerSort.NAME));
+        assertEquals(List.of(), customerReadModel.pageOf(4L, null, 2, CustomerSort.ID));
+        assertEquals(4, meterRegistry.get(CustomerReadModel.CUSTOMERS_GAUGE).gauge().value());
+    }
+
+    @Test
+    public void keepsNameOrderOfAddressBookThroughAddsAndRemovals() {
+        customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(2L, 1L, "Mary", "Smith", "0400 000 002"),
+                entry(4L, 1L, "Anna", "Brown", "0400 000 004"),
+                entry(6L, 1L, "John", "Smith", "0400 000 006"))));
+        assertEquals(List.of(view(4L, "Anna", "Brown"), view(6L, "John", "Smith"), view(2L, "Mary", "Smith")),
+                customerReadModel.pageOf(1L, null, 10, CustomerSort.NAME));
+
+        //appended, inserted between existing rows and before every row
+        customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(9L, 1L, "Zoe", "Adams", "0400 000 009"),
+                entry(5L, 1L, "Kate", "Smith", "0400 000 005"),
+                entry(1L, 1L, "Bill", "Young", "0400 000 001"))));
+        customerReadModel.onCustomersRemoved(new CustomersRemovedEvent(1L, List.of(4L, 6L)));
+        customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(3L, 1L, "Anna", "Brown", "0400 000 003"))));
+
+        assertEquals(List.of(view(9L, "Zoe", "Adams"), view(3L, "Anna", "Brown"), view(5L, "Kate", "Smith"),
+                        view(2L, "Mary", "Smith"), view(1L, "Bill", "Young")),
+                customerReadModel.pageOf(1L, null, 10, CustomerSort.NAME));
+        assertEquals(List.of(view(2L, "Mary", "Smith"), view(1L, "Bill", "Young")),
+                customerReadModel.pageOf(1L, new CustomerCursor(5L, "Smith", "Kate"), 10, CustomerSort.NAME));
+    }
+
+    @Test
+    public void removesCustomersWithoutChangingPagesAlreadyRead() {
+        customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(1L, 1L, "Mary", "Smith", "0400 000 001"),
+                entry(2L, 1L, "John", "Smith", "0400 000 002"),
+                entry(3L, 1L, "Anna", "Brown", "0400 000 003"))));
+        var page = customerReadModel.pageOf(1L, null, 3, CustomerSort.NAME);
+
+        customerReadModel.onCustomersRemoved(new CustomersRemovedEvent(1L, List.of(3L, 1L, 8L)));
+        customerReadModel.onCustomersRemoved(new CustomersRemovedEvent(2L, List.of(2L)));
+
+        assertEquals(List.of(view(3L, "Anna", "Brown"), view(2L, "John", "Smith"), view(1L, "Mary", "Smith")), page);
+        assertEquals(List.of(view(2L, "John", "Smith")), customerReadModel.pageOf(1L, null, 3, CustomerSort.NAME));
+        assertEquals(1, customerReadModel.size());
+    }
+
+    @Test
+    public void keepsPhoneNumbersThatCannotBePacked() {
+        var phoneNumbers = List.of("+61 (0)400-123-456", "0400 123 456 ext. 7", "0400123456", "");
+        for (int i = 0; i < phoneNumbers.size(); i++) {
+            customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                    entry(i + 1L, 1L, "Mary", "Smith", phoneNumbers.get(i)))));
+        }
+
+        assertEquals(phoneNumbers, customerReadModel.customersOf(1L).stream().map(CustomerView::phoneNumber).toList());
+    }
+
+    @Test
+    public void streamsEachDistinctContactOnce() {
+        customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                new CustomerEntry(1L, 1L, 11L, "Mary", "Smith", "0400000001"),
+                new CustomerEntry(2L, 1L, 12L, "John", "Smith", "0400000002"))));
+        customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                new CustomerEntry(3L, 2L, 11L, "mary", "SMITH", "+61400000001"))));
+        List<CustomerView> customers = new ArrayList<>();
+
+        customerReadModel.forEachDistinct(customers::add);
+
+        assertEquals(2, customers.size());
+        assertTrue(customers.contains(new CustomerView("John", "Smith", "0400000002")));
+    }
+
+    @Test
+    public void keepsDistinctContactsSharingHashApart() {
+        customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                new CustomerEntry(1L, 1L, 11L, "Mary", "Smith", "0400000001"),
+                new CustomerEntry(2L, 1L, 11L, "Ann", "Lee", "0400000003"))));
+        customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                new CustomerEntry(3L, 2L, 11L, "ANN", "lee", "+61400000003"),
+                new CustomerEntry(4L, 2L, 11L, "mary", "smith", "0400000001"))));
+        List<CustomerView> customers = new ArrayList<>();
+
+        customerReadModel.forEachDistinct(customers::add);
+
+        assertEquals(2, customers.size());
+        assertEquals(Set.of("mary smith", "ann lee"), customers.stream()
+                .map(customer -> (customer.firstName() + " " + customer.lastName()).toLowerCase())
+                .collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void recoversFromReplay() {
+        assertTrue(customerReadModel.recover((added, removed) -> {
+            added.accept(entry(1L, 1L, "Mary", "Smith", "0400 000 001"));
+            return true;
+        }));
+
+        assertEquals(List.of(view(1L, "Mary", "Smith")), customerReadModel.pageOf(1L, null, 2, CustomerSort.ID));
+        verify(customerRepository, never()).streamAllEntries();
+    }
+
+    @Test
+    public void keepsNothingWhenDisabled() {
+        readModelProperties.setEnabled(false);
+
+        customerReadModel.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(1L, 1L, "Mary", "Smith", "0400000001"))));
+
+        assertEquals(0, customerReadModel.size());
+        verifyNoInteractions(customerRepository);
+    }
+
+    private static CustomerEntry entry(Long id, Long addressBookId, String firstName, String lastName,
+                                       String phoneNumber) {
+        return new CustomerEntry(id, addressBookId, id, firstName, lastName, phoneNumber);
+    }
+
+    private static CustomerView view(Long id, String firstName, String lastName) {
+        return new CustomerView(id, firstName, lastName, "0400 000 00" + id);
+    }
+}
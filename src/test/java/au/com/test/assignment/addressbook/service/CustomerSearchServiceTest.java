@@ -0,0 +1,140 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.ShardingProperties;
+import au.com.test.assignment.addressbook.model.ContactKey;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerSearchHit;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomerSearchServiceTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CustomerSearchService customerSearchService;
+
+    @BeforeEach
+    public void setUp() {
+        customerSearchService = new CustomerSearchService(customerRepository,
+                new ShardRouter(new ShardingProperties(), transactionManager));
+    }
+
+    @Test
+    public void ranksExactMatchesBeforePrefixAndSubstringMatches() {
+        customerSearchService.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(1L, 1L, "Anna", "Blacksmith", "1"),
+                entry(2L, 1L, "John", "Smithers", "2"),
+                entry(3L, 1L, "Mary", "Smith", "3"),
+                entry(4L, 1L, "Smith", "Jones", "4"))));
+
+        List<CustomerSearchHit> hits = customerSearchService.searchCustomers(" SMITH ", 10);
+
+        assertEquals(List.of("Jones", "Smith", "Smithers", "Blacksmith"),
+                hits.stream().map(CustomerSearchHit::lastName).toList());
+        assertEquals(List.of("Jones"), customerSearchService.searchCustomers("smith", 1).stream()
+                .map(CustomerSearchHit::lastName).toList());
+    }
+
+    @Test
+    public void matchesStartOfNamesForTwoLetterQueries() {
+        customerSearchService.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(1L, 1L, "Anna", "Blacksmith", "1"),
+                entry(2L, 1L, "Mary", "Smith", "2"))));
+
+        List<CustomerSearchHit> hits = customerSearchService.searchCustomers("sm", 10);
+
+        assertEquals(1, hits.size());
+        assertEquals("Mary", hits.get(0).firstName());
+    }
+
+    @Test
+    public void reportsAllAddressBooksOfContact() {
+        customerSearchService.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(1L, 7L, "Mary", "Smith", "0400 000 000"),
+                entry(2L, 3L, "mary", "SMITH", "+61400000000"))));
+
+        List<CustomerSearchHit> hits = customerSearchService.searchCustomers("mary smith", 10);
+
+        assertEquals(1, hits.size());
+        assertEquals(List.of(3L, 7L), hits.get(0).addressBookIds());
+        assertEquals(1, customerSearchService.size());
+    }
+
+    @Test
+    public void keepsContactsSharingHashApart() {
+        customerSearchService.onCustomersAdded(new CustomersAddedEvent(List.of(
+                new CustomerEntry(1L, 7L, 42L, "Mary", "Smith", "1"),
+                new CustomerEntry(2L, 3L, 42L, "Maryanne", "Smith", "2"))));
+
+        List<CustomerSearchHit> hits = customerSearchService.searchCustomers("mary", 10);
+
+        assertEquals(List.of("Mary", "Maryanne"), hits.stream().map(CustomerSearchHit::firstName).toList());
+        assertEquals(2, customerSearchService.size());
+    }
+
+    @Test
+    public void removesContactOnceRemovedFromAllAddressBooks() {
+        customerSearchService.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(1L, 7L, "Mary", "Smith", "1"),
+                entry(2L, 3L, "Mary", "Smith", "1"))));
+
+        customerSearchService.onCustomersRemoved(new CustomersRemovedEvent(3L, List.of(1L, 2L)));
+        assertEquals(List.of(7L), customerSearchService.searchCustomers("smith", 10).get(0).addressBookIds());
+
+        customerSearchService.onCustomersRemoved(new CustomersRemovedEvent(7L, List.of(1L)));
+        assertTrue(customerSearchService.searchCustomers("smith", 10).isEmpty());
+        assertEquals(0, customerSearchService.size());
+    }
+
+    @Test
+    public void rebuildsIndexFromRepository() {
+        customerSearchService.onCustomersAdded(new CustomersAddedEvent(List.of(entry(1L, 1L, "Old", "Contact", "1"))));
+        when(customerRepository.streamAllEntries()).thenReturn(Stream.of(entry(2L, 1L, "Mary", "Smith", "2")));
+
+        customerSearchService.rebuild();
+
+        assertTrue(customerSearchService.searchCustomers("contact", 10).isEmpty());
+        assertEquals(1, customerSearchService.searchCustomers("smith", 10).size());
+    }
+
+    @Test
+    public void recoversIndexFromReplay() {
+        assertTrue(customerSearchService.recover((added, removed) -> {
+            added.accept(entry(1L, 1L, "Mary", "Smith", "1"));
+            added.accept(entry(2L, 1L, "John", "Smith", "2"));
+            removed.accept(1L, 2L);
+            return true;
+        }));
+
+        assertEquals(List.of("Mary"), customerSearchService.searchCustomers("smith", 10).stream()
+                .map(CustomerSearchHit::firstName).toList());
+        verify(customerRepository, never()).streamAllEntries();
+    }
+
+    @Test
+    public void rejectsTooShortQuery() {
+        assertThrows(IllegalArgumentException.class, () -> customerSearchService.searchCustomers(" s ", 10));
+    }
+
+    private static CustomerEntry entry(Long id, Long addressBookId, String firstName, String lastName, String phoneNumber) {
+        return new CustomerEntry(id, addressBookId,
+                ContactKey.hash(ContactKey.canonicalize(firstName, lastName, phoneNumber)),
+                firstName, lastName, phoneNumber);
+    }
+}
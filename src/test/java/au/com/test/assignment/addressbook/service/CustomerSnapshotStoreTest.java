@@ -0,0 +1,210 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.DurableStorageProperties;
+import au.com.test.assignment.addressbook.config.ShardingProperties;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerIdSummary;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomerSnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ObjectProvider<CustomerIndex> customerIndexes;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private DurableStorageProperties durableStorageProperties;
+
+    private CustomerSnapshotStore customerSnapshotStore;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        durableStorageProperties = new DurableStorageProperties();
+        durableStorageProperties.setEnabled(true);
+        durableStorageProperties.setDirectory(directory);
+        durableStorageProperties.setSnapshotInterval(Duration.ofHours(1));
+        meterRegistry = new SimpleMeterRegistry();
+        customerSnapshotStore = openStore();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        customerSnapshotStore.destroy();
+    }
+
+    @Test
+    public void recoversSnapshotAndChangesSinceAfterRestart() throws IOException {
+        when(customerRepository.streamAllEntries()).thenReturn(Stream.of(entry(1L, 7L, "Mary"), entry(2L, 7L, "John")));
+        customerSnapshotStore.writeSnapshot();
+        customerSnapshotStore.onCustomersAdded(new CustomersAddedEvent(List.of(entry(3L, 8L, "Anna"))));
+        customerSnapshotStore.onCustomersRemoved(new CustomersRemovedEvent(7L, List.of(1L)));
+        customerSnapshotStore.destroy();
+
+        customerSnapshotStore = openStore();
+        when(customerRepository.summarizeIds()).thenReturn(new CustomerIdSummary(2, 3, 5));
+        List<CustomerEntry> added = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+
+        assertTrue(customerSnapshotStore.replay(added::add, (addressBookId, customerId) -> removed.add(customerId)));
+        assertEquals(List.of(entry(1L, 7L, "Mary"), entry(2L, 7L, "John"), entry(3L, 8L, "Anna")), added);
+        assertEquals(List.of(1L), removed);
+    }
+
+    @Test
+    public void recoversSnapshotWrittenBeforeRecovery() throws IOException {
+        when(customerRepository.streamAllEntries()).thenReturn(Stream.of(entry(1L, 7L, "Mary")));
+        when(customerRepository.summarizeIds()).thenReturn(new CustomerIdSummary(1, 1, 1));
+        customerSnapshotStore.writeSnapshot();
+        List<CustomerEntry> added = new ArrayList<>();
+
+        assertTrue(customerSnapshotStore.replay(added::add, (addressBookId, customerId) -> {}));
+        assertEquals(List.of(entry(1L, 7L, "Mary")), added);
+    }
+
+    @Test
+    public void deletesFilesBeforeLatestSnapshot() throws IOException {
+        when(customerRepository.streamAllEntries())
+                .thenReturn(Stream.of(entry(1L, 7L, "Mary")))
+                .thenReturn(Stream.of());
+
+        customerSnapshotStore.writeSnapshot();
+        customerSnapshotStore.writeSnapshot();
+
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of("customers-3.log", "customers-3.snapshot"),
+                    files.map(file -> file.getFileName().toString()).sorted().toList());
+        }
+    }
+
+    @Test
+    public void rejectsSnapshotThatDisagreesWithDatabase() throws IOException {
+        when(customerRepository.streamAllEntries()).thenReturn(Stream.of(entry(1L, 7L, "Mary")));
+        customerSnapshotStore.writeSnapshot();
+        customerSnapshotStore.destroy();
+
+        customerSnapshotStore = openStore();
+        when(customerRepository.summarizeIds()).thenReturn(new CustomerIdSummary(2, 2, 3));
+
+        assertFalse(customerSnapshotStore.replay(customer -> {}, (addressBookId, customerId) -> {}));
+        assertFalse(customerSnapshotStore.replay(customer -> {}, (addressBookId, customerId) -> {}));
+    }
+
+    @Test
+    public void rejectsSnapshotHoldingAsManyButOtherCustomersThanDatabase() throws IOException {
+        when(customerRepository.streamAllEntries()).thenReturn(Stream.of(entry(1L, 7L, "Mary")));
+        customerSnapshotStore.writeSnapshot();
+        customerSnapshotStore.destroy();
+
+        //customer 1 was removed and customer 2 added without either change being logged
+        customerSnapshotStore = openStore();
+        when(customerRepository.summarizeIds()).thenReturn(new CustomerIdSummary(1, 2, 2));
+
+        assertFalse(customerSnapshotStore.replay(customer -> {}, (addressBookId, customerId) -> {}));
+    }
+
+    @Test
+    public void recoversEveryIndexFromOneReplay() throws IOException {
+        when(customerRepository.streamAllEntries()).thenReturn(Stream.of(entry(1L, 7L, "Mary"), entry(2L, 7L, "John")));
+        customerSnapshotStore.writeSnapshot();
+        customerSnapshotStore.destroy();
+
+        customerSnapshotStore = openStore();
+        when(customerRepository.summarizeIds()).thenReturn(new CustomerIdSummary(2, 2, 3));
+        var shardRouter = new ShardRouter(new ShardingProperties(), transactionManager);
+        var customerSearchService = new CustomerSearchService(customerRepository, shardRouter);
+        var phoneLookupService = new PhoneLookupService(customerRepository, shardRouter, meterRegistry);
+        when(customerIndexes.orderedStream()).thenReturn(Stream.of(customerSearchService, phoneLookupService));
+
+        customerSnapshotStore.afterSingletonsInstantiated();
+
+        assertEquals(2, customerSearchService.size());
+        assertEquals(2, phoneLookupService.size());
+        assertEquals(1, meterRegistry.timer(CustomerSnapshotStore.RECOVERY_TIMER).count());
+        verify(customerRepository, times(1)).streamAllEntries();
+    }
+
+    @Test
+    public void buildsIndexesFromDatabaseWhenSnapshotCannotBeRecovered() {
+        CustomerIndex customerIndex = mock(CustomerIndex.class);
+        when(customerIndex.isEnabled()).thenReturn(true);
+        when(customerIndex.recover(any())).thenAnswer(invocation -> {
+            BiPredicate<Consumer<CustomerEntry>, BiConsumer<Long, Long>> replay = invocation.getArgument(0);
+            return replay.test(customer -> {}, (addressBookId, customerId) -> {});
+        });
+        when(customerIndexes.orderedStream()).thenReturn(Stream.of(customerIndex));
+
+        //no snapshot has been written yet
+        customerSnapshotStore.afterSingletonsInstantiated();
+
+        verify(customerIndex, times(1)).rebuild();
+    }
+
+    @Test
+    public void recoversNamesLongerThan64Kilobytes() throws IOException {
+        var longName = "M".repeat(70_000);
+        var customer = new CustomerEntry(1L, 7L, 31L, longName, "Smith", "0400000001");
+        when(customerRepository.streamAllEntries()).thenReturn(Stream.of(customer));
+        when(customerRepository.summarizeIds()).thenReturn(new CustomerIdSummary(1, 1, 1));
+        customerSnapshotStore.writeSnapshot();
+        List<CustomerEntry> added = new ArrayList<>();
+
+        assertTrue(customerSnapshotStore.replay(added::add, (addressBookId, customerId) -> {}));
+        assertEquals(List.of(customer), added);
+    }
+
+    @Test
+    public void doesNotRecoverWhenDisabled() throws IOException {
+        customerSnapshotStore.destroy();
+        durableStorageProperties.setEnabled(false);
+        customerSnapshotStore = openStore();
+
+        assertFalse(customerSnapshotStore.replay(customer -> {}, (addressBookId, customerId) -> {}));
+    }
+
+    private CustomerSnapshotStore openStore() throws IOException {
+        var store = new CustomerSnapshotStore(customerRepository,
+                new ShardRouter(new ShardingProperties(), transactionManager), durableStorageProperties,
+                meterRegistry, customerIndexes);
+        store.open();
+        return store;
+    }
+
+    private static CustomerEntry entry(Long id, Long addressBookId, String firstName) {
+        return new CustomerEntry(id, addressBookId, id * 31, firstName, "Smith", "0400000" + id);
+    }
+}
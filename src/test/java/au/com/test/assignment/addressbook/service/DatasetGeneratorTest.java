@@ -0,0 +1,92 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.DatasetProperties;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatasetGeneratorTest {
+
+    @Test
+    public void generatesSameDatasetFromSameSeed() {
+        var properties = properties(10, 1000, 0.2);
+
+        assertEquals(generate(new DatasetGenerator(properties)), generate(new DatasetGenerator(properties)));
+        assertEquals(new DatasetGenerator(properties).contact(7), new DatasetGenerator(properties).contact(7));
+
+        properties.setSeed(7);
+        assertNotEquals(new DatasetGenerator(properties(10, 1000, 0.2)).contact(7),
+                new DatasetGenerator(properties).contact(7));
+    }
+
+    @Test
+    public void skewsCustomersTowardsFirstAddressBooks() {
+        var properties = properties(100, 100_000, 0.1);
+        var counts = new DatasetGenerator(properties).customersPerAddressBook();
+
+        assertEquals(100_000, Arrays.stream(counts).sum());
+        assertTrue(counts[0] > 10 * counts[99]);
+        for (int i = 1; i < counts.length; i++) {
+            assertTrue(counts[i] <= counts[i - 1]);
+        }
+
+        properties.setSkew(0);
+        assertTrue(Arrays.stream(new DatasetGenerator(properties).customersPerAddressBook())
+                .allMatch(count -> count == 1000));
+    }
+
+    @Test
+    public void copiesContactsOfEarlierAddressBooksAtDuplicateRate() {
+        var generator = new DatasetGenerator(properties(20, 20_000, 0.25));
+        var customers = generate(generator);
+
+        Map<Integer, Set<Long>> contactsByAddressBook = new HashMap<>();
+        Set<String> phoneNumbers = new HashSet<>();
+        for (List<Long> customer : customers) {
+            assertTrue(contactsByAddressBook.computeIfAbsent(customer.get(0).intValue(), book -> new HashSet<>())
+                            .add(customer.get(1)),
+                    "contact added twice to the same address book");
+        }
+        for (long contact = 0; contact < generator.getContacts(); contact++) {
+            assertTrue(phoneNumbers.add(generator.contact(contact).phoneNumber()));
+        }
+        var firstBookSize = generator.customersPerAddressBook()[0];
+        var duplicateRate = (double) (customers.size() - generator.getContacts()) / (customers.size() - firstBookSize);
+        assertEquals(0.25, duplicateRate, 0.02);
+    }
+
+    @Test
+    public void generatesMobileNumbers() {
+        CustomerView contact = new DatasetGenerator(properties(1, 1, 0)).contact(0);
+
+        assertTrue(contact.phoneNumber().matches("04\\d{8}"));
+        assertFalse(contact.firstName().isEmpty());
+        assertFalse(contact.lastName().isEmpty());
+    }
+
+    /**
+     * @return address book index and contact number of every customer
+     */
+    private static List<List<Long>> generate(DatasetGenerator generator) {
+        List<List<Long>> customers = new ArrayList<>();
+        generator.generate((addressBook, contact) -> customers.add(List.of((long) addressBook, contact)));
+        return customers;
+    }
+
+    private static DatasetProperties properties(int addressBooks, long customers, double duplicateRate) {
+        var properties = new DatasetProperties();
+        properties.setAddressBooks(addressBooks);
+        properties.setCustomers(customers);
+        properties.setDuplicateRate(duplicateRate);
+        return properties;
+    }
+}
@@ -0,0 +1,81 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.DatasetProperties;
+import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.repository.AddressBookRepository;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import au.com.test.assignment.addressbook.repository.DistinctCustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.IOException;
+
+import static au.com.test.assignment.addressbook.utils.TestUtils.getTestCustomer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:datasetdb",
+        "address-book.dataset.enabled=true",
+        "address-book.dataset.address-books=20",
+        "address-book.dataset.customers=2000",
+        "address-book.dataset.duplicate-rate=0.2",
+        "address-book.dataset.batch-size=300"})
+@DirtiesContext
+public class DatasetSeederTest {
+
+    @Autowired
+    private DatasetSeeder datasetSeeder;
+
+    @Autowired
+    private DatasetProperties datasetProperties;
+
+    @Autowired
+    private AddressBookRepository addressBookRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private DistinctCustomerRepository distinctCustomerRepository;
+
+    @Autowired
+    private AddressBookService addressBookService;
+
+    @Autowired
+    private PhoneLookupService phoneLookupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void seedsEmptyDatabaseBeforeIndexesAreBuilt() throws IOException {
+        var generator = new DatasetGenerator(datasetProperties);
+        var firstBookSize = generator.customersPerAddressBook()[0];
+        var distinctContacts = jdbcTemplate.queryForObject(
+                "select count(distinct contact_key) from customer", Long.class);
+
+        assertEquals(20, addressBookRepository.count());
+        assertEquals(2000, customerRepository.count());
+        assertEquals(firstBookSize, jdbcTemplate.queryForObject(
+                "select count(*) from customer where address_book_id = 1", Long.class));
+        assertTrue(distinctContacts < 2000);
+        assertEquals(distinctContacts, distinctCustomerRepository.count());
+        assertEquals(2000, jdbcTemplate.queryForObject(
+                "select sum(reference_count) from distinct_customer", Long.class));
+
+        var contact = generator.contact(0);
+        assertEquals(1L, phoneLookupService.lookupPhoneNumber(contact.phoneNumber()).get(0).addressBookId());
+        assertEquals(distinctContacts.intValue(), phoneLookupService.size());
+
+        datasetSeeder.seed();
+        assertEquals(20, addressBookRepository.count());
+
+        var addressBook = addressBookService.createAddressBook(AddressBook.builder().name("new").build());
+        var customer = addressBookService.addCustomerToAddressBook(addressBook.getId(), getTestCustomer());
+        assertTrue(addressBook.getId() > 20);
+        assertTrue(customer.getId() > 2000);
+    }
+}
@@ -0,0 +1,38 @@
+package au.com.test.assignment.addressbook.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DistinctCustomerCountTest {
+
+    private final DistinctCustomerCount distinctCustomerCount = new DistinctCustomerCount();
+
+    @Test
+    public void countsAgainOnlyOnceCustomersChanged() {
+        var counts = new AtomicInteger();
+
+        assertEquals(1, distinctCustomerCount.get(counts::incrementAndGet));
+        assertEquals(1, distinctCustomerCount.get(counts::incrementAndGet));
+
+        distinctCustomerCount.onCustomersRemoved(new CustomersRemovedEvent(1L, List.of(2L)));
+
+        assertEquals(2, distinctCustomerCount.get(counts::incrementAndGet));
+        assertEquals(2, distinctCustomerCount.get(counts::incrementAndGet));
+    }
+
+    @Test
+    public void countsAgainWhenCustomersChangedWhileCounting() {
+        var counts = new AtomicInteger();
+
+        assertEquals(1, distinctCustomerCount.get(() -> {
+            distinctCustomerCount.onCustomersAdded(new CustomersAddedEvent(List.of()));
+            return counts.incrementAndGet();
+        }));
+
+        assertEquals(2, distinctCustomerCount.get(counts::incrementAndGet));
+    }
+}
@@ -0,0 +1,47 @@
+package au.com.test.assignment.addressbook.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongKeyMapTest {
+
+    @Test
+    public void behavesLikeHashMapUnderRandomPutsAndRemoves() {
+        LongKeyMap<Long> map = new LongKeyMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            long key = 1 + random.nextInt(2_000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 1; key <= 2_000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        List<Long> values = new ArrayList<>();
+        map.forEachValue(values::add);
+        assertEquals(expected.values().stream().sorted().toList(), values.stream().sorted().toList());
+    }
+
+    @Test
+    public void rejectsZeroKey() {
+        LongKeyMap<String> map = new LongKeyMap<>();
+
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, "zero"));
+        assertNull(map.get(0));
+        assertNull(map.remove(0));
+    }
+}
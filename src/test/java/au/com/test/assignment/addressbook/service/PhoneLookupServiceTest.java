@@ -0,0 +1,88 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.ShardingProperties;
+import au.com.test.assignment.addressbook.model.CustomerEntry;
+import au.com.test.assignment.addressbook.model.CustomerLocation;
+import au.com.test.assignment.addressbook.repository.CustomerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PhoneLookupServiceTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PhoneLookupService phoneLookupService;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        phoneLookupService = new PhoneLookupService(customerRepository,
+                new ShardRouter(new ShardingProperties(), transactionManager), meterRegistry);
+    }
+
+    @Test
+    public void looksUpCustomersByPhoneNumberInAnyFormat() {
+        phoneLookupService.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(1L, 7L, "0400 123 456"),
+                entry(2L, 3L, "+61 400-123-456"),
+                entry(3L, 3L, "0400 999 999"))));
+
+        assertEquals(List.of(new CustomerLocation(1L, 7L), new CustomerLocation(2L, 3L)),
+                phoneLookupService.lookupPhoneNumber("0061400123456"));
+        assertEquals(List.of(), phoneLookupService.lookupPhoneNumber("0400 000 000"));
+        assertEquals(2, phoneLookupService.size());
+        assertEquals(2, meterRegistry.timer(PhoneLookupService.LOOKUP_TIMER).count());
+    }
+
+    @Test
+    public void removesCustomersOnlyFromTheirAddressBook() {
+        phoneLookupService.onCustomersAdded(new CustomersAddedEvent(List.of(
+                entry(1L, 7L, "0400123456"),
+                entry(2L, 3L, "0400123456"))));
+
+        phoneLookupService.onCustomersRemoved(new CustomersRemovedEvent(3L, List.of(1L, 2L)));
+        assertEquals(List.of(new CustomerLocation(1L, 7L)), phoneLookupService.lookupPhoneNumber("0400123456"));
+
+        phoneLookupService.onCustomersRemoved(new CustomersRemovedEvent(7L, List.of(1L)));
+        assertEquals(List.of(), phoneLookupService.lookupPhoneNumber("0400123456"));
+        assertEquals(0, phoneLookupService.size());
+    }
+
+    @Test
+    public void rebuildsIndexFromRepository() {
+        phoneLookupService.onCustomersAdded(new CustomersAddedEvent(List.of(entry(1L, 1L, "111"))));
+        when(customerRepository.streamAllEntries()).thenReturn(Stream.of(entry(2L, 1L, "222")));
+
+        phoneLookupService.rebuild();
+
+        assertEquals(List.of(), phoneLookupService.lookupPhoneNumber("111"));
+        assertEquals(List.of(new CustomerLocation(2L, 1L)), phoneLookupService.lookupPhoneNumber("222"));
+    }
+
+    @Test
+    public void rejectsPhoneNumberWithoutDigits() {
+        assertThrows(IllegalArgumentException.class, () -> phoneLookupService.lookupPhoneNumber("unknown"));
+    }
+
+    private static CustomerEntry entry(Long id, Long addressBookId, String phoneNumber) {
+        return new CustomerEntry(id, addressBookId, id, "first", "last", phoneNumber);
+    }
+}
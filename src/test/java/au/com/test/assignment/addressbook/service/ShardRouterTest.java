@@ -0,0 +1,112 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.config.ShardContext;
+import au.com.test.assignment.addressbook.config.ShardingProperties;
+import au.com.test.assignment.addressbook.exception.AddressBookNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class ShardRouterTest {
+
+    private ShardRouter shardRouter;
+
+    @BeforeEach
+    public void setUp() {
+        var shardingProperties = new ShardingProperties();
+        shardingProperties.setShards(3);
+        shardingProperties.setIdRange(1000);
+        shardRouter = new ShardRouter(shardingProperties, mock(PlatformTransactionManager.class));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        shardRouter.close();
+    }
+
+    @Test
+    public void findsShardOfAddressBookFromItsId() {
+        assertEquals(0, shardRouter.shardOf(1L));
+        assertEquals(0, shardRouter.shardOf(1000L));
+        assertEquals(1, shardRouter.shardOf(1001L));
+        assertEquals(2, shardRouter.shardOf(3000L));
+        assertEquals(2001L, shardRouter.firstId(2));
+        assertThrows(AddressBookNotFoundException.class, () -> shardRouter.shardOf(3001L));
+    }
+
+    @Test
+    public void dealsNewAddressBooksToShardsInTurn() {
+        assertEquals(List.of(0, 1, 2, 0), List.of(shardRouter.nextShard(), shardRouter.nextShard(),
+                shardRouter.nextShard(), shardRouter.nextShard()));
+    }
+
+    @Test
+    public void scattersQueryToEveryShardOnItsShard() {
+        var results = shardRouter.scatter(shard -> shard + ":" + ShardContext.current());
+
+        assertEquals(List.of("0:0", "1:1", "2:2"), results);
+        assertEquals(0, ShardContext.current());
+    }
+
+    @Test
+    public void rethrowsFailureOfShard() {
+        var failure = assertThrows(IllegalStateException.class, () -> shardRouter.scatter(shard -> {
+            if (shard == 1) {
+                throw new IllegalStateException("shard down");
+            }
+            return shard;
+        }));
+        assertEquals("shard down", failure.getMessage());
+    }
+
+    @Test
+    public void mergesSortedRowsOfAllShards() {
+        //every shard holds the multiples of its shard number plus one, more rows than fit the merge buffers
+        List<Long> merged = new ArrayList<>();
+        shardRouter.forEachMerged(() -> multiplesOf(ShardContext.current() + 1), Comparator.naturalOrder(), merged::add);
+
+        assertEquals(Stream.of(1, 2, 3).flatMap(ShardRouterTest::multiplesOf).sorted().toList(), merged);
+    }
+
+    @Test
+    public void stopsReadingShardsWhenMergeFails() {
+        var failure = assertThrows(IllegalStateException.class, () -> shardRouter.forEachMerged(
+                () -> LongStream.range(0, 100 * ShardRouter.MERGE_BUFFER_SIZE).boxed(), Comparator.naturalOrder(),
+                value -> {
+                    if (value == 10) {
+                        throw new IllegalStateException("client gone");
+                    }
+                }));
+        assertEquals("client gone", failure.getMessage());
+    }
+
+    @Test
+    @Timeout(10)
+    public void rethrowsErrorOfShardToMerge() {
+        var failure = assertThrows(AssertionError.class, () -> shardRouter.forEachMerged(() -> {
+                    if (ShardContext.current() == 2) {
+                        throw new AssertionError("shard broken");
+                    }
+                    return multiplesOf(1);
+                }, Comparator.naturalOrder(), value -> {
+                }));
+        assertEquals("shard broken", failure.getMessage());
+    }
+
+    private static Stream<Long> multiplesOf(int divisor) {
+        return LongStream.rangeClosed(1, 3 * ShardRouter.MERGE_BUFFER_SIZE)
+                .filter(value -> value % divisor == 0)
+                .boxed();
+    }
+}
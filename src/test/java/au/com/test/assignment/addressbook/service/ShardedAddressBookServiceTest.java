@@ -0,0 +1,164 @@
+package au.com.test.assignment.addressbook.service;
+
+import au.com.test.assignment.addressbook.exception.AddressBookNotFoundException;
+import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.AddressBookSummary;
+import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:shardeddb",
+        "address-book.sharding.shards=3",
+        "address-book.dataset.enabled=true",
+        "address-book.dataset.address-books=6",
+        "address-book.dataset.customers=600",
+        "address-book.dataset.duplicate-rate=0.3",
+        "address-book.dataset.batch-size=100"})
+@DirtiesContext
+public class ShardedAddressBookServiceTest {
+
+    private static final long ID_RANGE = 100_000_000L;
+
+    @Autowired
+    private AddressBookService addressBookService;
+
+    @Autowired
+    private PhoneLookupService phoneLookupService;
+
+    @Test
+    public void seedsAddressBooksAcrossShards() {
+        Set<String> contactKeys = new HashSet<>();
+        long customers = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            var jdbcTemplate = shard(shard);
+            assertEquals(List.of(shard * ID_RANGE + 1, shard * ID_RANGE + 2),
+                    jdbcTemplate.queryForList("select id from address_book where id <= ? order by id", Long.class,
+                            shard * ID_RANGE + 2));
+            customers += jdbcTemplate.queryForObject("select count(*) from customer", Long.class);
+            assertEquals(0, jdbcTemplate.queryForObject("select count(*) from customer " +
+                    "where id <= ? or id > ?", Long.class, shard * ID_RANGE, (shard + 1) * ID_RANGE));
+            contactKeys.addAll(jdbcTemplate.queryForList("select contact_key from distinct_customer", String.class));
+        }
+
+        for (int shard = 0; shard < 3; shard++) {
+            assertEquals(List.of((shard + 1) * ID_RANGE), shard(shard).queryForList(
+                    "select distinct maximum_value from information_schema.sequences", Long.class));
+        }
+        assertEquals(600, customers);
+        assertEquals(contactKeys.size(), addressBookService.countDistinctCustomersFromAllAddressBooks());
+        List<CustomerView> distinctCustomers = new ArrayList<>();
+        addressBookService.retrieveDistinctCustomersFromAllAddressBooks(distinctCustomers::add);
+        assertEquals(contactKeys.size(), distinctCustomers.size());
+    }
+
+    @Test
+    public void mergesContactsSharingHashAcrossShardsByKey() {
+        Set<String> contactKeys = new HashSet<>();
+        for (int shard = 0; shard < 3; shard++) {
+            contactKeys.addAll(shard(shard).queryForList("select contact_key from distinct_customer", String.class));
+        }
+        //contacts of all shards share a hash, as contacts with colliding hashes would
+        for (int shard = 0; shard < 3; shard++) {
+            shard(shard).update("update distinct_customer set contact_hash = 42");
+        }
+
+        try {
+            List<CustomerView> distinctCustomers = new ArrayList<>();
+            addressBookService.retrieveDistinctCustomersFromAllAddressBooks(distinctCustomers::add);
+            assertEquals(contactKeys.size(), distinctCustomers.size());
+        } finally {
+            for (int shard = 0; shard < 3; shard++) {
+                shard(shard).update("update distinct_customer d set contact_hash = " +
+                        "(select min(c.contact_hash) from customer c where c.contact_key = d.contact_key)");
+            }
+        }
+    }
+
+    @Test
+    public void routesEveryAddressBookToItsShard() {
+        var contact = customer("Ada", "Lovelace", "0491570006");
+        List<AddressBook> addressBooks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            addressBooks.add(addressBookService.createAddressBook(AddressBook.builder().name("book" + i).build()));
+        }
+        Set<Long> shards = new HashSet<>();
+        for (AddressBook addressBook : addressBooks) {
+            var shard = (addressBook.getId() - 1) / ID_RANGE;
+            shards.add(shard);
+            assertEquals(1, shard((int) shard).queryForObject(
+                    "select count(*) from address_book where id = ?", Long.class, addressBook.getId()));
+        }
+        assertEquals(Set.of(0L, 1L, 2L), shards);
+
+        var distinctCustomers = addressBookService.countDistinctCustomersFromAllAddressBooks();
+        var first = addressBookService.addCustomerToAddressBook(addressBooks.get(0).getId(), contact);
+        var second = addressBookService.addCustomerToAddressBook(addressBooks.get(1).getId(),
+                customer("ada", "LOVELACE", "+61491570006"));
+        assertEquals(addressBooks.get(1).getId() / ID_RANGE, second.getId() / ID_RANGE);
+        assertEquals(distinctCustomers + 1, addressBookService.countDistinctCustomersFromAllAddressBooks());
+        assertEquals(2, phoneLookupService.lookupPhoneNumber("0491570006").size());
+
+        assertEquals(List.of(new CustomerView(first.getId(), "Ada", "Lovelace", "0491570006")),
+                addressBookService.retrieveAddressBook(addressBooks.get(0).getId()).customers());
+        assertTrue(addressBookService.removeCustomerFromAddressBook(addressBooks.get(0).getId(), first.getId()));
+        assertFalse(addressBookService.removeCustomerFromAddressBook(addressBooks.get(2).getId(), second.getId()));
+        assertEquals(distinctCustomers + 1, addressBookService.countDistinctCustomersFromAllAddressBooks());
+        assertTrue(addressBookService.removeCustomerFromAddressBook(addressBooks.get(1).getId(), second.getId()));
+        assertEquals(distinctCustomers, addressBookService.countDistinctCustomersFromAllAddressBooks());
+
+        assertThrows(AddressBookNotFoundException.class,
+                () -> addressBookService.retrieveAddressBook(3 * ID_RANGE + 1));
+        assertThrows(AddressBookNotFoundException.class,
+                () -> addressBookService.retrieveAddressBook(ID_RANGE + 999));
+    }
+
+    @Test
+    public void pagesThroughAddressBooksOfAllShardsInIdOrder() {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            var page = addressBookService.retrieveAddressBooksWithCustomers(cursor, 4);
+            assertTrue(page.addressBooks().size() <= 4);
+            page.addressBooks().forEach(addressBook -> ids.add(addressBook.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        var summaries = new ArrayList<AddressBookSummary>();
+        cursor = null;
+        do {
+            var page = addressBookService.retrieveAddressBooks(cursor, 5);
+            summaries.addAll(page.addressBooks());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(ids, summaries.stream().map(AddressBookSummary::id).toList());
+        assertEquals(ids.stream().sorted().toList(), ids);
+        assertTrue(ids.size() >= 6);
+        assertEquals(Set.of(0L, 1L, 2L), new HashSet<>(ids.stream().map(id -> (id - 1) / ID_RANGE).toList()));
+        for (AddressBookSummary summary : summaries) {
+            assertEquals(summary.customerCount(), addressBookService.retrieveAddressBook(summary.id()).customers().size());
+        }
+    }
+
+    private static JdbcTemplate shard(int shard) {
+        var url = shard == 0 ? "jdbc:h2:mem:shardeddb" : "jdbc:h2:mem:shardeddb_shard" + shard;
+        return new JdbcTemplate(new DriverManagerDataSource(url, "test", "test#123"));
+    }
+
+    private static Customer customer(String firstName, String lastName, String phoneNumber) {
+        return Customer.builder().firstName(firstName).lastName(lastName).phoneNumber(phoneNumber).build();
+    }
+}
@@ -0,0 +1,100 @@
+package au.com.test.assignment.addressbook.utils;
+
+import au.com.test.assignment.addressbook.config.MetricsConfig;
+import au.com.test.assignment.addressbook.config.RequestStatistics;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the SQL statements, entity loads and allocated bytes of the work a test does, so tests can put an
+ * upper bound on them and a change that turns one query into thousands fails instead of passing unnoticed.
+ * Requests to an endpoint are measured from the per-request metrics of {@link MetricsConfig}, work done on
+ * the test thread from Hibernate statistics and the allocations of the thread
+ */
+public final class RequestCost {
+
+    private final Supplier<Cost> totals;
+
+    private final boolean countsRequests;
+
+    private RequestCost(Supplier<Cost> totals, boolean countsRequests) {
+        this.totals = totals;
+        this.countsRequests = countsRequests;
+    }
+
+    /**
+     * Cost of the requests made to one endpoint
+     * @param uri pattern of the endpoint as mapped, like /api/v1/address-book/{addressBookId}
+     */
+    public static RequestCost ofEndpoint(MeterRegistry meterRegistry, String method, String uri) {
+        return new RequestCost(() -> new Cost(
+                (long) meterRegistry.summary(MetricsConfig.REQUEST_STATEMENTS, "method", method, "uri", uri).count(),
+                total(meterRegistry, MetricsConfig.REQUEST_STATEMENTS, method, uri),
+                total(meterRegistry, MetricsConfig.REQUEST_ENTITIES_LOADED, method, uri),
+                total(meterRegistry, MetricsConfig.REQUEST_ALLOCATED_BYTES, method, uri)), true);
+    }
+
+    /**
+     * Cost of the work done on the current thread, counted as one request. Hibernate statistics are
+     * shared by all threads, so nothing else may use the database while it is measured
+     */
+    public static RequestCost ofCurrentThread(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return new RequestCost(() -> new Cost(0, statistics.getPrepareStatementCount(),
+                statistics.getEntityLoadCount(), RequestStatistics.currentThreadAllocatedBytes()), false);
+    }
+
+    /**
+     * Runs the work and returns what it cost
+     */
+    public Cost measure(Runnable work) {
+        var before = totals.get();
+        work.run();
+        var after = totals.get();
+        return new Cost(countsRequests ? after.requests() - before.requests() : 1,
+                after.statements() - before.statements(),
+                after.entitiesLoaded() - before.entitiesLoaded(),
+                after.allocatedBytes() - before.allocatedBytes());
+    }
+
+    private static long total(MeterRegistry meterRegistry, String name, String method, String uri) {
+        return (long) meterRegistry.summary(name, "method", method, "uri", uri).totalAmount();
+    }
+
+    /**
+     * Totals of the measured requests. Bounds are per request and checked against the totals, so they are
+     * exact when one request is measured and hold on average otherwise
+     */
+    public record Cost(long requests, long statements, long entitiesLoaded, long allocatedBytes) {
+
+        public Cost assertRequests(long expected) {
+            assertEquals(expected, requests, "requests measured");
+            return this;
+        }
+
+        public Cost assertStatementsAtMost(long perRequest) {
+            assertTrue(statements <= perRequest * requests,
+                    statements + " SQL statements for " + requests + " requests, at most " + perRequest + " each");
+            return this;
+        }
+
+        public Cost assertEntitiesLoadedAtMost(long perRequest) {
+            assertTrue(entitiesLoaded <= perRequest * requests,
+                    entitiesLoaded + " entities loaded for " + requests + " requests, at most " + perRequest + " each");
+            return this;
+        }
+
+        public Cost assertAllocatedBytesAtMost(long perRequest) {
+            assertTrue(allocatedBytes <= perRequest * requests,
+                    allocatedBytes + " bytes allocated for " + requests + " requests, at most " + perRequest + " each");
+            return this;
+        }
+    }
+}
@@ -1,25 +1,53 @@
 package au.com.test.assignment.addressbook.web.controller;
 
+import au.com.test.assignment.addressbook.config.EncodingConfig;
 import au.com.test.assignment.addressbook.exception.AddressBookNotFoundException;
 import au.com.test.assignment.addressbook.model.AddressBook;
+import au.com.test.assignment.addressbook.model.AddressBookPage;
+import au.com.test.assignment.addressbook.model.AddressBookSummary;
+import au.com.test.assignment.addressbook.model.AddressBookView;
 import au.com.test.assignment.addressbook.model.Customer;
+import au.com.test.assignment.addressbook.model.CustomerPage;
+import au.com.test.assignment.addressbook.model.CustomerRow;
+import au.com.test.assignment.addressbook.model.CustomerSort;
+import au.com.test.assignment.addressbook.model.CustomerView;
+import au.com.test.assignment.addressbook.model.ImportReport;
 import au.com.test.assignment.addressbook.service.AddressBookService;
+import au.com.test.assignment.addressbook.service.AddressBookVersions;
+import au.com.test.assignment.addressbook.service.CustomerAddCoalescer;
+import au.com.test.assignment.addressbook.service.CustomerImportService;
+import au.com.test.assignment.addressbook.service.CustomersRemovedEvent;
+import au.com.test.assignment.addressbook.web.controller.streaming.StreamingResponseWriter;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
-import java.util.Set;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static au.com.test.assignment.addressbook.utils.TestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(AddressBookController.class)
+@Import({StreamingResponseWriter.class, AddressBookVersions.class, EncodingConfig.class, SimpleMeterRegistry.class})
 public class AddressBookControllerTest {
 
     @Autowired
@@ -28,6 +56,15 @@ public class AddressBookControllerTest {
     @MockBean
     private AddressBookService addressBookService;
 
+    @MockBean
+    private CustomerAddCoalescer customerAddCoalescer;
+
+    @MockBean
+    private CustomerImportService customerImportService;
+
+    @Autowired
+    private AddressBookVersions addressBookVersions;
+
     @Test
     public void createsNewAddressBook() throws Exception {
         AddressBook addressBook = getTestAddressBook();
@@ -73,18 +110,113 @@ public class AddressBookControllerTest {
 
     @Test
     public void retrievesAddressBook() throws Exception {
-        AddressBook addressBook = getTestAddressBook();
+        AddressBookView addressBook = new AddressBookView(1L, "test",
+                List.of(new CustomerView(2L, "test", "testing", "123")), 3L);
         when(addressBookService.retrieveAddressBook(any(Long.class))).thenReturn(addressBook);
 
         this.mockMvc.perform(
                         get("/api/v1/address-book/1"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.name").value(addressBook.getName()));
+                .andExpect(header().string(HttpHeaders.ETAG, addressBookVersions.eTag(3L, MediaType.APPLICATION_JSON)))
+                .andExpect(jsonPath("$.name").value(addressBook.name()))
+                .andExpect(jsonPath("$.customers[0].phoneNumber").value("123"))
+                .andExpect(jsonPath("$.version").doesNotExist());
 
         verify(addressBookService, times(1)).retrieveAddressBook(1L);
     }
 
+    @Test
+    public void returnsNotModifiedWhenAddressBookHasNotChanged() throws Exception {
+        String eTag = addressBookVersions.currentETag(1L, MediaType.APPLICATION_JSON);
+        when(addressBookService.existsAddressBook(1L)).thenReturn(true);
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1")
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"stale\", " + eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+
+        verify(addressBookService, never()).retrieveAddressBook(any(Long.class));
+    }
+
+    @Test
+    public void returnsNotModifiedForAnyETagWhenAddressBookExists() throws Exception {
+        when(addressBookService.existsAddressBook(1L)).thenReturn(true);
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/summary")
+                                .header(HttpHeaders.IF_NONE_MATCH, "*"))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, addressBookVersions.currentETag(1L, MediaType.APPLICATION_JSON)));
+
+        verify(addressBookService, never()).retrieveAddressBookSummary(any(Long.class));
+    }
+
+    @Test
+    public void returnsNotFoundInsteadOfNotModifiedWhenAddressBookIsMissing() throws Exception {
+        when(addressBookService.retrieveAddressBook(any(Long.class)))
+                .thenThrow(new AddressBookNotFoundException("Address Book not found"));
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1")
+                                .header(HttpHeaders.IF_NONE_MATCH, addressBookVersions.currentETag(1L, MediaType.APPLICATION_JSON)))
+                .andExpect(status().isNotFound());
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1")
+                                .header(HttpHeaders.IF_NONE_MATCH, "*"))
+                .andExpect(status().isNotFound());
+
+        verify(addressBookService, times(2)).existsAddressBook(1L);
+    }
+
+    @Test
+    public void retrievesPageOfAddressBookSummaries() throws Exception {
+        when(addressBookService.retrieveAddressBooks(any(), anyInt()))
+                .thenReturn(new AddressBookPage<>(List.of(new AddressBookSummary(1L, "test", 3L)), "1"));
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book?size=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.addressBooks[0].customerCount").value(3))
+                .andExpect(jsonPath("$.nextCursor").value("1"));
+
+        verify(addressBookService, times(1)).retrieveAddressBooks(null, 1);
+        verify(addressBookService, never()).retrieveAddressBooksWithCustomers(any(), anyInt());
+    }
+
+    @Test
+    public void retrievesPageOfAddressBooksWithCustomers() throws Exception {
+        when(addressBookService.retrieveAddressBooksWithCustomers(any(), anyInt()))
+                .thenReturn(new AddressBookPage<>(List.of(new AddressBookView(1L, "test",
+                        List.of(new CustomerView(2L, "test", "testing", "123")), 0L)), null));
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book?cursor=5&customers=true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.addressBooks[0].customers[0].phoneNumber").value("123"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        verify(addressBookService, times(1)).retrieveAddressBooksWithCustomers("5", 100);
+    }
+
+    @Test
+    public void retrievesAddressBookSummary() throws Exception {
+        when(addressBookService.retrieveAddressBookSummary(any(Long.class)))
+                .thenReturn(new AddressBookSummary(1L, "test", 3L));
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/summary"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, addressBookVersions.currentETag(1L, MediaType.APPLICATION_JSON)))
+                .andExpect(jsonPath("$.name").value("test"))
+                .andExpect(jsonPath("$.customerCount").value(3));
+
+        verify(addressBookService, never()).retrieveAddressBook(any(Long.class));
+    }
+
     @Test
     public void returnsNotFoundWhenAddressBookIsNotValid() throws Exception {
         when(addressBookService.retrieveAddressBook(any(Long.class))).thenThrow(AddressBookNotFoundException.class);
@@ -96,10 +228,29 @@ public class AddressBookControllerTest {
         verify(addressBookService, times(1)).retrieveAddressBook(1L);
     }
 
+    @Test
+    public void returnsServerErrorWhenRetrievalFailsUnexpectedly() throws Exception {
+        when(addressBookService.retrieveAddressBook(any(Long.class))).thenThrow(IllegalStateException.class);
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.error.statusCode").value(500));
+    }
+
+    @Test
+    public void returnsBadRequestWhenAddressBookIdIsNotNumber() throws Exception {
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/abc"))
+                .andExpect(status().isBadRequest());
+
+        verify(addressBookService, never()).retrieveAddressBook(any(Long.class));
+    }
+
     @Test
     public void addsContactToAddressBook() throws Exception {
         Customer customer = getTestCustomer();
-        when(addressBookService.addCustomerToAddressBook(any(Long.class), any(Customer.class)))
+        when(customerAddCoalescer.addCustomerToAddressBook(any(Long.class), any(Customer.class)))
                 .thenReturn(customer);
 
         this.mockMvc.perform(
@@ -110,13 +261,13 @@ public class AddressBookControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.firstName").value(customer.getFirstName()));
 
-        verify(addressBookService, times(1)).addCustomerToAddressBook(1L, customer);
+        verify(customerAddCoalescer, times(1)).addCustomerToAddressBook(1L, customer);
     }
 
     @Test
     public void returnsBadRequestWhenSuppliedAddressBookForAddingCustomersDoesNotExist() throws Exception {
         Customer customer = getTestCustomer();
-        when(addressBookService.addCustomerToAddressBook(any(Long.class), any(Customer.class)))
+        when(customerAddCoalescer.addCustomerToAddressBook(any(Long.class), any(Customer.class)))
                 .thenThrow(AddressBookNotFoundException.class);
 
         this.mockMvc.perform(
@@ -125,7 +276,7 @@ public class AddressBookControllerTest {
                                 .content(asJsonString(customer)))
                 .andExpect(status().isNotFound());
 
-        verify(addressBookService, times(1)).addCustomerToAddressBook(1L, customer);
+        verify(customerAddCoalescer, times(1)).addCustomerToAddressBook(1L, customer);
     }
 
     @Test
@@ -138,33 +289,330 @@ public class AddressBookControllerTest {
         verify(addressBookService, times(1)).removeCustomerFromAddressBook(1L, 1L);
     }
 
+    @Test
+    public void removesContactsFromAddressBook() throws Exception {
+        when(addressBookService.removeCustomersFromAddressBook(any(Long.class), anyList())).thenReturn(2);
+
+        this.mockMvc.perform(
+                        delete("/api/v1/address-book/1/customers")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[1,2]"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+
+        verify(addressBookService, times(1)).removeCustomersFromAddressBook(1L, List.of(1L, 2L));
+    }
+
+    @Test
+    public void rejectsRemovingMoreCustomersThanTheLimitInOneRequest() throws Exception {
+        String customerIds = LongStream.rangeClosed(1, AddressBookController.MAX_REMOVED_CUSTOMERS + 1)
+                .mapToObj(Long::toString)
+                .collect(Collectors.joining(",", "[", "]"));
+
+        this.mockMvc.perform(
+                        delete("/api/v1/address-book/1/customers")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(customerIds))
+                .andExpect(status().isBadRequest());
+
+        verify(addressBookService, never()).removeCustomersFromAddressBook(any(Long.class), anyList());
+    }
+
+    @Test
+    public void importsContactsFromJsonIntoAddressBook() throws Exception {
+        ImportReport report = new ImportReport(10);
+        report.recordImported(1);
+        report.recordError(2, "Please provide Mobile or Landline number");
+        when(customerImportService.importCustomers(any(Long.class), any())).thenAnswer(invocation -> {
+            Iterator<CustomerRow> rows = invocation.getArgument(1);
+            assertEquals("test", rows.next().customer().getFirstName());
+            assertEquals(2, rows.next().rowNumber());
+            assertFalse(rows.hasNext());
+            return report;
+        });
+
+        this.mockMvc.perform(
+                        post("/api/v1/address-book/1/customers/import")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[" + asJsonString(getTestCustomer()) + ",{\"firstName\":\"a\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(2));
+    }
+
+    @Test
+    public void importsContactsFromCsvIntoAddressBook() throws Exception {
+        when(customerImportService.importCustomers(any(Long.class), any())).thenAnswer(invocation -> {
+            Iterator<CustomerRow> rows = invocation.getArgument(1);
+            CustomerRow row = rows.next();
+            assertEquals(1, row.rowNumber());
+            assertEquals("Smith, Jr", row.customer().getLastName());
+            assertNotNull(rows.next().error());
+            assertFalse(rows.hasNext());
+            return new ImportReport();
+        });
+
+        this.mockMvc.perform(
+                        post("/api/v1/address-book/1/customers/import")
+                                .contentType("text/csv")
+                                .content("firstName,lastName,phoneNumber\njohn,\"Smith, Jr\",123\nbroken-row\n"))
+                .andExpect(status().isOk());
+
+        verify(customerImportService, times(1)).importCustomers(eq(1L), any());
+    }
+
+    @Test
+    public void importsExportedCsvWithQuotedLineBreaksIntoAddressBook() throws Exception {
+        when(customerImportService.importCustomers(any(Long.class), any())).thenAnswer(invocation -> {
+            Iterator<CustomerRow> rows = invocation.getArgument(1);
+            CustomerRow row = rows.next();
+            assertEquals(1, row.rowNumber());
+            assertEquals("john", row.customer().getFirstName());
+            assertEquals("Smith\r\nJr", row.customer().getLastName());
+            assertEquals("123", row.customer().getPhoneNumber());
+            row = rows.next();
+            assertEquals(2, row.rowNumber());
+            assertEquals("jane", row.customer().getFirstName());
+            assertFalse(rows.hasNext());
+            return new ImportReport();
+        });
+
+        this.mockMvc.perform(
+                        post("/api/v1/address-book/1/customers/import")
+                                .contentType("text/csv")
+                                .content("id,firstName,lastName,phoneNumber\r\n7,john,\"Smith\r\nJr\",123\r\n" +
+                                        "8,jane,doe,456\r\n"))
+                .andExpect(status().isOk());
+
+        verify(customerImportService, times(1)).importCustomers(eq(1L), any());
+    }
+
     @Test
     public void retrievesCustomersOfSpecifiedAddressBook() throws Exception {
-        Set<Customer> customers = Set.of(getTestCustomer());
+        CustomerPage page = new CustomerPage(List.of(new CustomerView(1L, "test", "testing", "123")), "1");
 
-        when(addressBookService.retrieveCustomersOfAddressBook(any(Long.class))).thenReturn(customers);
+        when(addressBookService.retrieveCustomersOfAddressBook(any(Long.class), any(), anyInt(), any()))
+                .thenReturn(page);
 
         this.mockMvc.perform(
                         get("/api/v1/address-book/1/customers"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.[0].firstName").value(getTestCustomer().getFirstName()));
+                .andExpect(header().string(HttpHeaders.ETAG, addressBookVersions.currentETag(1L, MediaType.APPLICATION_JSON)))
+                .andExpect(jsonPath("$.customers[0].firstName").value(getTestCustomer().getFirstName()))
+                .andExpect(jsonPath("$.nextCursor").value("1"));
 
-        verify(addressBookService, times(1)).retrieveCustomersOfAddressBook(1L);
+        verify(addressBookService, times(1)).retrieveCustomersOfAddressBook(1L, null, 100, CustomerSort.ID);
     }
 
     @Test
-    public void retrievesDistinctCustomersAcrossAddressBooks() throws Exception {
-        Set<Customer> customers = getTestCustomers();
+    public void returnsNotModifiedWhenCustomersHaveNotChanged() throws Exception {
+        when(addressBookService.existsAddressBook(1L)).thenReturn(true);
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/customers")
+                                .header(HttpHeaders.IF_NONE_MATCH, addressBookVersions.currentETag(1L, MediaType.APPLICATION_JSON)))
+                .andExpect(status().isNotModified());
+
+        addressBookVersions.onCustomersRemoved(new CustomersRemovedEvent(1L, List.of(2L)));
+        when(addressBookService.retrieveCustomersOfAddressBook(any(Long.class), any(), anyInt(), any()))
+                .thenReturn(new CustomerPage(List.of(), null));
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/customers")
+                                .header(HttpHeaders.IF_NONE_MATCH, addressBookVersions.eTag(0L, MediaType.APPLICATION_JSON)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, addressBookVersions.eTag(1L, MediaType.APPLICATION_JSON)));
+
+        verify(addressBookService, times(1)).retrieveCustomersOfAddressBook(1L, null, 100, CustomerSort.ID);
+    }
+
+    @Test
+    public void retrievesRequestedPageOfCustomersOfSpecifiedAddressBook() throws Exception {
+        when(addressBookService.retrieveCustomersOfAddressBook(any(Long.class), any(), anyInt(), any()))
+                .thenReturn(new CustomerPage(List.of(), null));
 
-        when(addressBookService.retrieveDistinctCustomersFromAllAddressBooks()).thenReturn(customers);
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/customers?cursor=abc&size=20&sort=NAME"))
+                .andExpect(status().isOk());
+
+        verify(addressBookService, times(1)).retrieveCustomersOfAddressBook(1L, "abc", 20, CustomerSort.NAME);
+    }
+
+    @Test
+    public void returnsBadRequestWhenPageSizeIsTooLarge() throws Exception {
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/customers?size=5000"))
+                .andExpect(status().isBadRequest());
+
+        verify(addressBookService, never()).retrieveCustomersOfAddressBook(any(Long.class), any(), anyInt(), any());
+    }
+
+    @Test
+    public void exportsCustomersOfAddressBookAsCsv() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<CustomerView> consumer = invocation.getArgument(1);
+            consumer.accept(new CustomerView(1L, "john", "Smith, Jr", "123"));
+            return null;
+        }).when(addressBookService).exportCustomersOfAddressBook(any(Long.class), any());
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/customers/export")
+                                .accept("text/csv"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"address-book-1.csv\""))
+                .andExpect(content().string("id,firstName,lastName,phoneNumber\n1,john,\"Smith, Jr\",123\n"));
+
+        verify(addressBookService, times(1)).exportCustomersOfAddressBook(eq(1L), any());
+    }
+
+    @Test
+    public void exportsCustomersOfAddressBookAsNdjsonByDefault() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<CustomerView> consumer = invocation.getArgument(1);
+            consumer.accept(new CustomerView(1L, "test", "testing", "123"));
+            return null;
+        }).when(addressBookService).exportCustomersOfAddressBook(any(Long.class), any());
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/customers/export")
+                                .header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string(
+                        "{\"id\":1,\"firstName\":\"test\",\"lastName\":\"testing\",\"phoneNumber\":\"123\"}\n"));
+    }
+
+    @Test
+    public void returnsNotFoundWhenExportedAddressBookDoesNotExist() throws Exception {
+        doThrow(AddressBookNotFoundException.class)
+                .when(addressBookService).exportCustomersOfAddressBook(any(Long.class), any());
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/customers/export")
+                                .header("Accept-Encoding", "gzip"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().doesNotExist("Content-Disposition"));
+    }
+
+    @Test
+    public void retrievesDistinctCustomersAcrossAddressBooks() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<CustomerView> consumer = invocation.getArgument(0);
+            consumer.accept(new CustomerView(1L, "test2", "testing2", "456"));
+            return null;
+        }).when(addressBookService).retrieveDistinctCustomersFromAllAddressBooks(any());
 
         this.mockMvc.perform(
                         get("/api/v1/address-book/customers"))
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.length()").value(1));
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].firstName").value("test2"));
+
+        verify(addressBookService, times(1)).retrieveDistinctCustomersFromAllAddressBooks(any());
+    }
+
+    @Test
+    public void streamsDistinctCustomersAsNdjsonWhenRequested() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<CustomerView> consumer = invocation.getArgument(0);
+            consumer.accept(new CustomerView(1L, "test", "testing", "123"));
+            consumer.accept(new CustomerView(2L, "test2", "testing2", "456"));
+            return null;
+        }).when(addressBookService).retrieveDistinctCustomersFromAllAddressBooks(any());
 
-        verify(addressBookService, times(1)).retrieveDistinctCustomersFromAllAddressBooks();
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/customers")
+                                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"firstName\":\"test\",\"lastName\":\"testing\",\"phoneNumber\":\"123\"}\n" +
+                        "{\"id\":2,\"firstName\":\"test2\",\"lastName\":\"testing2\",\"phoneNumber\":\"456\"}\n"));
+    }
+
+    @Test
+    public void streamsDistinctCustomersAsCborWhenRequested() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<CustomerView> consumer = invocation.getArgument(0);
+            consumer.accept(new CustomerView(1L, "test", "testing", "123"));
+            consumer.accept(new CustomerView(2L, "test2", "testing2", "456"));
+            return null;
+        }).when(addressBookService).retrieveDistinctCustomersFromAllAddressBooks(any());
+
+        byte[] body = this.mockMvc.perform(
+                        get("/api/v1/address-book/customers")
+                                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_CBOR_VALUE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(List.of(new CustomerView(1L, "test", "testing", "123"), new CustomerView(2L, "test2", "testing2", "456")),
+                new CBORMapper().readValue(body, new TypeReference<List<CustomerView>>() {}));
+    }
+
+    @Test
+    public void retrievesPageOfCustomersAsCborWhenRequested() throws Exception {
+        CustomerPage page = new CustomerPage(List.of(new CustomerView(1L, "test", "testing", "123")), "1");
+        when(addressBookService.retrieveCustomersOfAddressBook(any(Long.class), any(), anyInt(), any()))
+                .thenReturn(page);
+
+        byte[] body = this.mockMvc.perform(
+                        get("/api/v1/address-book/1/customers")
+                                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.ETAG, addressBookVersions.currentETag(1L, MediaType.APPLICATION_CBOR)))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(page, new CBORMapper().readValue(body, CustomerPage.class));
+    }
+
+    @Test
+    public void doesNotAnswerCborRequestWithNotModifiedForJsonETag() throws Exception {
+        when(addressBookService.existsAddressBook(1L)).thenReturn(true);
+        when(addressBookService.retrieveAddressBookSummary(any(Long.class)))
+                .thenReturn(new AddressBookSummary(1L, "test", 3L));
+        String jsonETag = addressBookVersions.currentETag(1L, MediaType.APPLICATION_JSON);
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/summary")
+                                .accept(MediaType.APPLICATION_CBOR)
+                                .header(HttpHeaders.IF_NONE_MATCH, jsonETag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.ETAG, addressBookVersions.currentETag(1L, MediaType.APPLICATION_CBOR)));
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/1/summary")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .header(HttpHeaders.IF_NONE_MATCH, jsonETag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+    }
+
+    @Test
+    public void picksMediaTypeOfETaggedBodyLikeContentNegotiation() {
+        assertEquals(MediaType.APPLICATION_JSON, AddressBookController.viewMediaType(null));
+        assertEquals(MediaType.APPLICATION_JSON, AddressBookController.viewMediaType("*/*"));
+        assertEquals(MediaType.APPLICATION_CBOR, AddressBookController.viewMediaType("application/cbor, */*;q=0.8"));
+        assertEquals(MediaType.APPLICATION_CBOR, AddressBookController.viewMediaType("application/*, application/cbor"));
+        assertEquals(MediaType.APPLICATION_JSON,
+                AddressBookController.viewMediaType("application/cbor;q=0.5, application/json"));
+    }
+
+    @Test
+    public void countsDistinctCustomersAcrossAddressBooks() throws Exception {
+        when(addressBookService.countDistinctCustomersFromAllAddressBooks()).thenReturn(2L);
+
+        this.mockMvc.perform(
+                        get("/api/v1/address-book/customers/count"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
     }
 }
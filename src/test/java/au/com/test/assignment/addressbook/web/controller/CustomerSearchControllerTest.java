@@ -0,0 +1,78 @@
+package au.com.test.assignment.addressbook.web.controller;
+
+import au.com.test.assignment.addressbook.model.CustomerLocation;
+import au.com.test.assignment.addressbook.model.CustomerSearchHit;
+import au.com.test.assignment.addressbook.service.CustomerSearchService;
+import au.com.test.assignment.addressbook.service.PhoneLookupService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CustomerSearchController.class)
+@Import(SimpleMeterRegistry.class)
+public class CustomerSearchControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CustomerSearchService customerSearchService;
+
+    @MockBean
+    private PhoneLookupService phoneLookupService;
+
+    @Test
+    public void searchesCustomersByName() throws Exception {
+        when(customerSearchService.searchCustomers("smi", 5)).thenReturn(
+                List.of(new CustomerSearchHit("Mary", "Smith", "123", List.of(1L, 2L))));
+
+        this.mockMvc.perform(
+                        get("/api/v1/customers/search").param("q", "smi").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].lastName").value("Smith"))
+                .andExpect(jsonPath("$.[0].addressBookIds.length()").value(2));
+    }
+
+    @Test
+    public void returnsInvalidRequestWhenQueryIsTooShort() throws Exception {
+        this.mockMvc.perform(
+                        get("/api/v1/customers/search").param("q", "s"))
+                .andExpect(status().isBadRequest());
+
+        verify(customerSearchService, never()).searchCustomers(anyString(), anyInt());
+    }
+
+    @Test
+    public void looksUpCustomersByPhoneNumber() throws Exception {
+        when(phoneLookupService.lookupPhoneNumber("+61400123456")).thenReturn(
+                List.of(new CustomerLocation(5L, 1L)));
+
+        this.mockMvc.perform(
+                        get("/api/v1/customers/phone/+61400123456"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].customerId").value(5))
+                .andExpect(jsonPath("$.[0].addressBookId").value(1));
+    }
+
+    @Test
+    public void returnsInvalidRequestWhenPhoneNumberIsInvalid() throws Exception {
+        when(phoneLookupService.lookupPhoneNumber("unknown")).thenThrow(IllegalArgumentException.class);
+
+        this.mockMvc.perform(
+                        get("/api/v1/customers/phone/unknown"))
+                .andExpect(status().isBadRequest());
+    }
+}
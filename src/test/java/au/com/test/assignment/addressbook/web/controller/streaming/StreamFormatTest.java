@@ -0,0 +1,27 @@
+package au.com.test.assignment.addressbook.web.controller.streaming;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StreamFormatTest {
+
+    @Test
+    public void neverPicksFormatRefusedWithZeroQuality() {
+        assertEquals(StreamFormat.JSON, StreamFormat.fromAcceptHeader("application/x-ndjson;q=0, application/json"));
+        assertEquals(StreamFormat.CSV,
+                StreamFormat.fromAcceptHeader("application/x-ndjson;q=0", StreamFormat.CSV));
+    }
+
+    @Test
+    public void picksFormatOfHighestQualityBeforeMostSpecific() {
+        assertEquals(StreamFormat.CSV, StreamFormat.fromAcceptHeader("application/json;q=0.5, text/csv"));
+        assertEquals(StreamFormat.NDJSON,
+                StreamFormat.fromAcceptHeader("application/*;q=0.9, application/x-ndjson;q=0.9, text/csv;q=0.8"));
+    }
+
+    @Test
+    public void picksMostSpecificFormatOfSameQuality() {
+        assertEquals(StreamFormat.CBOR, StreamFormat.fromAcceptHeader("*/*, application/cbor"));
+    }
+}